@@ -0,0 +1,72 @@
+package bguspl.set;
+
+/**
+ * The source of time of a game. Every time based path of the game (deadlines, sleeps and timed waits) goes
+ * through the clock of the game's environment, so the game can run in real time (SystemClock) or in virtual
+ * time (VirtualClock), which jumps to the next deadline as soon as all the game threads are idle.
+ * <p>
+ * The game threads take part in the clock: they are registered when created (see GameThreads) and all their
+ * blocking waits go through park, parkNanos, sleep and join, with the wake-ups going through unpark.
+ */
+public interface Clock {
+
+    /**
+     * @return - the current time in milliseconds (like System.currentTimeMillis).
+     */
+    long millis();
+
+    /**
+     * @return - the current value of the clock's nanosecond timer (like System.nanoTime).
+     */
+    long nanos();
+
+    /**
+     * Sleeps for the given number of milliseconds (like Thread.sleep).
+     *
+     * @param millis - the time to sleep.
+     * @throws InterruptedException - if the thread is interrupted while sleeping.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Parks the current thread until it is unparked or interrupted (like LockSupport.park).
+     *
+     * @param blocker - the object the thread is waiting for.
+     */
+    void park(Object blocker);
+
+    /**
+     * Parks the current thread until it is unparked, interrupted, or the time has passed (like LockSupport.parkNanos).
+     *
+     * @param blocker - the object the thread is waiting for.
+     * @param nanos   - the maximum time to wait.
+     */
+    void parkNanos(Object blocker, long nanos);
+
+    /**
+     * Unparks a thread parked on the clock, or makes its next park return immediately (like LockSupport.unpark).
+     *
+     * @param thread - the thread to unpark (ignored if null).
+     */
+    void unpark(Thread thread);
+
+    /**
+     * Waits for a thread to die (like Thread.join).
+     *
+     * @param thread - the thread to wait for.
+     * @throws InterruptedException - if the current thread is interrupted while waiting.
+     */
+    void join(Thread thread) throws InterruptedException;
+
+    /**
+     * Registers a new game thread (called by the creating thread, the new thread must then be started).
+     *
+     * @param thread - the new thread.
+     */
+    void register(Thread thread);
+
+    /**
+     * Called by a registered game thread when it ends.
+     */
+    void deregister();
+}
@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.SplittableRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -86,6 +87,123 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The average number of key presses per second generated for each computer player
+     */
+    public final double computerKeyRate;
+
+    /**
+     * True iff the computer key presses arrive as a Poisson process (otherwise they arrive at a fixed rate)
+     */
+    public final boolean computerKeyPoisson;
+
+    /**
+     * True iff the game threads (dealer, players and game services) should run as virtual threads (Java 21+)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * True iff the whole game runs as events on a single game loop (otherwise a thread per player)
+     */
+    public final boolean eventLoop;
+
+    /**
+     * True iff the game runs in virtual time, jumping to the next deadline whenever all the game threads are idle
+     * (for simulations: a human player cannot keep up)
+     */
+    public final boolean virtualTime;
+
+    /**
+     * The TCP port remote players connect to, to play the human players' seats (0 if remote players are disabled)
+     */
+    public final int serverPort;
+
+    /**
+     * The TCP port spectators connect to, to watch the game as a binary stream (0 if the stream is disabled)
+     */
+    public final int spectatorPort;
+
+    /**
+     * The file the live game is mirrored to for external monitors (empty if the live state is disabled)
+     */
+    public final String liveStateFile;
+
+    /**
+     * The directory the binary event journal of the game is written to (empty if the journal is disabled)
+     */
+    public final String journalDirectory;
+
+    /**
+     * The size of every segment file of the journal
+     */
+    public final long journalSegmentBytes;
+
+    /**
+     * True iff a standby watches the dealer thread and takes over the game if it fails (thread per player engine only)
+     */
+    public final boolean standbyDealer;
+
+    /**
+     * How long the dealer thread may go without a heartbeat before the standby dealer takes over
+     */
+    public final long failoverTimeoutMillis;
+
+    /**
+     * The seed of all the game's random streams (see GameRandom). A random seed if the game is not seeded
+     */
+    public final long seed;
+
+    /**
+     * True iff the seed was configured (Seed), so the game deals and places its cards the same way every run
+     */
+    public final boolean seeded;
+
+    /**
+     * The file the game's checkpoints are written to (empty if checkpoints are disabled)
+     */
+    public final String checkpointFile;
+
+    /**
+     * The game time between two checkpoints
+     */
+    public final long checkpointIntervalMillis;
+
+    /**
+     * True iff the game resumes from the checkpoint file (if there is one) instead of starting a new game
+     */
+    public final boolean resumeFromCheckpoint;
+
+    /**
+     * The directory of the leaderboard the games are rated on (empty if the games are not rated)
+     */
+    public final String leaderboardDirectory;
+
+    /**
+     * True iff the game's counters and latency histograms are published as JMX MBeans (see GameMetrics)
+     */
+    public final boolean jmxMetrics;
+
+    /**
+     * True iff the waits for the table's monitor and the times it is held are profiled per call site (see LockProfiler)
+     */
+    public final boolean lockProfiling;
+
+    /**
+     * The share of the key presses traced from the key event to the token on the screen (0 to trace none, see
+     * InputTracer)
+     */
+    public final double inputTraceSampling;
+
+    /**
+     * The strategy of each computer player (see Strategy::create)
+     */
+    public final String[] playerStrategies;
+
+    /**
+     * The key press rate of each computer player (key presses per second)
+     */
+    public final double[] playerKeyRates;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -155,7 +273,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    public static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -210,6 +328,44 @@ public class Config {
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        computerKeyRate = Double.parseDouble(properties.getProperty("ComputerKeyRate", "10"));
+        if (computerKeyRate <= 0)
+            logger.severe("invalid computer key rate: " + computerKeyRate + " (computer players will not press keys)");
+        computerKeyPoisson = properties.getProperty("ComputerKeyArrivals", "Poisson").trim().equalsIgnoreCase("Poisson");
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
+        if (virtualThreads && !GameThreads.virtualThreadsSupported())
+            logger.severe("warning: virtual threads are not supported by this JVM. Using platform threads.");
+        eventLoop = properties.getProperty("ExecutionEngine", "Threads").trim().equalsIgnoreCase("EventLoop");
+        virtualTime = Boolean.parseBoolean(properties.getProperty("VirtualTime", "False"));
+        serverPort = Integer.parseInt(properties.getProperty("ServerPort", "0"));
+        spectatorPort = Integer.parseInt(properties.getProperty("SpectatorPort", "0"));
+        liveStateFile = properties.getProperty("LiveStateFile", "").trim();
+        String seedProperty = properties.getProperty("Seed", "").trim();
+        seeded = !seedProperty.isEmpty();
+        seed = seeded ? Long.parseLong(seedProperty) : new SplittableRandom().nextLong();
+        logger.info("game seed: " + seed + (seeded ? "" : " (random, set Seed=" + seed + " to play the same game again)"));
+        journalDirectory = properties.getProperty("JournalDirectory", "").trim();
+        journalSegmentBytes = Long.parseLong(properties.getProperty("JournalSegmentBytes", "4194304"));
+        standbyDealer = Boolean.parseBoolean(properties.getProperty("StandbyDealer", "False"));
+        failoverTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("FailoverTimeoutSeconds", "3")) * 1000.0);
+        if (standbyDealer && eventLoop)
+            logger.severe("warning: the standby dealer is not supported on the event loop. Running without it.");
+        checkpointFile = properties.getProperty("CheckpointFile", "").trim();
+        checkpointIntervalMillis = (long) (Double.parseDouble(properties.getProperty("CheckpointIntervalSeconds", "5")) * 1000.0);
+        resumeFromCheckpoint = Boolean.parseBoolean(properties.getProperty("ResumeFromCheckpoint", "False"));
+        leaderboardDirectory = properties.getProperty("LeaderboardDirectory", "").trim();
+        jmxMetrics = Boolean.parseBoolean(properties.getProperty("JmxMetrics", "False"));
+        lockProfiling = Boolean.parseBoolean(properties.getProperty("LockProfiling", "False"));
+        inputTraceSampling = Double.parseDouble(properties.getProperty("InputTraceSampling", "0"));
+        // a strategy may be followed by its own key press rate (e.g. Seeker:5)
+        String[] strategies = properties.getProperty("PlayerStrategies", "Random").split(",");
+        playerStrategies = new String[players];
+        playerKeyRates = new double[players];
+        for (int i = 0; i < players; i++) {
+            String[] strategy = (i < strategies.length ? strategies[i] : "Random").trim().split(":", 2);
+            playerStrategies[i] = strategy[0].trim();
+            playerKeyRates[i] = strategy.length > 1 ? Double.parseDouble(strategy[1].trim()) : computerKeyRate;
+        }
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
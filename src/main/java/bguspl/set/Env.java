@@ -8,11 +8,29 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Clock clock;
+    public final GameRandom random;
+
+    /**
+     * The tracer of the key presses (null unless InputTraceSampling is set).
+     */
+    public final InputTracer tracer;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, config.virtualTime ? new VirtualClock() : SystemClock.INSTANCE);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock) {
+        this(logger, config, ui, util, clock, InputTracer.create(logger, config));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Clock clock, InputTracer tracer) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.clock = clock;
+        this.random = new GameRandom(config.seed);
+        this.tracer = tracer;
     }
 }
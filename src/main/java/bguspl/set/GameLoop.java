@@ -0,0 +1,285 @@
+package bguspl.set;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * A single threaded event loop. Events posted from any thread and timers scheduled on the loop run one at a time,
+ * in order, on the loop thread, so the game state they touch needs no further coordination. Events must never
+ * block: the loop thread parks only when there is nothing to run.
+ * <p>
+ * A loop either owns a thread (see run) or is pooled: it then runs in short turns on a shared executor, so many
+ * loops (e.g. the rooms of a game server) share a bounded number of threads. A pooled loop needs a real time clock.
+ */
+public class GameLoop implements Runnable {
+
+    private final Logger logger;
+
+    /**
+     * The clock of the game (timer deadlines and parking go through it).
+     */
+    private final Clock clock;
+
+    /**
+     * Events posted by any thread (including the loop thread itself).
+     */
+    private final ConcurrentLinkedQueue<Runnable> events = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Timers ordered by deadline (loop thread only).
+     */
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+
+    /**
+     * The shared executor of a pooled loop (null if the loop owns a thread).
+     */
+    private final ScheduledExecutorService pool;
+
+    /**
+     * The maximum number of events a pooled loop runs in a single turn, so the loops sharing the pool take turns.
+     */
+    private static final int TURN_EVENTS = 64;
+
+    /**
+     * True iff a turn of the pooled loop is submitted to the pool or running.
+     */
+    private final AtomicBoolean submitted = new AtomicBoolean();
+
+    /**
+     * The wake-up of the pooled loop for its earliest timer, and its deadline (loop thread only).
+     */
+    private ScheduledFuture<?> wakeUp;
+    private long wakeUpNanos = Long.MAX_VALUE;
+
+    private final CompletableFuture<Void> termination = new CompletableFuture<>();
+
+    /**
+     * The total time a pooled loop spent running its turns.
+     */
+    private volatile long busyNanos;
+
+    private volatile Thread thread;
+    private volatile boolean stopped;
+
+    /**
+     * The number of timers scheduled so far, used to run timers with the same deadline in scheduling order.
+     */
+    private long scheduled;
+
+    public GameLoop(Logger logger, Clock clock) {
+        this(logger, clock, null);
+    }
+
+    /**
+     * @param logger - the logger of the game.
+     * @param clock  - the clock of the game.
+     * @param pool   - the executor running the turns of the loop (null if the loop should be run on its own thread).
+     */
+    public GameLoop(Logger logger, Clock clock, ScheduledExecutorService pool) {
+        this.logger = logger;
+        this.clock = clock;
+        this.pool = pool;
+    }
+
+    /**
+     * Posts an event to the loop (thread safe).
+     *
+     * @param event - the event to run on the loop thread.
+     */
+    public void execute(Runnable event) {
+        events.add(event);
+        if (pool != null) {
+            submit();
+            return;
+        }
+        Thread current = thread;
+        if (current != null && current != Thread.currentThread()) clock.unpark(current);
+    }
+
+    /**
+     * Schedules an event to run after a delay (loop thread only).
+     *
+     * @param event       - the event to run on the loop thread.
+     * @param delayMillis - the delay in milliseconds.
+     * @return - the timer, which can be used to cancel the event.
+     */
+    public Timer schedule(Runnable event, long delayMillis) {
+        return scheduleNanos(event, TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    }
+
+    /**
+     * Schedules an event to run after a delay in nanoseconds (loop thread only).
+     *
+     * @param event      - the event to run on the loop thread.
+     * @param delayNanos - the delay in nanoseconds.
+     * @return - the timer, which can be used to cancel the event.
+     */
+    public Timer scheduleNanos(Runnable event, long delayNanos) {
+        Timer timer = new Timer(event, clock.nanos() + Math.max(0, delayNanos), scheduled++);
+        timers.add(timer);
+        return timer;
+    }
+
+    /**
+     * @return - true iff called on the loop thread.
+     */
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Stops the loop (thread safe). Events and timers that did not run yet are dropped.
+     */
+    public void stop() {
+        stopped = true;
+        if (pool != null) {
+            submit();
+            return;
+        }
+        Thread current = thread;
+        if (current != null) clock.unpark(current);
+    }
+
+    /**
+     * @return - a future completed once the loop stopped running.
+     */
+    public CompletableFuture<Void> termination() {
+        return termination;
+    }
+
+    /**
+     * @return - the total time a pooled loop spent running events and timers.
+     */
+    public long busyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * The loop thread starts here.
+     */
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        while (!stopped) {
+            Runnable event;
+            while (!stopped && (event = events.poll()) != null)
+                runSafely(event);
+
+            long now = clock.nanos();
+            while (!stopped && !timers.isEmpty() && timers.peek().deadlineNanos <= now) {
+                Timer timer = timers.poll();
+                if (!timer.cancelled) runSafely(timer.event);
+                now = clock.nanos();
+            }
+
+            if (stopped || !events.isEmpty()) continue;
+            if (timers.isEmpty()) clock.park(this);
+            else clock.parkNanos(this, timers.peek().deadlineNanos - clock.nanos());
+        }
+        thread = null;
+        termination.complete(null);
+    }
+
+    /**
+     * Submits a turn of the pooled loop, unless one is already submitted or running.
+     */
+    private void submit() {
+        if (!submitted.compareAndSet(false, true)) return;
+        try {
+            pool.execute(this::turn);
+        } catch (RejectedExecutionException e) {
+            // the pool was shut down: the loop cannot run anymore
+            stopped = true;
+            termination.complete(null);
+        }
+    }
+
+    /**
+     * A single turn of a pooled loop: runs the waiting events (up to TURN_EVENTS) and the due timers, then
+     * resubmits itself if events are still waiting, or schedules a wake-up for the earliest timer.
+     */
+    private void turn() {
+        long start = System.nanoTime();
+        thread = Thread.currentThread();
+        try {
+            Runnable event;
+            for (int i = 0; i < TURN_EVENTS && !stopped && (event = events.poll()) != null; ++i)
+                runSafely(event);
+            while (!stopped && !timers.isEmpty() && timers.peek().deadlineNanos <= clock.nanos()) {
+                Timer timer = timers.poll();
+                if (!timer.cancelled) runSafely(timer.event);
+            }
+        } finally {
+            thread = null;
+            busyNanos += System.nanoTime() - start;
+        }
+
+        if (stopped) {
+            if (wakeUp != null) wakeUp.cancel(false);
+            termination.complete(null);
+            return;
+        }
+        submitted.set(false);
+        // an event posted while the turn was running could not submit another turn
+        if (!events.isEmpty() || (!timers.isEmpty() && timers.peek().deadlineNanos <= clock.nanos())) submit();
+        else if (!timers.isEmpty()) wakeUpAt(timers.peek().deadlineNanos);
+    }
+
+    private void wakeUpAt(long deadlineNanos) {
+        // a pending wake-up that is not later than the deadline will do
+        if (wakeUpNanos <= deadlineNanos && wakeUpNanos > clock.nanos()) return;
+        if (wakeUp != null) wakeUp.cancel(false);
+        wakeUpNanos = deadlineNanos;
+        try {
+            wakeUp = pool.schedule(this::submit, deadlineNanos - clock.nanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            stopped = true;
+            termination.complete(null);
+        }
+    }
+
+    private void runSafely(Runnable event) {
+        try {
+            event.run();
+        } catch (RuntimeException e) {
+            logger.severe("event failed on the game loop: " + e);
+        }
+    }
+
+    /**
+     * A timed event.
+     */
+    public static class Timer implements Comparable<Timer> {
+
+        private final Runnable event;
+        private final long deadlineNanos;
+        private final long order;
+        private boolean cancelled;
+
+        private Timer(Runnable event, long deadlineNanos, long order) {
+            this.event = event;
+            this.deadlineNanos = deadlineNanos;
+            this.order = order;
+        }
+
+        /**
+         * Cancels the event (loop thread only).
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            int byDeadline = Long.compare(deadlineNanos, other.deadlineNanos);
+            return byDeadline != 0 ? byDeadline : Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package bguspl.set;
+
+import java.util.SplittableRandom;
+
+/**
+ * The random streams of a game, all derived from the game's seed (Config::seed). Every component that needs random
+ * numbers gets its own stream by name (and index, e.g. per player), so a stream does not depend on how many numbers
+ * the other components drew, or on the order the components were created in. With the same seed and the same input,
+ * a game deals and places its cards the same way every time. A stream belongs to the one thread that draws from it.
+ */
+public class GameRandom {
+
+    private final long seed;
+
+    public GameRandom(long seed) {
+        this.seed = seed;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * @param component - the name of the component drawing from the stream.
+     * @return - a new stream of the component (the same numbers for the same seed and name).
+     */
+    public SplittableRandom stream(String component) {
+        return stream(component, 0);
+    }
+
+    /**
+     * @param component - the name of the component drawing from the stream.
+     * @param index     - the instance of the component (e.g. the player id).
+     * @return - a new stream of the component instance (the same numbers for the same seed, name and index).
+     */
+    public SplittableRandom stream(String component, int index) {
+        return new SplittableRandom(mix(mix(seed ^ component.hashCode()) + index));
+    }
+
+    /**
+     * @return - the seed of game number n of a series of games played from the same seed.
+     */
+    public static long gameSeed(long seed, long n) {
+        return mix(seed + n * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * The SplitMix64 finalizer: spreads a small change of the input over all the bits of the output.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,88 @@
+package bguspl.set;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads of a game (dealer, players and the shared game services), either as platform threads or,
+ * when Config::virtualThreads is set and the running JVM supports them (Java 21 or newer), as virtual threads.
+ * The virtual threads API is looked up reflectively, so the game still builds and runs on Java 17.
+ */
+public final class GameThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+
+    static {
+        Method ofVirtual = null, name = null, unstarted = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ClassNotFoundException | NoSuchMethodException ignored) {
+            // running on a JVM without virtual threads
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_UNSTARTED = unstarted;
+    }
+
+    private GameThreads() {}
+
+    /**
+     * @return - true iff the running JVM supports virtual threads.
+     */
+    public static boolean virtualThreadsSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates a game thread, registered with the game's clock (so it must be started).
+     *
+     * @param env    - the game environment (its configuration decides between platform and virtual threads).
+     * @param task   - the task the thread runs.
+     * @param name   - the name of the thread.
+     * @return - a new unstarted thread.
+     */
+    public static Thread newThread(Env env, Runnable task, String name) {
+        Clock clock = env.clock;
+        Runnable registered = () -> {
+            try {
+                task.run();
+            } finally {
+                clock.deregister();
+            }
+        };
+        Thread thread = create(env.config, registered, name);
+        clock.register(thread);
+        return thread;
+    }
+
+    private static Thread create(Config config, Runnable task, String name) {
+        if (config.virtualThreads && virtualThreadsSupported()) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("cannot create virtual thread " + name, e);
+            }
+        }
+        return new Thread(task, name);
+    }
+
+    /**
+     * @param env  - the game environment.
+     * @param name - the name of the threads.
+     * @return - a factory of daemon game threads (for the shared game services).
+     */
+    public static ThreadFactory daemonFactory(Env env, String name) {
+        return task -> {
+            Thread thread = newThread(env, task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
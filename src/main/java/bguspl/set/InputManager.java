@@ -17,10 +17,19 @@ class InputManager extends KeyAdapter {
     int[] keyMap = new int[MAX_KEY_CODE + 1];
     int[] keyToSlot = new int[MAX_KEY_CODE + 1];
     private final Logger logger;
+    private final InputTracer tracer;
 
     public InputManager(Logger logger, Config config, Player[] players) {
+        this(logger, config, players, null);
+    }
+
+    /**
+     * @param tracer - the tracer of the key presses (null if they are not traced).
+     */
+    public InputManager(Logger logger, Config config, Player[] players, InputTracer tracer) {
         this.players = players;
         this.logger = logger;
+        this.tracer = tracer;
 
         // initialize the keys
         for (int player = 0; player < config.players; ++player)
@@ -43,8 +52,9 @@ class InputManager extends KeyAdapter {
         int keyCode = e.getKeyCode();
         int player = keyMap[keyCode] - 1;
         if (player >= 0){
+            long trace = tracer == null ? InputTracer.NONE : tracer.begin();
             logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
-            players[player].keyPressed(keyToSlot[keyCode]);
+            players[player].keyPressed(keyToSlot[keyCode], trace);
         }
     }
 }
@@ -0,0 +1,276 @@
+package bguspl.set;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Traces key presses from the key event to the token on the screen (opt in, see InputTraceSampling). A sampled key
+ * press gets a trace id that travels with it through the player's queue, and every stage it passes stamps the trace
+ * with System.nanoTime:
+ * <pre>
+ *   KEY_EVENT   the key event is dispatched to the player (InputManager, or the computer key press generator)
+ *   QUEUED      the key press is offered to the player's queue
+ *   DEQUEUED    the player (its thread or the game loop) takes the key press
+ *   LOCKED      the player holds the table's monitor
+ *   UI_ENTERED  the table calls the user interface to draw the token
+ *   UI_RETURNED the user interface call returned
+ *   RENDERED    the Swing event thread painted the token (only with the Swing user interface)
+ * </pre>
+ * The time between two consecutive stages is recorded per stage, for all the traces of the game, and report() shows
+ * the breakdown. The thread that handles a key press knows its trace (see dequeued), so the table and the user
+ * interface stamp it without being passed the id. Only one in every 1/sampling key presses is traced, and a key
+ * press that is not traced costs a counter increment; tracing allocates nothing but the Swing repaint callback.
+ */
+public class InputTracer {
+
+    public enum Stage {
+        KEY_EVENT("key event"), QUEUED("dispatch"), DEQUEUED("queue"), LOCKED("table lock"), UI_ENTERED("toggle"),
+        UI_RETURNED("ui call"), RENDERED("repaint");
+
+        /**
+         * The name of the time spent from the previous stage to this one.
+         */
+        public final String span;
+
+        Stage(String span) {
+            this.span = span;
+        }
+    }
+
+    /**
+     * The id of a key press that is not traced.
+     */
+    public static final long NONE = -1;
+
+    private static final Stage[] STAGES = Stage.values();
+
+    /**
+     * The number of traces that can be in flight at once (sampled key presses not yet on the screen).
+     */
+    private static final int CAPACITY = 1024;
+
+    private final Logger logger;
+    private final long period;
+    private final AtomicLong presses = new AtomicLong();
+    private final AtomicLong traces = new AtomicLong();
+
+    /**
+     * The stamps of the traces in flight (CAPACITY rows of a stamp per stage, 0 if the stage was not reached), and
+     * the number of parts of every trace still to finish (handling the key press, and painting it).
+     */
+    private final AtomicLongArray stamps = new AtomicLongArray(CAPACITY * STAGES.length);
+    private final AtomicIntegerArray pending = new AtomicIntegerArray(CAPACITY);
+
+    private final LatencyHistogram[] spans = new LatencyHistogram[STAGES.length];
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+
+    private final ThreadLocal<long[]> current = ThreadLocal.withInitial(() -> new long[]{NONE});
+
+    /**
+     * @param logger   - the game's logger (every completed trace is logged at FINE).
+     * @param sampling - the share of the key presses to trace (in (0, 1]).
+     */
+    public InputTracer(Logger logger, double sampling) {
+        if (!(sampling > 0 && sampling <= 1))
+            throw new IllegalArgumentException("the sampling must be in (0, 1]: " + sampling);
+        this.logger = logger;
+        this.period = Math.max(1, Math.round(1 / sampling));
+        for (int stage = 1; stage < spans.length; ++stage)
+            spans[stage] = new LatencyHistogram();
+    }
+
+    /**
+     * @return - a tracer for the configured sampling, or null if key presses are not traced.
+     */
+    public static InputTracer create(Logger logger, Config config) {
+        return config.inputTraceSampling > 0 ? new InputTracer(logger, config.inputTraceSampling) : null;
+    }
+
+    private int row(long trace) {
+        return (int) (trace & (CAPACITY - 1));
+    }
+
+    private void stamp(long trace, Stage stage) {
+        if (trace != NONE)
+            stamps.set(row(trace) * STAGES.length + stage.ordinal(), System.nanoTime());
+    }
+
+    /**
+     * Called when a key is pressed.
+     *
+     * @return - the id of the key press's trace, or NONE if it is not sampled.
+     */
+    public long begin() {
+        if (presses.getAndIncrement() % period != 0)
+            return NONE;
+        long trace = traces.getAndIncrement();
+        int row = row(trace);
+        for (int stage = 0; stage < STAGES.length; ++stage)
+            stamps.set(row * STAGES.length + stage, 0);
+        pending.set(row, 1);
+        stamp(trace, Stage.KEY_EVENT);
+        return trace;
+    }
+
+    /**
+     * Called right before the key press is offered to the player's queue.
+     */
+    public void queued(long trace) {
+        stamp(trace, Stage.QUEUED);
+    }
+
+    /**
+     * Called when the key press was dropped: the player's queue was full, or it was cleared when the player was
+     * frozen.
+     */
+    public void dropped(long trace) {
+        if (trace == NONE)
+            return;
+        dropped.increment();
+        pending.set(row(trace), 0);
+    }
+
+    /**
+     * Called by the thread that took the key press from the queue, which handles it until processed() is called.
+     */
+    public void dequeued(long trace) {
+        stamp(trace, Stage.DEQUEUED);
+        current.get()[0] = trace;
+    }
+
+    /**
+     * @return - the trace of the key press the calling thread is handling, or NONE.
+     */
+    public long current() {
+        return current.get()[0];
+    }
+
+    /**
+     * Stamps the trace of the key press the calling thread is handling (if any).
+     */
+    public void reached(Stage stage) {
+        stamp(current.get()[0], stage);
+    }
+
+    /**
+     * Called by a user interface that draws the token later on another thread, which must then call rendered().
+     *
+     * @return - the trace of the key press the calling thread is handling, or NONE.
+     */
+    public long awaitRender() {
+        long trace = current.get()[0];
+        if (trace != NONE)
+            pending.incrementAndGet(row(trace));
+        return trace;
+    }
+
+    /**
+     * Called when the token of a key press was painted (see awaitRender).
+     */
+    public void rendered(long trace) {
+        stamp(trace, Stage.RENDERED);
+        finish(trace);
+    }
+
+    /**
+     * Called by the thread handling the key press once it is done with it.
+     */
+    public void processed() {
+        long[] handled = current.get();
+        long trace = handled[0];
+        handled[0] = NONE;
+        finish(trace);
+    }
+
+    private void finish(long trace) {
+        if (trace == NONE || pending.decrementAndGet(row(trace)) != 0)
+            return;
+        int base = row(trace) * STAGES.length;
+        if (stamps.get(base + Stage.UI_RETURNED.ordinal()) == 0) {
+            unchanged.increment();  // an empty slot, a fourth token, or a key press during a reshuffle
+            return;
+        }
+        long first = stamps.get(base), previous = first, last = first;
+        StringBuilder line = logger.isLoggable(Level.FINE) ? new StringBuilder("input trace " + trace + ":") : null;
+        for (int stage = 1; stage < STAGES.length; ++stage) {
+            long stamp = stamps.get(base + stage);
+            if (stamp == 0)
+                continue;
+            spans[stage].record(stamp - previous);
+            if (line != null)
+                line.append(' ').append(STAGES[stage].span).append(' ').append(stamp - previous).append("ns");
+            previous = stamp;
+            last = Math.max(last, stamp);
+        }
+        total.record(last - first);
+        completed.increment();
+        if (line != null)
+            logger.fine(line.append(", total ").append(last - first).append("ns").toString());
+    }
+
+    /**
+     * @return - the time spent reaching the given stage (after KEY_EVENT) from the previous one, over all the
+     * completed traces.
+     */
+    public LatencyHistogram span(Stage stage) {
+        return spans[stage.ordinal()];
+    }
+
+    /**
+     * @return - the time from the key event to the last stage reached, over all the completed traces.
+     */
+    public LatencyHistogram total() {
+        return total;
+    }
+
+    /**
+     * @return - the number of traces that reached the user interface.
+     */
+    public long completed() {
+        return completed.sum();
+    }
+
+    /**
+     * @return - the number of traced key presses handled without changing a token.
+     */
+    public long unchanged() {
+        return unchanged.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return - the breakdown of the time from a key event to its token on the screen, stage by stage.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "input latency of %d traced key presses (1 in %d; %d did not change a token, %d were dropped), in us%n",
+                completed(), period, unchanged(), dropped()));
+        report.append(String.format(Locale.ROOT, "%-12s %9s %9s %9s %9s %9s %7s%n", "stage", "count", "mean", "p50",
+                "p99", "max", "share"));
+        double totalNanos = total.mean() * total.count();
+        for (int stage = 1; stage < STAGES.length; ++stage)
+            report.append(line(STAGES[stage].span, spans[stage], totalNanos));
+        return report.append(line("total", total, totalNanos)).toString().trim();
+    }
+
+    /**
+     * @param totalNanos - the time of all the completed traces (the share is the stage's part of it).
+     */
+    private static String line(String name, LatencyHistogram histogram, double totalNanos) {
+        double nanos = histogram.mean() * histogram.count();
+        return String.format(Locale.ROOT, "%-12s %9d %9.1f %9.1f %9.1f %9.1f %6.1f%%%n", name, histogram.count(),
+                histogram.mean() / 1e3, histogram.percentile(50) / 1e3, histogram.percentile(99) / 1e3,
+                histogram.max() / 1e3, totalNanos == 0 ? 0 : 100 * nanos / totalNanos);
+    }
+}
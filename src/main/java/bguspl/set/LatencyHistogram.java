@@ -0,0 +1,118 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, log-linear latency histogram (in the spirit of HdrHistogram).
+ * Values are recorded in nanoseconds with a relative precision of about 3%. Recording is lock free and never
+ * allocates, so it is safe to call from any game thread.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of bits used for the linear sub buckets of every power of two (2^5 = 32 sub buckets).
+     */
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a single value.
+     *
+     * @param nanos - the value to record (negative values are recorded as 0).
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(indexOf(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) ;
+    }
+
+    /**
+     * Adds all the values recorded in another histogram to this one.
+     *
+     * @param other - the histogram to merge.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; ++i) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        count.addAndGet(other.count());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max(), current;
+        while (otherMax > (current = max.get()) && !max.compareAndSet(current, otherMax)) ;
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i) counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long c = count.get();
+        return c == 0 ? 0 : (double) sum.get() / c;
+    }
+
+    /**
+     * Returns the value at the given percentile.
+     *
+     * @param percentile - the percentile (between 0 and 100).
+     * @return - the (approximate) value below which the given percentage of the recorded values fall.
+     */
+    public long percentile(double percentile) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValueOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * @return - a one line summary of the histogram in microseconds.
+     */
+    public String summary() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                count(), mean() / 1000.0, percentile(50) / 1000.0, percentile(90) / 1000.0,
+                percentile(99) / 1000.0, percentile(99.9) / 1000.0, max() / 1000.0);
+    }
+
+    private static int indexOf(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (msb < SUB_BITS) return (int) value;
+        int shift = msb - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB_COUNT);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_COUNT) return index;
+        int shift = (index >> SUB_BITS) - 1;
+        long lowest = (long) ((index & (SUB_COUNT - 1)) + SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -2,10 +2,22 @@ package bguspl.set;
 
 import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
+import bguspl.set.ex.Checkpoint;
+import bguspl.set.ex.CheckpointWriter;
+import bguspl.set.ex.StandbyDealer;
+import bguspl.set.monitor.GameMetrics;
+import bguspl.set.monitor.Journal;
 import bguspl.set.ex.Table;
+import bguspl.set.monitor.LiveState;
+import bguspl.set.rating.Leaderboard;
+import bguspl.set.server.PlayerServer;
+import bguspl.set.server.SpectatorStream;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -46,33 +58,110 @@ public class Main {
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
+        InputTracer tracer = InputTracer.create(logger, config);
         UserInterface ui = null;
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
+            ui = new UserInterfaceSwing(logger, config, players, tracer);
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
         }
+        if (config.serverPort > 0) {
+            try {
+                PlayerServer server = new PlayerServer(logger, config, players, ui, config.serverPort);
+                server.start();
+                ui = server;
+            } catch (IOException e) {
+                logger.severe("error starting the player server on port " + config.serverPort + ": " + e.getMessage());
+            }
+        }
+        if (config.spectatorPort > 0) {
+            SpectatorStream spectators = new SpectatorStream(logger, config, ui, SpectatorStream.DEFAULT_BUFFER_BYTES);
+            try {
+                spectators.listen(config.spectatorPort);
+            } catch (IOException e) {
+                logger.severe("error starting the spectator stream on port " + config.spectatorPort + ": " + e.getMessage());
+            }
+            ui = spectators;
+        }
+        Clock clock = config.virtualTime ? new VirtualClock() : SystemClock.INSTANCE;
+        if (!config.liveStateFile.isEmpty()) {
+            try {
+                ui = new LiveState(config, Paths.get(config.liveStateFile), clock, ui);
+            } catch (IOException e) {
+                logger.severe("error mapping the live state file " + config.liveStateFile + ": " + e.getMessage());
+            }
+        }
+        Journal journal = null;
+        if (!config.journalDirectory.isEmpty()) {
+            try {
+                ui = journal = new Journal(logger, config, Paths.get(config.journalDirectory), clock, ui);
+            } catch (IOException e) {
+                logger.severe("error creating the journal in " + config.journalDirectory + ": " + e.getMessage());
+            }
+        }
         ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        Env env = new Env(logger, config, ui, util, clock, tracer);
 
         // create the game entities
         Table table = new Table(env);
         dealer = new Dealer(env, table, players);
+        if (journal != null) dealer.journalTo(journal);
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
-        // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-        dealerThread.startWithLog();
+        // start the dealer thread (or the game loop driving the dealer and the players)
+        Thread dealerThread;
+        StandbyDealer standby = null;
+        if (config.eventLoop) {
+            GameLoop loop = new GameLoop(logger, env.clock);
+            loop.execute(() -> dealer.start(loop));
+            dealerThread = GameThreads.newThread(env, loop, "game-loop");
+        } else {
+            dealerThread = GameThreads.newThread(env, dealer, "dealer");
+            if (config.standbyDealer) {
+                standby = new StandbyDealer(env, dealer, config.failoverTimeoutMillis);
+                standby.start();
+            }
+        }
+        if (!config.checkpointFile.isEmpty()) {
+            Path checkpointFile = Paths.get(config.checkpointFile);
+            if (config.resumeFromCheckpoint && Files.exists(checkpointFile)) {
+                try {
+                    dealer.resumeFrom(Checkpoint.read(checkpointFile));
+                } catch (IOException | IllegalArgumentException e) {
+                    logger.severe("error resuming the checkpoint " + checkpointFile + ": " + e.getMessage() + " (starting a new game)");
+                }
+            }
+            dealer.checkpointTo(new CheckpointWriter(logger, checkpointFile, config.checkpointIntervalMillis));
+        }
+        GameMetrics metrics = config.jmxMetrics ? new GameMetrics(logger, dealer, config.players).register() : null;
+        Leaderboard leaderboard = null;
+        if (!config.leaderboardDirectory.isEmpty()) {
+            try {
+                leaderboard = new Leaderboard(logger, Paths.get(config.leaderboardDirectory));
+                dealer.rankOn(leaderboard);
+            } catch (IOException e) {
+                logger.severe("error opening the leaderboard in " + config.leaderboardDirectory + ": " + e.getMessage());
+            }
+        }
+        ThreadLogger.logStart(logger, dealerThread.getName());
+        dealerThread.start();
 
         try {
             // shutdown stuff
-            dealerThread.joinWithLog();
+            try {
+                if (standby != null) standby.join();
+                else dealerThread.join();
+            } finally {
+                ThreadLogger.logStop(logger, dealerThread.getName());
+            }
             if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+            if (leaderboard != null) leaderboard.close();
+            if (metrics != null) metrics.unregister();
         } catch (InterruptedException ignored) {
         } finally {
             logger.severe("thanks for playing... it was fun!");
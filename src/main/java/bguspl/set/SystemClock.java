@@ -0,0 +1,54 @@
+package bguspl.set;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The real time clock.
+ */
+public class SystemClock implements Clock {
+
+    public static final SystemClock INSTANCE = new SystemClock();
+
+    private SystemClock() {}
+
+    @Override
+    public long millis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long nanos() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public void park(Object blocker) {
+        LockSupport.park(blocker);
+    }
+
+    @Override
+    public void parkNanos(Object blocker, long nanos) {
+        LockSupport.parkNanos(blocker, nanos);
+    }
+
+    @Override
+    public void unpark(Thread thread) {
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void join(Thread thread) throws InterruptedException {
+        thread.join();
+    }
+
+    @Override
+    public void register(Thread thread) {}
+
+    @Override
+    public void deregister() {}
+}
@@ -0,0 +1,197 @@
+package bguspl.set;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timer wheel: a single worker thread that runs many short timed tasks. Each task is hashed into the
+ * bucket of the tick in which it expires (with the number of full wheel rounds left), so scheduling and expiring
+ * a task costs O(1) no matter how many tasks are pending. A task never runs before its delay has passed, and runs
+ * at the first tick after it. The worker parks until the end of the next tick with a task in it (skipping empty
+ * ticks), and parks without a deadline while nothing is pending.
+ */
+public class TimerWheel {
+
+    private final Logger logger;
+    private final Clock clock;
+    private final String name;
+    private final ThreadFactory threadFactory;
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] wheel;
+    private final int mask;
+
+    /**
+     * Tasks scheduled by other threads, waiting to be hashed into the wheel by the worker.
+     */
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+
+    private Thread worker;
+    private volatile boolean shutdown;
+
+    /**
+     * The number of tasks in the wheel (worker only).
+     */
+    private int pending;
+
+    private long startNanos;
+    private long tick;
+
+    /**
+     * @param logger     - the logger used for the worker's start/stop messages.
+     * @param clock      - the clock of the game.
+     * @param name       - the name of the worker thread.
+     * @param factory    - the factory creating the worker thread.
+     * @param tickMillis - the duration of a single tick (the precision of the wheel).
+     * @param wheelSize  - the number of buckets (rounded up to a power of two).
+     */
+    @SuppressWarnings("unchecked") // a generic array can only be created as ArrayDeque<?>[] and cast
+    public TimerWheel(Logger logger, Clock clock, String name, ThreadFactory factory, long tickMillis, int wheelSize) {
+        this.logger = logger;
+        this.clock = clock;
+        this.name = name;
+        this.threadFactory = factory;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize));
+        if (size < wheelSize) size <<= 1;
+        wheel = (ArrayDeque<Timeout>[]) new ArrayDeque<?>[size];
+        for (int i = 0; i < size; ++i) wheel[i] = new ArrayDeque<>();
+        mask = size - 1;
+    }
+
+    /**
+     * Schedules a task (thread safe).
+     *
+     * @param task        - the task to run on the worker thread (it should be short and must not block).
+     * @param delayMillis - the delay in milliseconds.
+     * @return - a handle that can be used to cancel the task.
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task, clock.nanos() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        incoming.add(timeout);
+        Thread current = startIfNeeded();
+        if (current != null) clock.unpark(current);
+        return timeout;
+    }
+
+    /**
+     * Stops the worker thread. Tasks that did not run yet are dropped.
+     */
+    public void shutdown() {
+        Thread current;
+        synchronized (this) {
+            shutdown = true;
+            current = worker;
+        }
+        if (current == null) return;
+        current.interrupt();
+        try {
+            clock.join(current);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized Thread startIfNeeded() {
+        if (shutdown) return null;
+        if (worker == null) {
+            startNanos = clock.nanos();
+            worker = threadFactory.newThread(this::run);
+            ThreadLogger.logStart(logger, name);
+            worker.start();
+        }
+        return worker;
+    }
+
+    private void run() {
+        while (!shutdown) {
+            // while the wheel is empty, keep the tick counter in sync with the time
+            if (pending == 0) tick = (clock.nanos() - startNanos) / tickNanos;
+            transferIncoming();
+            if (pending == 0) {
+                // nothing to do: sleep until a task is scheduled
+                clock.park(this);
+                continue;
+            }
+            long next = nextBusyTick();
+            long now;
+            while ((now = clock.nanos()) < startNanos + (next + 1) * tickNanos && !shutdown) {
+                clock.parkNanos(this, startNanos + (next + 1) * tickNanos - now);
+                transferIncoming();
+                next = nextBusyTick();
+            }
+            tick = next;
+            expire(wheel[(int) tick & mask], now);
+            ++tick;
+        }
+        ThreadLogger.logStop(logger, name);
+    }
+
+    /**
+     * @return - the first tick from the current one whose bucket is not empty (the wheel must not be empty).
+     */
+    private long nextBusyTick() {
+        for (int i = 0; i < wheel.length; ++i)
+            if (!wheel[(int) (tick + i) & mask].isEmpty()) return tick + i;
+        return tick;
+    }
+
+    private void transferIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.cancelled) continue;
+            // the first tick that ends at or after the deadline
+            long expiryTick = Math.max(tick, (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos - 1);
+            timeout.rounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) expiryTick & mask].add(timeout);
+            ++pending;
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket, long now) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+                --pending;
+            } else if (timeout.rounds > 0) {
+                --timeout.rounds;
+            } else if (timeout.deadlineNanos <= now) {
+                it.remove();
+                --pending;
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    logger.severe("timer task failed on " + name + ": " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A handle of a scheduled task.
+     */
+    public static class Timeout {
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long rounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the task (it will not run, unless it is already running).
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -65,6 +65,14 @@ public interface UserInterface {
      */
     void setFreeze(int player, long millies);
 
+    /**
+     * Set the exact time at which a player's freeze is over (setFreeze shows it rounded up to whole seconds).
+     * Only the user interfaces that keep the deadline itself need it, so by default it is ignored.
+     * @param player      - the player id.
+     * @param untilMillis - the time on the game's clock at which the freeze is over, or -1 if the player is not frozen.
+     */
+    default void setFreezeDeadline(int player, long untilMillis) {}
+
     /**
      * Set the score for the relevent player in the player score panel.
      * @param player - the player id.
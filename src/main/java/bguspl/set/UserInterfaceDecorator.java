@@ -2,9 +2,14 @@ package bguspl.set;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+/**
+ * Logs every user interface call before passing it on. The messages are only built when the logger would publish
+ * them, so the calls allocate nothing when logging is off.
+ */
 public class UserInterfaceDecorator implements UserInterface {
 
     private final Logger logger;
@@ -21,21 +26,21 @@ public class UserInterfaceDecorator implements UserInterface {
 
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
+        if (logger.isLoggable(Level.SEVERE)) logger.severe("placing card " + card + " in slot " + slot);
         util.spin();
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
+        if (logger.isLoggable(Level.SEVERE)) logger.severe("removing card from slot " + slot);
         util.spin();
         if (ui != null) ui.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        if (logger.isLoggable(Level.SEVERE)) logger.severe("player " + (player + 1) + " placing token on slot " + slot);
         util.spin();
         if (ui != null) ui.placeToken(player, slot);
     }
@@ -49,14 +54,14 @@ public class UserInterfaceDecorator implements UserInterface {
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
+        if (logger.isLoggable(Level.SEVERE)) logger.severe("removing tokens from slot " + slot);
         util.spin();
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        if (logger.isLoggable(Level.SEVERE)) logger.severe("removing player " + (player + 1) + " token from slot " + slot);
         util.spin();
         if (ui != null) ui.removeToken(player, slot);
     }
@@ -70,29 +75,36 @@ public class UserInterfaceDecorator implements UserInterface {
 
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
+        if (logger.isLoggable(Level.SEVERE)) logger.severe("updating elapsed time to " + millies);
         util.spin();
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        if (logger.isLoggable(Level.SEVERE)) logger.severe("setting player " + (player + 1) + " freeze to " + millies);
         util.spin();
         if (ui != null) ui.setFreeze(player, millies);
     }
 
+    @Override
+    public void setFreezeDeadline(int player, long untilMillis) {
+        if (ui != null) ui.setFreezeDeadline(player, untilMillis);
+    }
+
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
+        if (logger.isLoggable(Level.SEVERE)) logger.severe("setting player " + (player + 1) + " score to " + score);
         util.spin();
         if (ui != null) ui.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
-        logger.severe("announcing winner(s): " + String.join(", ", winners));
+        if (logger.isLoggable(Level.SEVERE)) {
+            List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
+            logger.severe("announcing winner(s): " + String.join(", ", winners));
+        }
         if (ui != null) ui.announceWinner(players);
     }
 
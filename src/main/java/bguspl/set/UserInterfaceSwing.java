@@ -23,14 +23,23 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
     private final Config config;
+    private final InputTracer tracer;
 
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
 
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+        this(logger, config, players, null);
+    }
+
+    /**
+     * @param tracer - the tracer of the key presses (null if they are not traced).
+     */
+    public UserInterfaceSwing(Logger logger, Config config, Player[] players, InputTracer tracer) {
 
         this.config = config;
+        this.tracer = tracer;
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -63,7 +72,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         setLocationRelativeTo(null);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        addKeyListener(new InputManager(logger, config, players));
+        addKeyListener(new InputManager(logger, config, players, tracer));
         addWindowListener(new WindowManager());
 
         EventQueue.invokeLater(() -> setVisible(true));
@@ -287,6 +296,17 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     @Override
     public void placeToken(int player, int slot) {
         gamePanel.placeToken(player, slot);
+        traceRender();
+    }
+
+    /**
+     * Stamps the traced key press being handled once the token it changed is painted: the event thread runs the
+     * callback after the repaint the token's label requested.
+     */
+    private void traceRender() {
+        if (tracer == null) return;
+        long trace = tracer.awaitRender();
+        if (trace != InputTracer.NONE) EventQueue.invokeLater(() -> tracer.rendered(trace));
     }
 
     @Override
@@ -302,6 +322,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     @Override
     public void removeToken(int player, int slot) {
         gamePanel.removeToken(player, slot);
+        traceRender();
     }
 
     @Override
@@ -1,8 +1,10 @@
 package bguspl.set;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.IntStream;
 
@@ -13,15 +15,38 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The features of every card, by card geometry (featureSize, featureCount). The tables are immutable, so all
+     * the games with the same geometry share them.
+     */
+    private static final Map<List<Integer>, int[][]> FEATURE_TABLES = new ConcurrentHashMap<>();
+
+    /**
+     * The features of every card (shared, must not be modified).
+     */
+    private final int[][] features;
+
     public UtilImpl(Config config) {
         this.config = config;
+        this.features = FEATURE_TABLES.computeIfAbsent(List.of(config.featureSize, config.featureCount),
+                geometry -> featureTable(config.featureSize, config.featureCount));
     }
 
-    private void cardToFeatures(int card, int[] features) {
-        for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
-            card /= config.featureSize;
+    private static int[][] featureTable(int featureSize, int featureCount) {
+        int deckSize = (int) Math.pow(featureSize, featureCount);
+        int[][] table = new int[deckSize][featureCount];
+        for (int card = 0; card < deckSize; ++card) {
+            int rest = card;
+            for (int i = featureCount - 1; i >= 0; --i) {
+                table[card][i] = rest % featureSize;
+                rest /= featureSize;
+            }
         }
+        return table;
+    }
+
+    private void cardToFeatures(int card, int[] features) {
+        System.arraycopy(this.features[card], 0, features, 0, config.featureCount);
     }
 
     @Override
@@ -40,21 +65,21 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        // reads the shared feature table directly, so testing a set allocates nothing
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                if (features[cards[0]][i] != features[cards[j]][i]) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (features[cards[j - 1]][i] == features[cards[k]][i]) {
                         butDifferent = false;
                         break;
                     }
@@ -66,18 +91,21 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
-        LinkedList<int[]> sets = new LinkedList<>();
+        List<int[]> sets = new ArrayList<>(Math.min(count, 16));
         int n = deck.size();
         int r = config.featureSize;
         int[] combination = new int[r];
+        int[] cards = new int[r];  // reused for every combination, copied only when it is a set
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
         while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
+            for (int i = 0; i < r; ++i)
+                cards[i] = deck.get(combination[i]);
             if (testSet(cards)) {
-                sets.add(cards);
+                Arrays.sort(cards);
+                sets.add(cards.clone());
                 if (sets.size() >= count) return sets;
             }
 
@@ -0,0 +1,210 @@
+package bguspl.set;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A virtual time clock for simulations. The time stands still while any registered game thread is busy, and as
+ * soon as all of them are parked on the clock it jumps to the earliest deadline and wakes the threads waiting for
+ * it, so a game runs as fast as its logic allows with the same order of events as in real time.
+ * <p>
+ * A registered thread is busy from its registration until it parks on the clock, and again from the moment another
+ * thread unparks it (the unparking thread accounts for it, so the time cannot jump before it actually wakes up).
+ * Threads that are not registered (e.g. the main thread or a keyboard thread) wait in real time.
+ */
+public class VirtualClock implements Clock {
+
+    /**
+     * The wall clock time at which the virtual time started.
+     */
+    private final long originMillis;
+
+    /**
+     * The virtual time in nanoseconds since the origin (written under the clock's lock only).
+     */
+    private volatile long now;
+
+    /**
+     * The registered threads (guarded by the clock's lock).
+     */
+    private final Map<Thread, Waiter> threads = new HashMap<>();
+
+    /**
+     * The number of registered threads that are not parked on the clock (guarded by the clock's lock).
+     */
+    private int busy;
+
+    public VirtualClock() {
+        this.originMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public long millis() {
+        return originMillis + TimeUnit.NANOSECONDS.toMillis(now);
+    }
+
+    @Override
+    public long nanos() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (!registered()) {
+            Thread.sleep(millis);
+            return;
+        }
+        long deadline = now + TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        while (now < deadline) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            parkUntil(deadline);
+        }
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+
+    @Override
+    public void park(Object blocker) {
+        if (registered()) parkUntil(Long.MAX_VALUE);
+        else LockSupport.park(blocker);
+    }
+
+    @Override
+    public void parkNanos(Object blocker, long nanos) {
+        if (nanos <= 0) return;
+        if (registered()) parkUntil(now + nanos);
+        else LockSupport.parkNanos(blocker, nanos);
+    }
+
+    @Override
+    public void unpark(Thread thread) {
+        if (thread == null) return;
+        synchronized (this) {
+            Waiter waiter = threads.get(thread);
+            if (waiter == null) {
+                LockSupport.unpark(thread);
+            } else if (waiter.parked) {
+                wake(waiter);
+            } else {
+                waiter.permit = true;
+            }
+        }
+    }
+
+    @Override
+    public void join(Thread thread) throws InterruptedException {
+        Waiter waiter;
+        synchronized (this) {
+            waiter = threads.get(Thread.currentThread());
+            if (waiter != null) idle(waiter, Long.MAX_VALUE);
+        }
+        try {
+            thread.join();
+        } finally {
+            if (waiter != null) {
+                synchronized (this) {
+                    // an unpark while joining already counted this thread as busy: keep it as a permit
+                    if (waiter.parked) busy(waiter);
+                    else waiter.permit = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void register(Thread thread) {
+        if (threads.putIfAbsent(thread, new Waiter(thread)) == null) ++busy;
+    }
+
+    @Override
+    public synchronized void deregister() {
+        Waiter waiter = threads.remove(Thread.currentThread());
+        if (waiter == null) return;
+        if (!waiter.parked) --busy;
+        advanceIfIdle();
+    }
+
+    private synchronized boolean registered() {
+        return threads.containsKey(Thread.currentThread());
+    }
+
+    private void parkUntil(long deadline) {
+        Waiter waiter;
+        synchronized (this) {
+            waiter = threads.get(Thread.currentThread());
+            if (waiter.permit) {
+                waiter.permit = false;
+                return;
+            }
+            if (deadline <= now) return;
+            idle(waiter, deadline);
+        }
+        while (true) {
+            LockSupport.park(this);
+            synchronized (this) {
+                if (!waiter.parked) return;
+                if (Thread.currentThread().isInterrupted()) {
+                    busy(waiter);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void idle(Waiter waiter, long deadline) {
+        waiter.parked = true;
+        waiter.deadline = deadline;
+        --busy;
+        advanceIfIdle();
+    }
+
+    private void busy(Waiter waiter) {
+        waiter.parked = false;
+        ++busy;
+    }
+
+    private void wake(Waiter waiter) {
+        busy(waiter);
+        LockSupport.unpark(waiter.thread);
+    }
+
+    /**
+     * Jumps to the earliest deadline once all the registered threads are parked (under the clock's lock).
+     */
+    private void advanceIfIdle() {
+        if (busy > 0) return;
+        long next = Long.MAX_VALUE;
+        for (Waiter waiter : threads.values())
+            if (waiter.parked) next = Math.min(next, waiter.deadline);
+        // no deadlines: only a thread that is not registered can wake the game up
+        if (next == Long.MAX_VALUE) return;
+        if (next > now) now = next;
+        for (Waiter waiter : threads.values())
+            if (waiter.parked && waiter.deadline <= now) wake(waiter);
+    }
+
+    /**
+     * The clock state of a registered thread.
+     */
+    private static class Waiter {
+
+        private final Thread thread;
+
+        /**
+         * True iff the thread is parked on the clock and was not woken up yet.
+         */
+        private boolean parked;
+
+        private long deadline;
+
+        /**
+         * True iff the thread was unparked while it was busy, so its next park returns immediately.
+         */
+        private boolean permit;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+import bguspl.set.InputTracer;
+import bguspl.set.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock free, multi-producer/single-consumer ring buffer of slot numbers (the key presses of a player).
+ * The producers are the threads that feed the player's key presses (the keyboard input thread, the player server's
+ * I/O thread or the computer key press generator; a human seat can be fed by both the keyboard and the server) and
+ * the consumer is the player thread. A producer claims a position with a CAS on the tail and publishes the key press
+ * in it through the position's sequence, so the consumer never reads a key press that is still being written.
+ * A full ring drops new key presses, and an empty ring parks the consumer until a producer publishes a key press.
+ *
+ * @inv 0 <= tail - head <= capacity
+ */
+public class ActionRing {
+
+    /**
+     * The maximum number of key presses that can wait in the ring.
+     */
+    private final int capacity;
+
+    /**
+     * The clock the consumer parks on.
+     */
+    private final Clock clock;
+
+    /**
+     * The key presses (the length is a power of two, so positions can be masked).
+     */
+    private final int[] slots;
+    private final int mask;
+
+    /**
+     * The System.nanoTime at which every key press was offered, and at which the last taken one was (consumer only).
+     */
+    private final long[] offered;
+    private long takenOfferedNanos;
+
+    /**
+     * The trace id of every key press (InputTracer.NONE if it is not traced), and of the last taken one.
+     */
+    private final long[] traces;
+    private long takenTrace = InputTracer.NONE;
+
+    /**
+     * The position of the next key press to take (written by the consumer only).
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The position of the next key press to offer (claimed by the producers with a CAS).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Per index, the position of the key press published in it plus one (a key press is published once its data is
+     * written, which can be after later positions were claimed).
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * The consumer thread, while it is parked waiting for a key press (null otherwise).
+     */
+    private volatile Thread waiter;
+
+    public ActionRing(int capacity) {
+        this(capacity, SystemClock.INSTANCE);
+    }
+
+    public ActionRing(int capacity, Clock clock) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.clock = clock;
+        int length = Integer.highestOneBit(capacity);
+        if (length < capacity) length <<= 1;
+        this.slots = new int[length];
+        this.offered = new long[length];
+        this.traces = new long[length];
+        this.published = new AtomicLongArray(length);
+        this.mask = length - 1;
+    }
+
+    /**
+     * Adds a key press, unless the ring is full (thread safe).
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     * @return     - true iff the key press was added.
+     */
+    public boolean offer(int slot) {
+        return offer(slot, InputTracer.NONE);
+    }
+
+    /**
+     * Adds a traced key press, unless the ring is full (thread safe).
+     *
+     * @param slot  - the slot corresponding to the key pressed.
+     * @param trace - the trace id of the key press (see InputTracer).
+     * @return      - true iff the key press was added.
+     */
+    public boolean offer(int slot, long trace) {
+        long t;
+        do {
+            t = tail.get();
+            // the consumer moves the head only once it read a position, so a claimed position is free
+            if (t - head.get() >= capacity) return false;
+        } while (!tail.compareAndSet(t, t + 1));
+        int i = (int) t & mask;
+        slots[i] = slot;
+        offered[i] = System.nanoTime();
+        traces[i] = trace;
+        published.set(i, t + 1);
+        Thread parked = waiter;
+        if (parked != null) clock.unpark(parked);
+        return true;
+    }
+
+    /**
+     * Removes the oldest key press, parking until there is one (consumer only).
+     *
+     * @return - the slot of the oldest key press.
+     * @throws InterruptedException - if the consumer thread is interrupted while waiting.
+     */
+    public int take() throws InterruptedException {
+        long h = head.get();
+        while (!isPublished(h)) {
+            waiter = Thread.currentThread();
+            if (!isPublished(h)) clock.park(this);
+            waiter = null;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        return remove(h);
+    }
+
+    private boolean isPublished(long position) {
+        return published.get((int) position & mask) == position + 1;
+    }
+
+    private int remove(long h) {
+        int i = (int) h & mask;
+        int slot = slots[i];
+        takenOfferedNanos = offered[i];
+        takenTrace = traces[i];
+        head.set(h + 1);
+        return slot;
+    }
+
+    /**
+     * Removes the oldest key press without waiting (consumer only).
+     *
+     * @return - the slot of the oldest key press, or -1 if there is none.
+     */
+    public int poll() {
+        long h = head.get();
+        if (!isPublished(h)) return -1;
+        return remove(h);
+    }
+
+    /**
+     * @return - the System.nanoTime at which the key press last returned by take or poll was offered (consumer only).
+     */
+    public long takenOfferedNanos() {
+        return takenOfferedNanos;
+    }
+
+    /**
+     * @return - the trace id of the key press last returned by take or poll (consumer only).
+     */
+    public long takenTrace() {
+        return takenTrace;
+    }
+
+    /**
+     * Drops all the waiting key presses (consumer only). A key press still being offered is not waiting yet.
+     *
+     * @return - the number of key presses dropped.
+     */
+    public int clear() {
+        return clear(null);
+    }
+
+    /**
+     * Drops all the waiting key presses, reporting the traced ones to the tracer (consumer only).
+     *
+     * @param tracer - the tracer of the key presses (null if they are not traced).
+     * @return       - the number of key presses dropped.
+     */
+    public int clear(InputTracer tracer) {
+        long h = head.get(), start = h;
+        for (; isPublished(h); ++h)
+            if (tracer != null) tracer.dropped(traces[(int) h & mask]);
+        head.set(h);
+        return (int) (h - start);
+    }
+
+    /**
+     * @return - the number of waiting key presses.
+     */
+    public int size() {
+        long h = head.get();
+        return (int) Math.min(capacity, tail.get() - h);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,177 @@
+package bguspl.set.ex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The full state of a game in progress, taken by the dealer at a safe point (see Dealer::checkpointTo) and restored
+ * into a new game (see Dealer::resumeFrom). Times are kept relative to the moment the checkpoint was taken, so a game
+ * resumes with the same countdown and freezes left. The binary format (big endian, cards and slots as shorts):
+ * <pre>
+ *   int magic ('SETC'), int version, int rows, int columns, int players, int deck size, long seed
+ *   long reshuffle in millis (Long.MAX_VALUE if none), int claims, int points, int penalties
+ *   short deck count, short card...             (the deck, in order)
+ *   short card per slot (-1 if none)
+ *   per player: int score, long freeze millis left, byte token count, short slot...
+ *   short pending claim count, short player...  (the claims waiting for the dealer, in order)
+ * </pre>
+ */
+public class Checkpoint {
+
+    public static final int MAGIC = 0x53455443;
+    public static final int VERSION = 1;
+
+    final int rows;
+    final int columns;
+    final long seed;
+    final long reshuffleInMillis;
+    final int claims;
+    final int points;
+    final int penalties;
+    final int[] deck;
+    final int[] board;
+    final int[] scores;
+    final long[] freezeMillis;
+    final int[][] tokens;  // the slots of every player's tokens
+    final int[] pendingClaims;
+    private final int deckSize;
+
+    Checkpoint(int rows, int columns, int deckSize, long seed, long reshuffleInMillis, int claims, int points,
+               int penalties, int[] deck, int[] board, int[] scores, long[] freezeMillis, int[][] tokens,
+               int[] pendingClaims) {
+        this.rows = rows;
+        this.columns = columns;
+        this.deckSize = deckSize;
+        this.seed = seed;
+        this.reshuffleInMillis = reshuffleInMillis;
+        this.claims = claims;
+        this.points = points;
+        this.penalties = penalties;
+        this.deck = deck;
+        this.board = board;
+        this.scores = scores;
+        this.freezeMillis = freezeMillis;
+        this.tokens = tokens;
+        this.pendingClaims = pendingClaims;
+    }
+
+    /**
+     * @return - the checkpoint in its binary format.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + 2 * deck.length + 16 * scores.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            out.writeInt(scores.length);
+            out.writeInt(deckSize);
+            out.writeLong(seed);
+            out.writeLong(reshuffleInMillis);
+            out.writeInt(claims);
+            out.writeInt(points);
+            out.writeInt(penalties);
+            out.writeShort(deck.length);
+            for (int card : deck) out.writeShort(card);
+            for (int card : board) out.writeShort(card);
+            for (int player = 0; player < scores.length; ++player) {
+                out.writeInt(scores[player]);
+                out.writeLong(freezeMillis[player]);
+                out.writeByte(tokens[player].length);
+                for (int slot : tokens[player]) out.writeShort(slot);
+            }
+            out.writeShort(pendingClaims.length);
+            for (int player : pendingClaims) out.writeShort(player);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // not thrown by a byte array
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param data - a checkpoint in its binary format.
+     * @return - the checkpoint.
+     * @throws IOException - if the data is not a checkpoint of this version (or is cut short).
+     */
+    public static Checkpoint decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC) throw new IOException("not a game checkpoint");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("unsupported checkpoint version " + version);
+            int rows = in.readInt();
+            int columns = in.readInt();
+            int players = in.readInt();
+            int deckSize = in.readInt();
+            long seed = in.readLong();
+            long reshuffleInMillis = in.readLong();
+            int claims = in.readInt();
+            int points = in.readInt();
+            int penalties = in.readInt();
+            int[] deck = new int[in.readShort()];
+            for (int i = 0; i < deck.length; ++i) deck[i] = in.readShort();
+            int[] board = new int[rows * columns];
+            for (int slot = 0; slot < board.length; ++slot) board[slot] = in.readShort();
+            int[] scores = new int[players];
+            long[] freezeMillis = new long[players];
+            int[][] tokens = new int[players][];
+            for (int player = 0; player < players; ++player) {
+                scores[player] = in.readInt();
+                freezeMillis[player] = in.readLong();
+                tokens[player] = new int[in.readByte()];
+                for (int i = 0; i < tokens[player].length; ++i) tokens[player][i] = in.readShort();
+            }
+            int[] pendingClaims = new int[in.readShort()];
+            for (int i = 0; i < pendingClaims.length; ++i) pendingClaims[i] = in.readShort();
+            return new Checkpoint(rows, columns, deckSize, seed, reshuffleInMillis, claims, points, penalties, deck,
+                    board, scores, freezeMillis, tokens, pendingClaims);
+        }
+    }
+
+    /**
+     * @param file - a checkpoint file (see CheckpointWriter).
+     * @return - the checkpoint in the file.
+     * @throws IOException - if the file cannot be read or is not a checkpoint.
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        return decode(Files.readAllBytes(file));
+    }
+
+    /**
+     * @throws IllegalArgumentException - if the checkpoint is of a game with other dimensions.
+     */
+    void checkFits(int rows, int columns, int players, int deckSize) {
+        if (rows != this.rows || columns != this.columns || players != scores.length || deckSize != this.deckSize)
+            throw new IllegalArgumentException(String.format(
+                    "the checkpoint is of a %dx%d game of %d players with %d cards, not %dx%d, %d players, %d cards",
+                    this.rows, this.columns, scores.length, this.deckSize, rows, columns, players, deckSize));
+    }
+
+    public int score(int player) {
+        return scores[player];
+    }
+
+    public int points() {
+        return points;
+    }
+
+    /**
+     * @return - the number of cards left in the deck.
+     */
+    public int deckCount() {
+        return deck.length;
+    }
+
+    /**
+     * @return - the card in the slot, or -1 if there was none.
+     */
+    public int card(int slot) {
+        return board[slot];
+    }
+}
@@ -0,0 +1,146 @@
+package bguspl.set.ex;
+
+import bguspl.set.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Writes the checkpoints of a game on a thread of its own, so the dealer only pays for taking them. A checkpoint is
+ * written to a temporary file, forced to the disk and renamed over the checkpoint file, so the file always holds a
+ * whole checkpoint. When checkpoints come faster than they are written, only the newest one waiting is written.
+ */
+public class CheckpointWriter {
+
+    private final Logger logger;
+    private final Path file;
+    private final Path temporary;
+    private final long intervalMillis;
+    private final Thread thread;
+
+    private byte[] pending;  // the newest checkpoint waiting to be written (guarded by this)
+    private boolean closed;  // guarded by this
+    private long written;  // guarded by this
+
+    /**
+     * The time the dealer spent taking each checkpoint (the stall of the game).
+     */
+    public final LatencyHistogram stalls = new LatencyHistogram();
+
+    /**
+     * The time each checkpoint took to be written, forced and renamed.
+     */
+    public final LatencyHistogram writes = new LatencyHistogram();
+
+    /**
+     * @param logger         - the game's logger.
+     * @param file           - the checkpoint file.
+     * @param intervalMillis - the game time between two checkpoints.
+     */
+    public CheckpointWriter(Logger logger, Path file, long intervalMillis) {
+        this.logger = logger;
+        this.file = file;
+        this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        this.intervalMillis = intervalMillis;
+        // a real time thread of its own: it never takes part in the game's clock
+        thread = new Thread(this::run, "checkpoint-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public long intervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * Hands a checkpoint over to the writer thread (replacing a checkpoint still waiting to be written).
+     */
+    synchronized void submit(byte[] checkpoint) {
+        pending = checkpoint;
+        notifyAll();
+    }
+
+    private void run() {
+        while (true) {
+            byte[] checkpoint;
+            synchronized (this) {
+                while (pending == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                if (pending == null) return;
+                checkpoint = pending;
+                pending = null;
+            }
+            long start = System.nanoTime();
+            try {
+                write(checkpoint);
+                writes.record(System.nanoTime() - start);
+                synchronized (this) {
+                    written++;
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                logger.severe("error writing the checkpoint " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void write(byte[] checkpoint) throws IOException {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(checkpoint);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return - the number of checkpoints written so far.
+     */
+    public synchronized long written() {
+        return written;
+    }
+
+    /**
+     * Writes the checkpoint still waiting (if any) and stops the writer thread.
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        thread.join();
+    }
+
+    /**
+     * Stops the writer and deletes the checkpoint file (the game is over, there is nothing left to resume).
+     */
+    public void discard() throws InterruptedException {
+        synchronized (this) {
+            pending = null;
+        }
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.severe("error deleting the checkpoint " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return - the checkpoint counts and stalls.
+     */
+    public String summary() {
+        return "checkpoints: " + written() + " written, stall " + stalls.summary() + ", write " + writes.summary();
+    }
+}
@@ -1,19 +1,26 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameLoop;
+import bguspl.set.GameThreads;
+import bguspl.set.monitor.Journal;
+import bguspl.set.rating.Leaderboard;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
- * This class manages the dealer's threads and data
+ * This class manages the dealer's threads and data.
+ * The dealer either runs the game on its own thread with a thread per player (see run), or drives it with events
+ * on a single game loop (see start). Both drivers share the game rules.
  */
 public class Dealer implements Runnable {
 
@@ -51,9 +58,29 @@ public class Dealer implements Runnable {
 
  
 
-    protected final BlockingQueue<Integer> check;  // a blocking queue for coordination actions to check sets .
+    private final int[] selectedCards;  // the cards of the set being checked (reused for every check, dealer only)
 
-    protected Thread dealerThread;  // the thread on which the dealer's main loop runs
+    private final SplittableRandom random;  // the dealer's stream of the game's seed, for shuffling the deck (dealer only)
+
+    protected final Queue<Integer> check;  // the ids of the players waiting for their sets to be checked, in claim order
+
+    protected volatile Thread dealerThread;  // the thread on which the dealer's main loop runs (replaced on failover)
+
+    private volatile StandbyDealer standby;  // the standby the dealer replicates its state to (null if none)
+
+    private volatile Journal journal;  // the journal of the game events the display does not see (null if none)
+
+    private volatile CheckpointWriter checkpoints;  // the writer of the game's checkpoints (null if none)
+
+    private long nextCheckpoint;  // the game time of the next checkpoint (dealer only)
+
+    private volatile Leaderboard leaderboard;  // the leaderboard the game's result is recorded on (null if none)
+
+    protected final KeyPressGenerator keyPresses;  // the shared scheduler pressing the keys of the computer players
+
+    protected final FreezeService freezes;  // the shared timer wheel counting down and releasing the players' freezes
+
+    protected final GameLatencies latencies;  // the key press and claim latencies of all the players
 
 
     private volatile boolean terminate;  // this flag indicating wether the game sohuld  be terminated !
@@ -65,15 +92,40 @@ public class Dealer implements Runnable {
 
     private volatile boolean isReshuffle ;   // a flag indicationg whether the dealer is in reshulling state ;
 
+    /**
+     * The event loop driving the game in the event loop engine (null when the game runs thread per player).
+     */
+    private volatile GameLoop loop;
+
+    private GameLoop.Timer timerTick;  // the next countdown update on the game loop
+
+    private boolean finished;  // true once the game loop driver announced the winners
+
+    private volatile boolean over;  // true once the dealer thread left its main loop (the game is decided)
+
+    private GameEvents.Game gameEvent;  // the recording of the whole game (null if the game is not recorded)
+
+    // game statistics (written by the dealer only, read once the game is over)
+    private volatile int claims;
+    private volatile int points;
+    private volatile int penalties;
+    private volatile int reshuffles;
+
+    private long reshuffleStart;  // the System.nanoTime the cards were returned to the deck (0 if not reshuffling)
+
 
     public Dealer(Env env, Table table, Player[] players) {   // constructor
         this.env = env;
         this.table = table;
         this.players = players;
-        check=new ArrayBlockingQueue<>(1,true);
+        check=new ConcurrentLinkedQueue<>();
+        selectedCards=new int[table.maxTokens];
+        random=env.random.stream("dealer");
         deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
         onTable=new ArrayList<>(env.config.tableSize);
-
+        keyPresses=new KeyPressGenerator(env);
+        freezes=new FreezeService(env);
+        latencies=new GameLatencies(players.length);
     }
 
     /**
@@ -89,23 +141,242 @@ public class Dealer implements Runnable {
         dealerThread=Thread.currentThread();
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
         isReshuffle=true;
+        heartbeat();
+        beginGameEvent();
         runPlayerThreads();
-        while (!shouldFinish()) {
+        play();
+    }
+
+    /**
+     * The dealer's main loop, from the first deal (or from where a failed dealer stopped) to the end of the game.
+     */
+    private void play(){
+        while (!shouldFinish() && isDealerThread()) {
             placeCardsOnTable();
             isReshuffle=false;
             timerLoop();
+            if(!isDealerThread())
+                break;
             isReshuffle=true;
             updateTimerDisplay(false);
             removeAllCardsFromTable();
         }
+        if(!isDealerThread()){
+            env.logger.info("thread " + Thread.currentThread().getName() + " was replaced by the standby dealer.");
+            return;
+        }
+        over=true;
         announceWinners();
         terminateAll();
+        closeCheckpoints();
+        reportProfiles();
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
     }
 
+    /**
+     * Continues the game on a new dealer thread after the dealer thread failed (see StandbyDealer).
+     * The dealer's own state is restored from the replica, and the table is brought back to the replicated board:
+     * a card the failed dealer placed without replicating it goes back to the deck, and a replicated card missing
+     * from the table is placed again. The players keep running and keep their place in the check queue.
+     *
+     * @param failed  - the dealer thread that failed (it may be stuck rather than dead).
+     * @param standby - the standby the failed dealer replicated its state to.
+     */
+    void resume(Thread failed, StandbyDealer standby){
+        env.logger.info("thread " + Thread.currentThread().getName() + " resuming the game.");
+        try{
+            // a stuck dealer replicates whatever it still does before it notices it was replaced
+            failed.join(standby.timeoutMillis());
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        if(failed.isAlive())
+            env.logger.severe("dealer thread "+failed.getName()+" is still stuck, resuming the game without it.");
+        StandbyDealer.Replica replica=standby.snapshot();
+        isReshuffle=true;
+        deck.clear();
+        deck.addAll(replica.deck);
+        onTable.clear();
+        Integer[] cards=table.cardsBySlot();
+        for(int slot=0;slot<cards.length;slot++){
+            int card=replica.board[slot];
+            if(cards[slot]!=null && cards[slot]!=card)
+                table.removeCard(slot);
+            if(card>=0 && (cards[slot]==null || cards[slot]!=card))
+                table.placeCard(card,slot);
+            if(card>=0)
+                onTable.add(card);
+        }
+        for(Player player:players)
+            if(player.score()!=replica.scores[player.id])
+                env.logger.warning("player "+player.id+" has score "+player.score()+" but the standby replicated "+replica.scores[player.id]);
+        claims=replica.claims;
+        points=replica.points;
+        penalties=replica.penalties;
+        reshuffleTime=replica.reshuffleTime;
+        standby.resumed();
+        play();
+    }
+
+    /**
+     * Replicates every change of the dealer's state to a standby from now on.
+     */
+    void replicateTo(StandbyDealer standby){
+        this.standby=standby;
+        table.heartbeatTo(standby);
+    }
+
+    /**
+     * Journals the claims, the verdicts and the reshuffles from now on (the rest of the game events reach the
+     * journal through the user interface).
+     */
+    public void journalTo(Journal journal){
+        this.journal=journal;
+    }
+
+    /**
+     * Takes a checkpoint of the game every CheckpointWriter::intervalMillis of game time from now on. Checkpoints
+     * are taken at the dealer's safe points: between two steps of its loop, never while it deals or checks a set.
+     */
+    public void checkpointTo(CheckpointWriter writer){
+        this.checkpoints=writer;
+    }
+
+    private void checkpointIfDue(){
+        CheckpointWriter writer=checkpoints;
+        if(writer==null)
+            return;
+        long now=env.clock.millis();
+        if(now<nextCheckpoint)
+            return;
+        nextCheckpoint=now+writer.intervalMillis();
+        long start=System.nanoTime();
+        byte[] checkpoint=checkpoint(now).encode();
+        writer.stalls.record(System.nanoTime()-start);
+        writer.submit(checkpoint);
+    }
+
+    /**
+     * @return - the state of the game (dealer only, at a safe point).
+     */
+    Checkpoint checkpoint(long now){
+        int[] board=new int[env.config.tableSize];
+        int[][] tokens=table.snapshot(board);
+        int[] scores=new int[players.length];
+        long[] freezeMillis=new long[players.length];
+        for(Player player:players){
+            scores[player.id]=player.score();
+            freezeMillis[player.id]=player.freezeLeft(now);
+        }
+        long reshuffleIn=reshuffleTime==Long.MAX_VALUE? Long.MAX_VALUE : reshuffleTime-now;
+        return new Checkpoint(env.config.rows, env.config.columns, env.config.deckSize, env.config.seed, reshuffleIn,
+                claims, points, penalties, deck.stream().mapToInt(Integer::intValue).toArray(), board, scores,
+                freezeMillis, tokens, check.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Continues the game of a checkpoint (call before the game starts, in either engine). The deck, the table with
+     * the players' tokens, the scores, the freezes and the countdown are restored, and the claims that were waiting
+     * for the dealer are checked first thing.
+     *
+     * @throws IllegalArgumentException - if the checkpoint is of a game with other dimensions.
+     */
+    public void resumeFrom(Checkpoint checkpoint){
+        checkpoint.checkFits(env.config.rows, env.config.columns, players.length, env.config.deckSize);
+        deck.clear();
+        for(int card:checkpoint.deck)
+            deck.add(card);
+        onTable.clear();
+        for(int card:checkpoint.board)
+            if(card>=0)
+                onTable.add(card);
+        table.restore(checkpoint.board, checkpoint.tokens);
+        for(Player player:players)
+            player.restore(checkpoint.scores[player.id], checkpoint.freezeMillis[player.id]);
+        claims=checkpoint.claims;
+        points=checkpoint.points;
+        penalties=checkpoint.penalties;
+        long now=env.clock.millis();
+        reshuffleTime=checkpoint.reshuffleInMillis==Long.MAX_VALUE? Long.MAX_VALUE : now+checkpoint.reshuffleInMillis;
+        for(int player:checkpoint.pendingClaims)
+            check.add(player);
+        StandbyDealer current=standby;
+        if(current!=null)
+            current.restored(deck, checkpoint.board, checkpoint.scores, claims, points, penalties, reshuffleTime);
+        if(checkpoint.seed!=env.config.seed)
+            env.logger.info("resuming a checkpoint of seed "+checkpoint.seed+" with seed "+env.config.seed);
+        env.logger.info("resumed a checkpoint: "+deck.size()+" cards in the deck, "+onTable.size()+" on the table, "
+                +points+" sets found.");
+    }
+
+    /**
+     * Stops the checkpoints at the end of the game. A game the players quit keeps its last checkpoint (taken now),
+     * so it can be resumed; a game played to the end deletes it.
+     */
+    private void closeCheckpoints(){
+        CheckpointWriter writer=checkpoints;
+        if(writer==null)
+            return;
+        try{
+            if(terminate){
+                writer.submit(checkpoint(env.clock.millis()).encode());
+                writer.close();
+            }else
+                writer.discard();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        env.logger.info(writer.summary());
+    }
+
+    /**
+     * Logs the contention on the table's monitor (see LockProfiling) and the latency of the traced key presses (see
+     * InputTraceSampling) over the game, if they were profiled.
+     */
+    private void reportProfiles(){
+        LockProfiler profiler=table.lockProfiler();
+        if(profiler!=null)
+            env.logger.info(profiler.report());
+        if(env.tracer!=null)
+            env.logger.info(env.tracer.report());
+    }
+
+    /**
+     * Records the result of the game on a leaderboard once it is played to its end (a game the players quit is not
+     * rated). The players are rated by their names (PlayerNames).
+     */
+    public void rankOn(Leaderboard leaderboard){
+        this.leaderboard=leaderboard;
+    }
+
+    private boolean isDealerThread(){
+        return loop!=null || Thread.currentThread()==dealerThread;
+    }
+
+    private void heartbeat(){
+        StandbyDealer current=standby;
+        if(current!=null)
+            current.heartbeat();
+    }
+
+    /**
+     * @return - the longest the dealer may wait between two heartbeats (Long.MAX_VALUE without a standby).
+     */
+    private long heartbeatNanos(){
+        StandbyDealer current=standby;
+        return current==null? Long.MAX_VALUE : current.heartbeatNanos();
+    }
+
+    /**
+     * @return - true once the game is decided (the dealer is announcing the winners or already did).
+     */
+    public boolean isOver(){
+        return over || finished;
+    }
+
     private void runPlayerThreads(){
         for(Player player:players){
-            Thread playerThread=new Thread(player,"Player "+player.getId());
+            Thread playerThread=GameThreads.newThread(env,player,"Player "+player.getId());
             playerThread.start();
         }
     }
@@ -114,38 +385,146 @@ public class Dealer implements Runnable {
       private void timerLoop() {
         boolean cardsRemoved = true;
         
-        while (!terminate && (env.config.turnTimeoutMillis <= 0 || System.currentTimeMillis() < reshuffleTime)) {
+        while (!terminate && !turnTimedOut() && isDealerThread()) {
+            heartbeat();
             // if cards were removed make sure there are still sets available in the game/on the table
-            if (cardsRemoved && (
-                    (env.config.turnTimeoutMillis > 0 && env.util.findSets(Stream.concat(deck.stream(),
-                            onTable.stream()).collect(Collectors.toList()), 1).size() == 0)
-                            || (env.config.turnTimeoutMillis <=0 && env.util.findSets(onTable, 1).size() == 0))) {
+            if (cardsRemoved && noSetsLeft()) {
                 break;
             }
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             cardsRemoved = removeCardsFromTable();
             placeCardsOnTable();
+            checkpointIfDue();
+        }
+    }
+
+
+    private boolean turnTimedOut(){
+        return env.config.turnTimeoutMillis > 0 && env.clock.millis() >= reshuffleTime;
+    }
+
+    private boolean noSetsLeft(){
+        if (env.config.turnTimeoutMillis > 0)
+            return env.util.findSets(Stream.concat(deck.stream(), onTable.stream()).collect(Collectors.toList()), 1).size() == 0;
+        return env.util.findSets(onTable, 1).size() == 0;
+    }
+
+    /**
+     * Starts the game on an event loop instead of the dealer and player threads (called on the loop thread).
+     * Every step of the dealer's main loop becomes an event: dealing, countdown updates, set checks and
+     * reshuffles. The table is not delayed (TableDelaySeconds), because the loop must never block. The computer
+     * key presses and the freezes run on the loop's timers as well, so the game needs no other thread.
+     *
+     * @param loop - the event loop of the game.
+     */
+    public void start(GameLoop loop){
+        this.loop=loop;
+        env.logger.info("dealer starting on the event loop.");
+        table.disableDelay();
+        beginGameEvent();
+        keyPresses.runOn(loop);
+        freezes.runOn(loop);
+        isReshuffle=true;
+        for(Player player:players)
+            player.start(loop);
+        startRound();
+    }
+
+    private void startRound(){
+        if(shouldFinish()){
+            finishGame();
+            return;
+        }
+        placeCardsOnTable();
+        isReshuffle=false;
+        if(noSetsLeft())
+            endRound();
+        else
+            onTimerTick();
+    }
+
+    private void onTimerTick(){
+        if(terminate){
+            finishGame();
+            return;
+        }
+        if(turnTimedOut()){
+            endRound();
+            return;
         }
+        updateTimerDisplay(false);
+        checkpointIfDue();
+        if(env.config.turnTimeoutMillis>=0)
+            timerTick=loop.schedule(this::onTimerTick, sleepTime);
+    }
+
+    private void endRound(){
+        if(timerTick!=null)
+            timerTick.cancel();
+        isReshuffle=true;
+        updateTimerDisplay(false);
+        removeAllCardsFromTable();
+        loop.execute(this::startRound);
+    }
+
+    /**
+     * Checks the set of a player right away (game loop only). The verdict is sent to the player as an event.
+     *
+     * @param player - the player claiming a set.
+     */
+    void claim(Player player){
+        env.logger.info("initiating set check fo r player"+player.id);
+        boolean cardsRemoved=checkSet(player.id);
+        placeCardsOnTable();
+        loop.execute(player::onVerdict);
+        if(cardsRemoved && !isReshuffle && noSetsLeft())
+            endRound();
     }
 
+    private void finishGame(){
+        if(finished)
+            return;
+        finished=true;
+        if(timerTick!=null)
+            timerTick.cancel();
+        announceWinners();
+        for(Player player:players)
+            player.terminate();
+        keyPresses.shutdown();
+        freezes.shutdown();
+        closeCheckpoints();
+        reportProfiles();
+        loop.stop();
+        env.logger.info("dealer finished on the event loop.");
+    }
 
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
-        synchronized (this){
-            terminate=true;
-            this.notifyAll();
-        }
+        terminate=true;
+        env.clock.unpark(dealerThread);
+        GameLoop current=loop;
+        if(current!=null)
+            current.execute(this::finishGame);
 
     }
 
+    /**
+     * Called by a player after adding its set to the check queue, to wake the dealer up.
+     */
+    public void wakeUp() {
+        env.clock.unpark(dealerThread);
+    }
+
     public void terminateAll(){
         for (int i=players.length-1;i>=0;i--)
         {
             terminateSinglePlayer(players[i]);
         }
+        keyPresses.shutdown();
+        freezes.shutdown();
     }
     private void terminateSinglePlayer(Player player ){
         logTerminationStart(player);
@@ -158,7 +537,7 @@ public class Dealer implements Runnable {
     }
     private void waitForPlayerThreadToTerminate(Player player){
         try{
-            player.playerThread.join();
+            env.clock.join(player.playerThread);
             env.logger.info("Player "+player.getId()+"  thread terminated ");
 
         }catch(InterruptedException e){
@@ -188,47 +567,76 @@ public class Dealer implements Runnable {
         }
         env.logger.info("initiating set check fo r player"+playerId);
         
-        synchronized(players[playerId]){
-            List<Integer> selectedCards=table.cardsOfPlayerTokens(playerId);
-            if(validateSetSelection(selectedCards, playerId)){
-                cardsRemoved=evaluateSelectedSet(selectedCards, playerId);
-
-            }else{
-                cardsRemoved=false;
-            }
+        cardsRemoved=checkSet(playerId);
+        check.remove();
+        env.clock.unpark(players[playerId].playerThread);
+        env.logger.info("Completed set check for player ! successfully! ");
+        return cardsRemoved;
+     }
 
 
-            check.remove();
-            players[playerId].notify();
-            env.logger.info("Completed set check for player ! successfully! ");
-                
+    private boolean checkSet(int playerId){
+        long start=System.nanoTime();
+        GameEvents.Verdict verdict=GameEvents.VERDICTS.isEnabled()? new GameEvents.Verdict() : null;
+        if(verdict!=null)
+            verdict.begin();
+        claims++;
+        Journal events=journal;
+        if(events!=null)
+            events.claim(playerId);
+        int count=table.cardsOfPlayerTokens(playerId, selectedCards);
+        int pointsBefore=points;
+        boolean cardsRemoved=validateSetSelection(count, playerId) && evaluateSelectedSet(selectedCards, playerId);
+        if(verdict!=null){
+            verdict.player=playerId;
+            verdict.set=points>pointsBefore;
+            verdict.card1=count>0? selectedCards[0] : -1;
+            verdict.card2=count>1? selectedCards[1] : -1;
+            verdict.card3=count>2? selectedCards[2] : -1;
+            verdict.commit();
         }
+        StandbyDealer current=standby;
+        if(current!=null)
+            current.checked(claims, points, penalties);
+        latencies.verification.record(System.nanoTime()-start);
         return cardsRemoved;
-     }
-
+    }
 
-    private  boolean validateSetSelection(List<Integer> selectedCards,Integer playerId){
-        if(selectedCards.size()!=table.maxTokens){
+    private  boolean validateSetSelection(int count,int playerId){
+        if(count!=table.maxTokens){
             env.logger.info("Player"+ playerId+" atttempted a set check with incorrect number of cards");
             return false;
         }
         return true;
     }
 
-    private boolean evaluateSelectedSet(List<Integer> selectedCards,Integer playerId){
+    private boolean evaluateSelectedSet(int[] selectedCards,int playerId){
 
         boolean cardsRemoved=false;
-        if(env.util.testSet(selectedCards.stream().mapToInt(i->i).toArray())){
-            selectedCards.forEach(card->{
-                table.removeCardById(card);
+        boolean valid=env.util.testSet(selectedCards);
+        Journal events=journal;
+        if(events!=null)
+            events.verdict(playerId, valid);
+        if(valid){
+            StandbyDealer current=standby;
+            for(int card:selectedCards){
+                int slot=table.cardToSlot[card];
+                table.removeCard(slot);
+                onTable.remove(Integer.valueOf(card));
+                if(current!=null)
+                    current.discarded(slot);
                 env.logger.info("valid set removed for player "+playerId);
-            });
+            }
             players[playerId].point();
+            if(current!=null)
+                current.scored(playerId, players[playerId].score());
+            points++;
             cardsRemoved=true;
 
         }else{
             env.logger.info("Invalid set for player" +playerId);
             players[playerId].penalty();
+            penalties++;
             cardsRemoved=false;
 
         }
@@ -252,12 +660,17 @@ public class Dealer implements Runnable {
            return;
        }
 
-       Collections.shuffle(deck);
+       long start=System.nanoTime();
+       shuffleDeck();
        IntStream.range(0,emptySlots).forEach(i->{
-           if(!deck.isEmpty()){
+           if(!deck.isEmpty() && isDealerThread()){
                int card=deck.remove(0);
                int slotPlaced=table.placeCard(card);
                if(slotPlaced!=-1){
+                   onTable.add(card);
+                   StandbyDealer current=standby;
+                   if(current!=null)
+                       current.dealt(card, slotPlaced);
                    env.logger.info("Placed card "+card+" in slot "+slotPlaced);
                }else{
                    env.logger.info("Failed to place card "+card+" unexpected full table");
@@ -267,6 +680,12 @@ public class Dealer implements Runnable {
 
            }
        });
+       long end=System.nanoTime();
+       if(reshuffleStart!=0){
+           latencies.reshuffle.record(end-reshuffleStart);
+           reshuffleStart=0;
+       }else
+           latencies.refill.record(end-start);
        updateTimerDisplay(true);
        if(env.config.hints){
            env.logger.info("Dealer reshuffled.Available hints : ");
@@ -277,26 +696,45 @@ public class Dealer implements Runnable {
 
     }
 
+    /**
+     * Shuffles the deck in place (Fisher-Yates) with the dealer's random stream.
+     */
+    private void shuffleDeck(){
+        for(int i=deck.size()-1;i>0;i--){
+            int j=random.nextInt(i+1);
+            deck.set(i,deck.set(j,deck.get(i)));
+        }
+    }
+
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * With a standby, no single wait is longer than the heartbeat interval, and every wakeup is a heartbeat, so an
+     * idle dealer (e.g. with no turn timeout and nobody claiming a set) is not taken for a stuck one.
      */
     private void sleepUntilWokenOrTimeout() {
         if(terminate)
             return;
-        try{
-            if(env.config.turnTimeoutMillis>=0 && check.isEmpty()){
-                Thread.sleep(sleepTime);
-
-            }else{
-               synchronized (this){
-                   while(!terminate && check.isEmpty()){
-                       wait();
-                   }
-               }
+        long pulse=heartbeatNanos();
+        // the dealer parks on the game's clock, so virtual time can jump over the wait
+        if(env.config.turnTimeoutMillis>=0){
+            long deadline=env.clock.nanos()+TimeUnit.MILLISECONDS.toNanos(sleepTime);
+            long nanos;
+            while(!terminate && check.isEmpty() && !Thread.currentThread().isInterrupted() && (nanos=deadline-env.clock.nanos())>0){
+                env.clock.parkNanos(this,Math.min(nanos,pulse));
+                heartbeat();
+            }
+
+        }else{
+            while(!terminate && check.isEmpty() && !Thread.currentThread().isInterrupted()){
+                if(pulse==Long.MAX_VALUE)
+                    env.clock.park(this);
+                else
+                    env.clock.parkNanos(this,pulse);
+                heartbeat();
             }
-        }catch (InterruptedException e){
-            env.logger.info("Dealer thread was interrupted! ");
         }
+        if(Thread.currentThread().isInterrupted())
+            env.logger.info("Dealer thread was interrupted! ");
     }
 
     /**
@@ -304,16 +742,19 @@ public class Dealer implements Runnable {
      */
     private void updateTimerDisplay(boolean reset) {
         if(reset){
-            reshuffleTime=System.currentTimeMillis()+env.config.turnTimeoutMillis;
+            reshuffleTime=env.clock.millis()+env.config.turnTimeoutMillis;
+            StandbyDealer current=standby;
+            if(current!=null)
+                current.reshuffleAt(reshuffleTime);
         }
         if(env.config.turnTimeoutMillis>0){
-            long timeRemaining=reshuffleTime-System.currentTimeMillis();
+            long timeRemaining=reshuffleTime-env.clock.millis();
             boolean showWarning=timeRemaining<env.config.turnTimeoutWarningMillis;
             env.ui.setCountdown(Math.max(timeRemaining,0),showWarning);
 
         }
         else if(env.config.turnTimeoutMillis==0){
-            long elapsedTimeSinceLastAction=System.currentTimeMillis()-reshuffleTime;
+            long elapsedTimeSinceLastAction=env.clock.millis()-reshuffleTime;
             env.ui.setElapsed(elapsedTimeSinceLastAction);
         }
     }
@@ -322,9 +763,26 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
+      reshuffleStart=System.nanoTime();
+      reshuffles++;
+      GameEvents.Reshuffle event=GameEvents.RESHUFFLES.isEnabled()? new GameEvents.Reshuffle() : null;
+      if(event!=null){
+          event.begin();
+          event.cards=onTable.size();
+      }
+      Journal events=journal;
+      if(events!=null)
+          events.reshuffle();
       table.clearTable();
       deck.addAll(onTable);
       onTable.clear();
+      StandbyDealer current=standby;
+      if(current!=null)
+          current.returned();
+      if(event!=null){
+          event.deck=deck.size();
+          event.commit();
+      }
 
 
     }
@@ -334,12 +792,73 @@ public class Dealer implements Runnable {
      */
     private void announceWinners() {
        final int maxScore= Arrays.stream(players).mapToInt(Player::score).max().orElse(0);
+       commitGameEvent(maxScore);
        int[] winnerIds=Arrays.stream(players).filter(player->player.score()==maxScore).mapToInt(Player::getId).toArray();
        env.ui.announceWinner(winnerIds);
        env.logger.info("Annoncing winners with score: "+maxScore+". Winners: "+Arrays.toString(winnerIds));
+       Leaderboard ratings=leaderboard;
+       if(ratings!=null && !terminate)
+           ratings.record(env.config.playerNames, Arrays.stream(players).mapToInt(Player::score).toArray());
+    }
+
+    private void beginGameEvent(){
+        if(!GameEvents.GAMES.isEnabled())
+            return;
+        gameEvent=new GameEvents.Game();
+        gameEvent.begin();
+    }
+
+    private void commitGameEvent(int topScore){
+        GameEvents.Game event=gameEvent;
+        if(event==null)
+            return;
+        gameEvent=null;
+        event.players=players.length;
+        event.claims=claims;
+        event.points=points;
+        event.penalties=penalties;
+        event.reshuffles=reshuffles;
+        event.topScore=topScore;
+        event.commit();
     }
 
     public boolean isReshuffle(){
         return isReshuffle;
     }
+
+    /**
+     * @return - the latencies of the players' key presses and claims.
+     */
+    public GameLatencies latencies(){
+        return latencies;
+    }
+
+    /**
+     * @return - the number of sets the players asked the dealer to check.
+     */
+    public int claims(){
+        return claims;
+    }
+
+    public int points(){
+        return points;
+    }
+
+    public int penalties(){
+        return penalties;
+    }
+
+    /**
+     * @return - the number of times the dealer returned the cards on the table to the deck.
+     */
+    public int reshuffles(){
+        return reshuffles;
+    }
+
+    /**
+     * @return - the number of key presses the players dropped (a full queue, a freeze or a reshuffle).
+     */
+    public long droppedKeyPresses(){
+        return Arrays.stream(players).mapToLong(Player::droppedKeys).sum();
+    }
 }
@@ -0,0 +1,98 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.GameLoop;
+import bguspl.set.GameThreads;
+import bguspl.set.TimerWheel;
+
+/**
+ * This class owns the freezes of all the players of a game. The freeze countdowns are shown and the players are
+ * released by a single timer wheel, so a frozen player's thread stays parked until the freeze is over.
+ * In the event loop engine the freezes run on the timers of the game loop instead, and the wheel is never started.
+ */
+public class FreezeService {
+
+    /**
+     * The precision of the freeze release.
+     */
+    private static final long TICK_MILLIS = 5;
+
+    /**
+     * The number of buckets of the timer wheel (a single round covers about 5 seconds).
+     */
+    private static final int WHEEL_SIZE = 1024;
+
+    private static final long SECOND_MILLIS = 1000;
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    private final TimerWheel wheel;
+
+    /**
+     * The game loop running the freezes (null if they run on the timer wheel).
+     */
+    private volatile GameLoop loop;
+
+    public FreezeService(Env env) {
+        this.env = env;
+        this.wheel = new TimerWheel(env.logger, env.clock, "freeze-timer",
+                GameThreads.daemonFactory(env, "freeze-timer"), TICK_MILLIS, WHEEL_SIZE);
+    }
+
+    /**
+     * Runs the freezes on the timers of a game loop (freeze must then be called on the loop thread).
+     *
+     * @param loop - the event loop of the game.
+     */
+    public void runOn(GameLoop loop) {
+        this.loop = loop;
+    }
+
+    /**
+     * Shows the freeze countdown of a player, updating it on whole second boundaries, and releases the player
+     * when the freeze is over.
+     *
+     * @param player      - the id of the frozen player.
+     * @param untilMillis - the time at which the freeze is over.
+     * @param release     - called (on the timer thread) when the freeze is over.
+     */
+    public void freeze(int player, long untilMillis, Runnable release) {
+        long remaining = untilMillis - env.clock.millis();
+        if (remaining <= 0) {
+            env.ui.setFreeze(player, 0);
+            env.ui.setFreezeDeadline(player, -1);
+            release.run();
+            return;
+        }
+
+        // the display shows whole seconds, so it only has to change when a second boundary is crossed
+        long seconds = (remaining + SECOND_MILLIS - 1) / SECOND_MILLIS;
+        env.ui.setFreeze(player, seconds * SECOND_MILLIS);
+        env.ui.setFreezeDeadline(player, untilMillis);
+        for (long left = seconds - 1; left > 0; --left) {
+            long display = left * SECOND_MILLIS;
+            schedule(() -> env.ui.setFreeze(player, display), remaining - display);
+        }
+        schedule(() -> {
+            env.ui.setFreeze(player, 0);
+            env.ui.setFreezeDeadline(player, -1);
+            release.run();
+        }, remaining);
+    }
+
+    private void schedule(Runnable task, long delayMillis) {
+        GameLoop current = loop;
+        if (current != null) current.schedule(task, delayMillis);
+        else wheel.schedule(task, delayMillis);
+    }
+
+    /**
+     * Stops the timer thread.
+     */
+    public void shutdown() {
+        wheel.shutdown();
+    }
+}
@@ -0,0 +1,152 @@
+package bguspl.set.ex;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * The game's Java Flight Recorder events, so a recording shows what the game threads were doing next to the GC, lock
+ * and thread events of the JVM. Every event is named bguspl.set.* and can be tuned in a .jfc file (see set-game.jfc).
+ * The frequent events are only allocated while a recording has them enabled (see the EventType handles), so the hot
+ * paths allocate nothing when the game is not recorded. Duration events begin before the table or dealer locks are
+ * taken, so their duration includes the time spent blocked on them.
+ */
+final class GameEvents {
+
+    static final String CATEGORY = "Set Game";
+
+    static final EventType TOKEN_TOGGLES = EventType.getEventType(TokenToggle.class);
+    static final EventType PLACEMENTS = EventType.getEventType(CardPlacement.class);
+    static final EventType REMOVALS = EventType.getEventType(CardRemoval.class);
+    static final EventType CLAIMS = EventType.getEventType(Claim.class);
+    static final EventType VERDICTS = EventType.getEventType(Verdict.class);
+    static final EventType FREEZES = EventType.getEventType(Freeze.class);
+    static final EventType RESHUFFLES = EventType.getEventType(Reshuffle.class);
+    static final EventType GAMES = EventType.getEventType(Game.class);
+
+    private GameEvents() {
+    }
+
+    @Name("bguspl.set.TokenToggle")
+    @Label("Token Toggle")
+    @Category({CATEGORY, "Table"})
+    @Description("A player placing or removing a token (including the wait for the table lock)")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class TokenToggle extends Event {
+        @Label("Player")
+        int player;
+        @Label("Slot")
+        int slot;
+        @Label("Card")
+        int card;
+        @Label("Placed")
+        @Description("True if a token was placed, false if one was removed or the slot was empty")
+        boolean placed;
+    }
+
+    @Name("bguspl.set.CardPlacement")
+    @Label("Card Placement")
+    @Category({CATEGORY, "Table"})
+    @Description("The dealer placing a card on the table (including the table delay and the wait for the table lock)")
+    @StackTrace(false)
+    static final class CardPlacement extends Event {
+        @Label("Card")
+        int card;
+        @Label("Slot")
+        int slot;
+    }
+
+    @Name("bguspl.set.CardRemoval")
+    @Label("Card Removal")
+    @Category({CATEGORY, "Table"})
+    @Description("The dealer removing a card and its tokens from the table")
+    @StackTrace(false)
+    static final class CardRemoval extends Event {
+        @Label("Card")
+        int card;
+        @Label("Slot")
+        int slot;
+    }
+
+    @Name("bguspl.set.Claim")
+    @Label("Claim")
+    @Category({CATEGORY, "Player"})
+    @Description("A player claiming a set, until the dealer's verdict")
+    @StackTrace(false)
+    static final class Claim extends Event {
+        @Label("Player")
+        int player;
+    }
+
+    @Name("bguspl.set.Verdict")
+    @Label("Verdict")
+    @Category({CATEGORY, "Dealer"})
+    @Description("The dealer checking the set of a player and awarding a point or a penalty")
+    @StackTrace(false)
+    static final class Verdict extends Event {
+        @Label("Player")
+        int player;
+        @Label("Set")
+        boolean set;
+        @Label("First Card")
+        int card1;
+        @Label("Second Card")
+        int card2;
+        @Label("Third Card")
+        int card3;
+    }
+
+    @Name("bguspl.set.Freeze")
+    @Label("Freeze")
+    @Category({CATEGORY, "Player"})
+    @Description("A player frozen after a point or a penalty")
+    @StackTrace(false)
+    static final class Freeze extends Event {
+        @Label("Player")
+        int player;
+        @Label("Penalty")
+        boolean penalty;
+        @Label("Freeze Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long freeze;
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Category({CATEGORY, "Dealer"})
+    @Description("The dealer returning the cards on the table to the deck")
+    @StackTrace(false)
+    static final class Reshuffle extends Event {
+        @Label("Cards Returned")
+        int cards;
+        @Label("Deck Size")
+        int deck;
+    }
+
+    @Name("bguspl.set.Game")
+    @Label("Game")
+    @Category(CATEGORY)
+    @Description("A game from the first deal to the winners")
+    @StackTrace(false)
+    static final class Game extends Event {
+        @Label("Players")
+        int players;
+        @Label("Claims")
+        int claims;
+        @Label("Points")
+        int points;
+        @Label("Penalties")
+        int penalties;
+        @Label("Reshuffles")
+        int reshuffles;
+        @Label("Top Score")
+        int topScore;
+    }
+}
@@ -0,0 +1,104 @@
+package bguspl.set.ex;
+
+import bguspl.set.LatencyHistogram;
+
+/**
+ * The latencies of the game's input path and of the dealer's work, measured on the wall clock (System.nanoTime) even
+ * in virtual time, since they are spent waiting for the CPU and for the table and dealer locks rather than for the
+ * game's timers. Recording never locks nor allocates (see LatencyHistogram), so the game threads record every event.
+ * Every player records its own key presses and claims, so the players never update the same counters; the game's
+ * histograms are merged from the players' ones when read.
+ */
+public class GameLatencies {
+
+    /**
+     * From a key press being queued to the player's token being placed on (or removed from) the table, per player.
+     */
+    private final LatencyHistogram[] keyToToken;
+
+    /**
+     * From a player claiming a set to the player learning the dealer's verdict (a point or a penalty), per player.
+     */
+    private final LatencyHistogram[] claimToVerdict;
+
+    /**
+     * How long the dealer takes to check a claimed set and hand out the point or the penalty.
+     */
+    public final LatencyHistogram verification = new LatencyHistogram();
+
+    /**
+     * How long the dealer takes to refill the slots of a set it removed.
+     */
+    public final LatencyHistogram refill = new LatencyHistogram();
+
+    /**
+     * From the dealer returning the cards on the table to the deck to the new cards dealt.
+     */
+    public final LatencyHistogram reshuffle = new LatencyHistogram();
+
+    /**
+     * @param players - the number of players of the game.
+     */
+    public GameLatencies(int players) {
+        keyToToken = new LatencyHistogram[players];
+        claimToVerdict = new LatencyHistogram[players];
+        for (int player = 0; player < players; ++player) {
+            keyToToken[player] = new LatencyHistogram();
+            claimToVerdict[player] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * @return - the histogram the player records its key presses on.
+     */
+    public LatencyHistogram keyToToken(int player) {
+        return keyToToken[player];
+    }
+
+    /**
+     * @return - the histogram the player records its claims on.
+     */
+    public LatencyHistogram claimToVerdict(int player) {
+        return claimToVerdict[player];
+    }
+
+    /**
+     * @return - the key press latencies of all the players (a snapshot).
+     */
+    public LatencyHistogram keyToToken() {
+        return merged(keyToToken);
+    }
+
+    /**
+     * @return - the claim latencies of all the players (a snapshot).
+     */
+    public LatencyHistogram claimToVerdict() {
+        return merged(claimToVerdict);
+    }
+
+    private static LatencyHistogram merged(LatencyHistogram[] histograms) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : histograms)
+            merged.merge(histogram);
+        return merged;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : keyToToken)
+            histogram.reset();
+        for (LatencyHistogram histogram : claimToVerdict)
+            histogram.reset();
+        verification.reset();
+        refill.reset();
+        reshuffle.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "key to token: " + keyToToken().summary() + System.lineSeparator()
+                + "claim to verdict: " + claimToVerdict().summary() + System.lineSeparator()
+                + "verification: " + verification.summary() + System.lineSeparator()
+                + "refill: " + refill.summary() + System.lineSeparator()
+                + "reshuffle: " + reshuffle.summary();
+    }
+}
@@ -0,0 +1,173 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.GameLoop;
+import bguspl.set.GameThreads;
+import bguspl.set.LatencyHistogram;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class generates the key presses of all the computer players of a game on one shared scheduler thread.
+ * The generator is open-loop: every key press has an intended send time derived from the configured arrival rate
+ * (and not from the time the previous key press was handled), and a key press that does not fit in the player's
+ * queue is dropped rather than waited for. The send lag is measured from the intended send time, so a stalled
+ * scheduler shows up in the numbers instead of silently slowing the generator down (coordinated omission).
+ * The scheduler is a game loop on the game's clock, so the key presses follow virtual time as well. In the event
+ * loop engine the key presses are scheduled on the game loop itself (see runOn).
+ */
+public class KeyPressGenerator {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    private GameLoop scheduler;
+    private Thread schedulerThread;  // null while the key presses run on the game loop (or are not started)
+
+    private final LatencyHistogram sendLag = new LatencyHistogram();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public KeyPressGenerator(Env env) {
+        this.env = env;
+    }
+
+    /**
+     * Schedules the key presses on the game loop instead of on a thread of their own.
+     *
+     * @param loop - the event loop of the game.
+     */
+    public synchronized void runOn(GameLoop loop) {
+        scheduler = loop;
+    }
+
+    /**
+     * Starts generating key presses for a computer player, at the player's key rate (Config::playerKeyRates).
+     *
+     * @param player - the computer player.
+     * @return - the key press source of the player (used to stop it).
+     */
+    public synchronized Source start(Player player) {
+        double rate = env.config.playerKeyRates[player.id];
+        long meanIntervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+        if (meanIntervalNanos <= 0) return new Source(player, null, 0);
+        if (scheduler == null) {
+            scheduler = new GameLoop(env.logger, env.clock);
+            schedulerThread = GameThreads.daemonFactory(env, "computer-keys").newThread(scheduler);
+            env.logger.info("thread computer-keys starting.");
+            schedulerThread.start();
+        }
+        Source source = new Source(player, scheduler, meanIntervalNanos);
+        scheduler.execute(() -> source.scheduleNext(env.clock.nanos()));
+        return source;
+    }
+
+    /**
+     * Stops the scheduler thread (the sources of the players should be stopped before).
+     */
+    public void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            if (scheduler == null) return;
+            thread = schedulerThread;
+            if (thread != null) scheduler.stop();
+            scheduler = null;
+            schedulerThread = null;
+        }
+        if (thread != null) {
+            // joined outside the monitor, so a virtual dealer thread does not pin its carrier while it waits
+            try {
+                env.clock.join(thread);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            env.logger.info("thread computer-keys terminated.");
+        }
+        env.logger.info("computer key presses: sent=" + sent.get() + " dropped=" + dropped.get() + " send lag: " + sendLag.summary());
+    }
+
+    public long sent() {
+        return sent.get();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return - the histogram of the delays between the intended and the actual send times.
+     */
+    public LatencyHistogram sendLag() {
+        return sendLag;
+    }
+
+    /**
+     * The key press source of a single computer player.
+     */
+    public class Source implements Runnable {
+
+        private final Player player;
+
+        private long intendedNanos;
+
+        private volatile boolean stopped;
+
+        /**
+         * The scheduler of the key presses (null if the computer players do not press keys).
+         */
+        private final GameLoop loop;
+
+        /**
+         * The mean time between two key presses of the player.
+         */
+        private final long meanIntervalNanos;
+
+        /**
+         * The random stream of the player's arrival times.
+         */
+        private final SplittableRandom random;
+
+        private Source(Player player, GameLoop loop, long meanIntervalNanos) {
+            this.player = player;
+            this.loop = loop;
+            this.meanIntervalNanos = meanIntervalNanos;
+            random = env.random.stream("keys", player.id);
+        }
+
+        @Override
+        public void run() {
+            if (stopped) return;
+            long now = env.clock.nanos();
+            sendLag.record(now - intendedNanos);
+            int slot = player.strategy().nextSlot(player.id);
+            if (slot >= 0) {
+                if (player.keyPressed(slot)) sent.incrementAndGet();
+                else dropped.incrementAndGet();
+            }
+            scheduleNext(now);
+        }
+
+        // on the scheduler thread only
+        private void scheduleNext(long now) {
+            if (stopped) return;
+            intendedNanos = (intendedNanos == 0 ? now : intendedNanos) + nextInterval();
+            loop.scheduleNanos(this, intendedNanos - now);
+        }
+
+        private long nextInterval() {
+            if (!env.config.computerKeyPoisson) return meanIntervalNanos;
+            // exponential inter-arrival times make a Poisson process
+            return (long) (-Math.log(1.0 - random.nextDouble()) * meanIntervalNanos);
+        }
+
+        /**
+         * Stops generating key presses for the player (a key press already due is skipped).
+         */
+        public void stop() {
+            stopped = true;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package bguspl.set.ex;
+
+import bguspl.set.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Profiles the contention on a monitor (opt in, see LockProfiling). Every profiled critical section is a call site:
+ * the time from asking for the monitor to holding it (the wait) and from holding it to releasing it (the hold) are
+ * recorded per site, and the hold time spent in the user interface and sleeping is recorded apart, since both are
+ * the usual reasons for long holds. A section entered again by the thread that holds the monitor is part of the
+ * outer section. The wall clock (System.nanoTime) is used even in virtual time, like GameLatencies.
+ * <p>
+ * A critical section is profiled with:
+ * <pre>
+ *   synchronized (LockProfiler.requesting(site, lock)) {
+ *       try (LockProfiler.Hold held = LockProfiler.entered(site)) {
+ *           ...
+ *       }
+ *   }
+ * </pre>
+ * where site is null when profiling is off, so the section then costs a null check. Neither allocates.
+ */
+public class LockProfiler {
+
+    /**
+     * A wait longer than this counts as contended (an uncontended monitor is taken in about a microsecond at worst).
+     */
+    static final long CONTENDED_NANOS = 10_000;
+
+    /**
+     * A profiled critical section.
+     */
+    public static final class Site {
+        final LockProfiler profiler;
+        final String name;
+        final LatencyHistogram wait = new LatencyHistogram();
+        final LatencyHistogram hold = new LatencyHistogram();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAdder holdNanos = new LongAdder();
+        final LongAdder contended = new LongAdder();
+        final LongAdder uiNanos = new LongAdder();
+        final LongAdder sleepNanos = new LongAdder();
+
+        private Site(LockProfiler profiler, String name) {
+            this.profiler = profiler;
+            this.name = name;
+        }
+
+        public long calls() {
+            return hold.count();
+        }
+
+        public long contended() {
+            return contended.sum();
+        }
+
+        public long waitNanos() {
+            return waitNanos.sum();
+        }
+
+        public long holdNanos() {
+            return holdNanos.sum();
+        }
+
+        /**
+         * @return - the hold time spent in the user interface.
+         */
+        public long uiNanos() {
+            return uiNanos.sum();
+        }
+
+        /**
+         * @return - the hold time spent sleeping.
+         */
+        public long sleepNanos() {
+            return sleepNanos.sum();
+        }
+    }
+
+    /**
+     * Holding a profiled monitor: closed when the critical section is left.
+     */
+    public interface Hold extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * The hold of a section that is not profiled.
+     */
+    private static final Hold UNPROFILED = () -> {};
+
+    /**
+     * The section a thread is in (one per thread), which is also its hold.
+     */
+    private static final class Frame implements Hold {
+        Site site;
+        int depth;
+        long requested;
+        long acquired;
+        long uiNanos;
+        long sleepNanos;
+
+        @Override
+        public void close() {
+            if (--depth > 0)
+                return;
+            long hold = System.nanoTime() - acquired;
+            site.hold.record(hold);
+            site.holdNanos.add(hold);
+            if (uiNanos > 0)
+                site.uiNanos.add(uiNanos);
+            if (sleepNanos > 0)
+                site.sleepNanos.add(sleepNanos);
+            site = null;
+        }
+    }
+
+    private final String lock;
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    private final ThreadLocal<Frame> frames = ThreadLocal.withInitial(Frame::new);
+    private final LongAdder sleepOutsideNanos = new LongAdder();
+    private final LongAdder uiOutsideNanos = new LongAdder();
+
+    /**
+     * @param lock - the name of the profiled monitor.
+     */
+    public LockProfiler(String lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * @return - the call site of the given name (created on first use).
+     */
+    public Site site(String name) {
+        return sites.computeIfAbsent(name, n -> new Site(this, n));
+    }
+
+    /**
+     * Called right before entering the monitor, to time the wait for it.
+     *
+     * @return - the monitor.
+     */
+    static <T> T requesting(Site site, T lock) {
+        if (site != null) {
+            Frame frame = site.profiler.frames.get();
+            if (frame.depth == 0)
+                frame.requested = System.nanoTime();
+        }
+        return lock;
+    }
+
+    /**
+     * Called first thing in the critical section.
+     *
+     * @return - the hold, to close when leaving the section.
+     */
+    static Hold entered(Site site) {
+        if (site == null)
+            return UNPROFILED;
+        Frame frame = site.profiler.frames.get();
+        if (frame.depth++ > 0)
+            return frame;
+        long now = System.nanoTime();
+        long wait = now - frame.requested;
+        site.wait.record(wait);
+        site.waitNanos.add(wait);
+        if (wait >= CONTENDED_NANOS)
+            site.contended.increment();
+        frame.site = site;
+        frame.acquired = now;
+        frame.uiNanos = 0;
+        frame.sleepNanos = 0;
+        return frame;
+    }
+
+    /**
+     * Records time spent in the user interface (counted in the hold time of the section the thread is in, if any).
+     */
+    void inUi(long nanos) {
+        Frame frame = frames.get();
+        if (frame.depth > 0)
+            frame.uiNanos += nanos;
+        else
+            uiOutsideNanos.add(nanos);
+    }
+
+    /**
+     * Records time spent sleeping (counted in the hold time of the section the thread is in, if any).
+     */
+    void slept(long nanos) {
+        Frame frame = frames.get();
+        if (frame.depth > 0)
+            frame.sleepNanos += nanos;
+        else
+            sleepOutsideNanos.add(nanos);
+    }
+
+    /**
+     * @return - the call sites, most waited for first.
+     */
+    public List<Site> ranked() {
+        List<Site> ranked = new ArrayList<>(sites.values());
+        ranked.sort(Comparator.comparingLong(Site::waitNanos).reversed().thenComparing(s -> s.name));
+        return ranked;
+    }
+
+    /**
+     * @return - the call sites ranked by the time threads waited for the monitor, with their hold times.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "lock profile of %s (wait: asking for the monitor until holding it, hold: holding it until release, "
+                        + "times in ms, percentiles in us)%n", lock));
+        report.append(String.format(Locale.ROOT, "%-24s %9s %9s %10s %9s %9s %10s %9s %9s %9s%n", "site", "calls",
+                "contended", "wait", "wait p99", "wait max", "hold", "hold p99", "in ui", "sleeping"));
+        long waits = 0, holds = 0;
+        for (Site site : ranked()) {
+            waits += site.waitNanos();
+            holds += site.holdNanos();
+            report.append(String.format(Locale.ROOT, "%-24s %9d %9d %10.2f %9.1f %9.1f %10.2f %9.1f %9.2f %9.2f%n",
+                    site.name, site.calls(), site.contended(), site.waitNanos() / 1e6, site.wait.percentile(99) / 1e3,
+                    site.wait.max() / 1e3, site.holdNanos() / 1e6, site.hold.percentile(99) / 1e3,
+                    site.uiNanos() / 1e6, site.sleepNanos() / 1e6));
+        }
+        report.append(String.format(Locale.ROOT, "total wait %.2f ms, total hold %.2f ms; outside the monitor: "
+                + "%.2f ms in the ui, %.2f ms sleeping", waits / 1e6, holds / 1e6, uiOutsideNanos.sum() / 1e6,
+                sleepOutsideNanos.sum() / 1e6));
+        return report.toString();
+    }
+}
@@ -1,19 +1,33 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameLoop;
+import bguspl.set.InputTracer;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * This class manages the players' threads and data
+ * This class manages the players' threads and data.
+ * A player either runs on its own thread (see run) or, in the event loop engine, is a state machine driven by
+ * key press, verdict and freeze expiry events on the game loop (see start). Both drivers share the game rules.
  *
  * @inv id >= 0
  * @inv score >= 0
  */
 public class Player implements Runnable {
 
+    /**
+     * The states of a player.
+     */
+    public enum State {
+        IDLE,           // no tokens on the table
+        SELECTING,      // some tokens on the table
+        CLAIM_PENDING,  // waiting for the dealer to check the selected set
+        FROZEN          // frozen after a point or a penalty, key presses are ignored
+    }
+
     /**
      * The game environment object.
      */
@@ -35,22 +49,32 @@ public class Player implements Runnable {
     protected Thread playerThread;
 
     /**
-     * The thread of the AI (computer) player (an additional thread used to generate key presses).
+     * The event loop driving the player in the event loop engine (null when the player runs on its own thread).
      */
-    private Thread aiThread;
+    private volatile GameLoop loop;
+
+    private volatile State state=State.IDLE;
+
+    /**
+     * The key press source of the AI (computer) player (scheduled on the dealer's shared key press generator).
+     */
+    private volatile KeyPressGenerator.Source aiKeys;
 
     /**
      * True iff the player is human (not a computer player).
      */
     private final boolean human;
 
+    /**
+     * The strategy choosing the key presses of a computer player (null for a human player).
+     */
+    private final Strategy strategy;
+
     /**
      * True iff game should be terminated.
      */
     private volatile boolean terminate;
 
-    private volatile boolean terminateAI;
-
     /**
      * The current score of the player.
      */
@@ -58,25 +82,27 @@ public class Player implements Runnable {
     private final Dealer myDealer;
 
 
-    private final BlockingQueue<Integer> storeActions;
-
-    private final long updateFreeze;
-
+    private final ActionRing storeActions;
 
     private int counter=0;
 
     private int score;
 
 
-    private long freezeTime=Long.MIN_VALUE;
-
+    private volatile long freezeTime=Long.MIN_VALUE;
 
-    private static final long DISPLAY_OFFSET_MILLIS=999;
-    private static final long MIN_DISPLAY_TIME=1000;
+    /**
+     * The System.nanoTime at which the pending claim was made (game loop only).
+     */
+    private long claimNanos;
 
+    /**
+     * The input gate of the player: true from the moment the player is frozen until the freeze service releases it.
+     */
+    private volatile boolean frozen;
 
+    private final LongAdder droppedKeys=new LongAdder();  // key presses dropped (a full queue, a freeze or a reshuffle)
 
-    private final long MAX_SLEEP_TIME_MS = 100;
     /**
      * The class constructor.
      *
@@ -92,8 +118,8 @@ public class Player implements Runnable {
         this.id = id;
         this.myDealer=mYDealer;
         this.human = human;
-        this.storeActions=new ArrayBlockingQueue<>(env.config.featureSize);
-        this.updateFreeze= Math.min(MAX_SLEEP_TIME_MS, Math.min(env.config.penaltyFreezeMillis, env.config.pointFreezeMillis));
+        this.strategy = human ? null : Strategy.create(env.config.playerStrategies[id], env, table, env.random.stream("strategy", id));
+        this.storeActions=new ActionRing(env.config.featureSize, env.clock);
     }
 
     /**
@@ -108,18 +134,14 @@ public class Player implements Runnable {
         while (!terminate) {
             try{
                 if(Frozen())
-                    updateFreezingTime();
+                    waitForFreezeToEnd();
                 int slot=storeActions.take();
-                if(!myDealer.isReshuffle()){
-                    env.logger.info("Processing key for player "+id+" on slot: "+slot);
-                    if(table.updatePlayerToken(id,slot) && table.getPlayerCounter(id)==table.maxTokens)
-                        checkMySet();
-                }
+                if(processKey(slot))
+                    checkMySet();
             }catch (InterruptedException e){
                 env.logger.info("Player "+id+" thread got interrupted");
             }
         }
-        if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
         env.logger.info( "Player Id " + id + " set counter is: " + counter);
     }
@@ -127,25 +149,106 @@ public class Player implements Runnable {
         return id;
 
      }
+
     /**
-     * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * Starts the player on the game loop instead of on its own thread (called on the loop thread).
+     *
+     * @param loop - the event loop of the game.
      */
-    private void createArtificialIntelligence() {
+    public void start(GameLoop loop){
+        this.loop=loop;
+        env.logger.info("player "+id+" starting on the event loop.");
+        if (!human) createArtificialIntelligence();
+        if(frozen)  // restored from a checkpoint
+            myDealer.freezes.freeze(id, freezeTime, () -> loop.execute(this::onFreezeOver));
+    }
 
-        // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
-            env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
-            while (!terminateAI) {
-                try {
-                    int simulatedAction= ThreadLocalRandom.current().nextInt(env.config.tableSize);
-                    storeActions.put(simulatedAction);
-                } catch (InterruptedException ignored) {}
+    /**
+     * Toggles the player's token on a slot (unless the dealer is reshuffling).
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     * @return     - true iff the player completed a selection that the dealer should check.
+     */
+    private boolean processKey(int slot){
+        InputTracer tracer=env.tracer;
+        if(tracer==null)
+            return toggleToken(slot);
+        tracer.dequeued(storeActions.takenTrace());
+        try{
+            return toggleToken(slot);
+        }finally{
+            tracer.processed();
+        }
+    }
+
+    private boolean toggleToken(int slot){
+        if(myDealer.isReshuffle()){
+            droppedKeys.increment();
+            return false;
+        }
+        if(env.logger.isLoggable(Level.INFO))
+            env.logger.info("Processing key for player "+id+" on slot: "+slot);
+        boolean toggled=table.updatePlayerToken(id,slot);
+        if(toggled)
+            myDealer.latencies.keyToToken(id).record(System.nanoTime()-storeActions.takenOfferedNanos());
+        boolean claim=toggled && table.getPlayerCounter(id)==table.maxTokens;
+        updateState();
+        return claim;
+    }
+
+    private void updateState(){
+        state=frozen? State.FROZEN : table.getPlayerCounter(id)>0? State.SELECTING : State.IDLE;
+    }
+
+    /**
+     * Handles the waiting key presses on the game loop, until the player claims a set (or there are none left).
+     */
+    private void onKeys(){
+        int slot;
+        while(state!=State.CLAIM_PENDING && state!=State.FROZEN && !terminate && (slot=storeActions.poll())>=0){
+            if(processKey(slot)){
+                state=State.CLAIM_PENDING;
+                counter++;
+                claimNanos=System.nanoTime();
+                GameEvents.Claim event=GameEvents.CLAIMS.isEnabled()? new GameEvents.Claim() : null;
+                if(event!=null){
+                    event.begin();
+                    event.player=id;
+                }
+                myDealer.claim(this);  // the set is checked right away on the game loop
+                if(event!=null)
+                    event.commit();
             }
-            env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
+        }
+    }
 
-        aiThread.start();
+    /**
+     * Called on the game loop after the dealer checked the player's set (and awarded a point or a penalty).
+     */
+    void onVerdict(){
+        myDealer.latencies.claimToVerdict(id).record(System.nanoTime()-claimNanos);
+        updateState();
+        if(state==State.FROZEN)
+            myDealer.freezes.freeze(id, freezeTime, () -> loop.execute(this::onFreezeOver));
+        else
+            onKeys();
+    }
+
+    private void onFreezeOver(){
+        frozen=false;
+        clearIncomingActions();
+        updateState();
+        onKeys();
+    }
+    /**
+     * Registers an AI (computer) player with the dealer's key press generator. The generator presses the keys
+     * chosen by the player's strategy at the player's key rate (open-loop), dropping key presses when the queue
+     * of key presses is full.
+     */
+    private void createArtificialIntelligence() {
+
+        // note: this is a very, very smart AI (!)
+        aiKeys = myDealer.keyPresses.start(this);
     }
 
     /**
@@ -153,16 +256,15 @@ public class Player implements Runnable {
      */
     public void terminate() {
         env.logger.info("Terminate was called on "+id );
-        if(!human){
-            terminateAI=true;
-            env.logger.info("Interrupting player "+id+"ai thread");
-            aiThread.interrupt();
-            try{aiThread.join();}catch (InterruptedException ignored){}
-
+        if(!human && aiKeys!=null){
+            env.logger.info("Stopping player "+id+" ai key presses");
+            aiKeys.stop();
         }
         terminate=true;
-        env.logger.info("Interrupting player "+id+" thread");
-        playerThread.interrupt();
+        if(playerThread!=null){
+            env.logger.info("Interrupting player "+id+" thread");
+            playerThread.interrupt();
+        }
 
     }
 
@@ -170,11 +272,33 @@ public class Player implements Runnable {
      * This method is called when a key is pressed.
      *
      * @param slot - the slot corresponding to the key pressed.
+     * @return     - true iff the key press was queued (false if it was dropped because the queue is full).
+     */
+    public boolean keyPressed(int slot) {
+        return keyPressed(slot, env.tracer==null? InputTracer.NONE : env.tracer.begin());
+    }
+
+    /**
+     * This method is called when a traced key is pressed (see InputTracer).
+     *
+     * @param slot  - the slot corresponding to the key pressed.
+     * @param trace - the trace id of the key press (InputTracer.NONE if it is not traced).
+     * @return      - true iff the key press was queued (false if it was dropped because the queue is full).
      */
-    public void keyPressed(int slot) {
-       if(!storeActions.offer(slot)){
+    public boolean keyPressed(int slot, long trace) {
+       if(env.tracer!=null)
+           env.tracer.queued(trace);
+       if(!storeActions.offer(slot,trace)){
+           if(env.tracer!=null)
+               env.tracer.dropped(trace);
+           droppedKeys.increment();
            env.logger.info("failed to add keyPress to queue");
+           return false;
        }
+       GameLoop current=loop;
+       if(current!=null)
+           current.execute(this::onKeys);
+       return true;
     }
     /**
      * Award a point to a player and perform other related actions.
@@ -187,42 +311,51 @@ public class Player implements Runnable {
       // this part is just for demonstration in the unit tests
         int ignored=table.countCards();
         env.ui.setScore(id, ++score);
-        freezeTime=(System.currentTimeMillis()+env.config.pointFreezeMillis);
+        freeze(env.config.pointFreezeMillis);
+        recordFreeze(false, env.config.pointFreezeMillis);
 
     }
 
-     public void updateFreezingTime(){
-        try{
-            while(Frozen()){
-                long remainingFreezeMillis=calculateRemainingFreezeMillis();
-                displayFreezeTime(remainingFreezeMillis);
-                safelySleep(updateFreeze);
-            }
-            resetFreezeDisplay();
-        }catch (InterruptedException e){
-                handleInteruptDuringFreeze();
-        }finally {
-            clearIncomingActions();
-        }
-
-     }
-
-     private long calculateRemainingFreezeMillis(){
-        long remainingTime=freezeTime-System.currentTimeMillis();
-        return remainingTime>0? remainingTime+DISPLAY_OFFSET_MILLIS:MIN_DISPLAY_TIME;
+    private void recordFreeze(boolean penalty, long millis){
+        if(millis<=0 || !GameEvents.FREEZES.isEnabled())
+            return;
+        GameEvents.Freeze event=new GameEvents.Freeze();
+        event.player=id;
+        event.penalty=penalty;
+        event.freeze=millis;
+        event.commit();
+    }
 
-     }
-     private void displayFreezeTime(long remainingFreeze){
-        env.ui.setFreeze(id,remainingFreeze);
+    private void freeze(long millis){
+        freezeTime=env.clock.millis()+millis;
+        frozen=millis>0;
     }
-    private void safelySleep(long millis) throws InterruptedException{
-        Thread.sleep(millis);
+
+    /**
+     * Hands the freeze over to the dealer's freeze service and parks until it releases the input gate.
+     * Key presses that arrived during the freeze are dropped.
+     */
+    private void waitForFreezeToEnd(){
+        state=State.FROZEN;
+        myDealer.freezes.freeze(id, freezeTime, this::unfreeze);
+        while(frozen && !terminate){
+            env.clock.park(this);
+        }
+        if(terminate && frozen)
+            handleInteruptDuringFreeze();
+        clearIncomingActions();
+        updateState();
     }
-    private void resetFreezeDisplay(){
-        env.ui.setFreeze(id,0);
+
+    private void unfreeze(){
+        frozen=false;
+        env.clock.unpark(playerThread);
     }
+
     private void clearIncomingActions(){
-        storeActions.clear();
+        int dropped=storeActions.clear(env.tracer);
+        if(dropped>0)
+            droppedKeys.add(dropped);
     }
     private void handleInteruptDuringFreeze(){
         Thread.currentThread().interrupt();
@@ -231,25 +364,32 @@ public class Player implements Runnable {
 
 
     private void checkMySet(){
-      try{
-          synchronized (this){
-              env.logger.info("Player is waiting to add to check queue");
-              myDealer.check.put(id);
-              env.logger.info("Player "+id+" addef to check queue");
-              myDealer.dealerThread.interrupt();
-              counter++;
-
-              while(myDealer.check.contains(id)){
-                  env.logger.info("Player is waiting to deealer to check his set ! ");
-                  wait();
-
-              }
-              env.logger.info("Player finished waiting to dealer to check his set! ");
-          }
-      }catch (InterruptedException e){
-
+      state=State.CLAIM_PENDING;
+      long claimed=System.nanoTime();
+      GameEvents.Claim event=GameEvents.CLAIMS.isEnabled()? new GameEvents.Claim() : null;
+      if(event!=null){
+          event.begin();
+          event.player=id;
+      }
+      myDealer.check.add(id);
+      env.logger.info("Player "+id+" addef to check queue");
+      myDealer.wakeUp();
+      counter++;
+
+      // parked on the game's clock until the dealer removes the claim from the queue and unparks the player
+      while(myDealer.check.contains(id) && !Thread.currentThread().isInterrupted()){
+          env.logger.info("Player is waiting to deealer to check his set ! ");
+          env.clock.park(this);
+      }
+      if(Thread.currentThread().isInterrupted())
           env.logger.info("Player "+id+" thread was interrupted while waiting for the check");
+      else{
+          myDealer.latencies.claimToVerdict(id).record(System.nanoTime()-claimed);
+          if(event!=null)
+              event.commit();
+          env.logger.info("Player finished waiting to dealer to check his set! ");
       }
+      updateState();
     }
 
 
@@ -257,12 +397,42 @@ public class Player implements Runnable {
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
-       freezeTime=System.currentTimeMillis()+env.config.penaltyFreezeMillis;
+       freeze(env.config.penaltyFreezeMillis);
+       recordFreeze(true, env.config.penaltyFreezeMillis);
+
+    }
+
+    /**
+     * Restores the score and the freeze of the player from a checkpoint (before the game starts).
+     *
+     * @param score        - the score of the player.
+     * @param freezeMillis - the time left of the player's freeze (0 if the player was not frozen).
+     */
+    void restore(int score, long freezeMillis){
+        this.score=score;
+        env.ui.setScore(id, score);
+        if(freezeMillis>0){
+            freeze(freezeMillis);
+            state=State.FROZEN;
+        }
+    }
+
+    /**
+     * @return - the time left of the player's freeze at the given time (0 if the player is not frozen).
+     */
+    long freezeLeft(long now){
+        return frozen? Math.max(0, freezeTime-now) : 0;
+    }
 
+    /**
+     * @return - the number of key presses the player dropped.
+     */
+    long droppedKeys(){
+        return droppedKeys.sum();
     }
 
-    public synchronized boolean Frozen(){
-        return freezeTime>System.currentTimeMillis();
+    public boolean Frozen(){
+        return frozen;
 
     }
 
@@ -270,4 +440,12 @@ public class Player implements Runnable {
 
         return score;
     }
+
+    public State state() {
+        return state;
+    }
+
+    Strategy strategy() {
+        return strategy;
+    }
 }
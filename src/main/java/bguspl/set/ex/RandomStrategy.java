@@ -0,0 +1,24 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * Presses random keys (the original computer player).
+ */
+public class RandomStrategy implements Strategy {
+
+    private final Env env;
+    private final SplittableRandom random;
+
+    public RandomStrategy(Env env, SplittableRandom random) {
+        this.env = env;
+        this.random = random;
+    }
+
+    @Override
+    public int nextSlot(int player) {
+        return random.nextInt(env.config.tableSize);
+    }
+}
@@ -0,0 +1,75 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Looks for a legal set on the table and presses its keys one by one, first removing the player's tokens that are
+ * not part of it. Presses random keys while there is no set on the table.
+ */
+public class SeekerStrategy implements Strategy {
+
+    private final Env env;
+    private final Table table;
+    private final SplittableRandom random;
+
+    /**
+     * The slots of the set the player is after (null if none).
+     */
+    private int[] target;
+
+    /**
+     * The cards of the target set (checked against the table, since the dealer may remove or replace them).
+     */
+    private int[] targetCards;
+
+    public SeekerStrategy(Env env, Table table, SplittableRandom random) {
+        this.env = env;
+        this.table = table;
+        this.random = random;
+    }
+
+    @Override
+    public int nextSlot(int player) {
+        Integer[] cards = table.cardsBySlot();
+        if (!targetOnTable(cards)) findTarget(cards);
+        if (target == null) return random.nextInt(env.config.tableSize);
+
+        for (int slot = 0; slot < cards.length; ++slot)
+            if (table.hasToken(player, slot) && !inTarget(slot)) return slot;
+        for (int slot : target)
+            if (!table.hasToken(player, slot)) return slot;
+        // the whole set is selected: wait for the dealer to check it
+        return -1;
+    }
+
+    private boolean targetOnTable(Integer[] cards) {
+        if (target == null) return false;
+        for (int i = 0; i < target.length; ++i)
+            if (cards[target[i]] == null || cards[target[i]] != targetCards[i]) return false;
+        return true;
+    }
+
+    private void findTarget(Integer[] cards) {
+        target = null;
+        List<Integer> onTable = new ArrayList<>(cards.length);
+        for (Integer card : cards)
+            if (card != null) onTable.add(card);
+        List<int[]> sets = env.util.findSets(onTable, 1);
+        if (sets.isEmpty()) return;
+        targetCards = sets.get(0);
+        target = new int[targetCards.length];
+        for (int i = 0; i < targetCards.length; ++i)
+            for (int slot = 0; slot < cards.length; ++slot)
+                if (cards[slot] != null && cards[slot] == targetCards[i]) target[i] = slot;
+    }
+
+    private boolean inTarget(int slot) {
+        for (int s : target)
+            if (s == slot) return true;
+        return false;
+    }
+}
@@ -0,0 +1,219 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.GameThreads;
+import bguspl.set.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A hot standby for the dealer thread (thread per player engine only).
+ * The dealer replicates every change of its own state to the standby as it happens: the cards dealt, discarded and
+ * returned to the deck, the scores, the claim counters and the reshuffle time. Every step of the dealer also counts
+ * as a heartbeat. A watchdog thread checks the heartbeats, and when the dealer thread died or missed its heartbeats
+ * for the failover timeout, it starts a new dealer thread that restores the replicated state and resumes the game.
+ * The players, the table and the check queue live on in the same process, so the players do not notice.
+ */
+public class StandbyDealer {
+
+    /**
+     * The dealer's state as the standby knows it.
+     */
+    static final class Replica {
+        final List<Integer> deck;
+        final int[] board;  // the card in every slot (-1 if none)
+        final int[] scores;
+        int claims;
+        int points;
+        int penalties;
+        long reshuffleTime = Long.MAX_VALUE;
+
+        Replica(int deckSize, int tableSize, int players) {
+            deck = IntStream.range(0, deckSize).boxed().collect(Collectors.toList());
+            board = new int[tableSize];
+            Arrays.fill(board, -1);
+            scores = new int[players];
+        }
+
+        Replica(Replica other) {
+            deck = new ArrayList<>(other.deck);
+            board = other.board.clone();
+            scores = other.scores.clone();
+            claims = other.claims;
+            points = other.points;
+            penalties = other.penalties;
+            reshuffleTime = other.reshuffleTime;
+        }
+    }
+
+    private final Env env;
+    private final Dealer dealer;
+    private final long timeoutNanos;
+
+    private final Replica replica;  // guarded by this
+
+    private volatile long lastHeartbeat;  // the System.nanoTime of the dealer's last step
+    private volatile long failedHeartbeat;  // the last heartbeat of the dealer that failed (0 while none did)
+    private volatile boolean takingOver;  // true from a takeover until the new dealer thread resumed the game
+    private Thread watchdog;
+
+    /**
+     * The time from the last heartbeat of a failed dealer to the first step of the dealer that took over.
+     */
+    public final LatencyHistogram failovers = new LatencyHistogram();
+
+    /**
+     * @param env           - the game environment.
+     * @param dealer        - the dealer to replicate and take over.
+     * @param timeoutMillis - how long the dealer may go without a heartbeat before the standby takes over.
+     */
+    public StandbyDealer(Env env, Dealer dealer, long timeoutMillis) {
+        this.env = env;
+        this.dealer = dealer;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        replica = new Replica(env.config.deckSize, env.config.tableSize, env.config.players);
+        dealer.replicateTo(this);
+    }
+
+    /**
+     * Starts watching the dealer (call before the dealer thread starts).
+     */
+    public void start() {
+        heartbeat();
+        // the watchdog waits in real time, so it never holds a virtual clock back
+        watchdog = new Thread(this::watch, "standby-dealer");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    /**
+     * Waits for the game to end, whichever dealer thread ends it.
+     */
+    public void join() throws InterruptedException {
+        watchdog.join();
+        env.clock.join(dealer.dealerThread);
+    }
+
+    private void watch() {
+        long interval = heartbeatNanos();
+        while (!dealer.isOver()) {
+            LockSupport.parkNanos(this, interval);
+            Thread primary = dealer.dealerThread;
+            if (primary == null || dealer.isOver() || (takingOver && primary.isAlive()))
+                continue;
+            long silence = System.nanoTime() - lastHeartbeat;
+            if (!primary.isAlive() || silence > timeoutNanos)
+                takeOver(primary, silence);
+        }
+    }
+
+    private void takeOver(Thread primary, long silence) {
+        env.logger.severe("dealer thread " + primary.getName() + (primary.isAlive() ? " missed its heartbeats for "
+                + TimeUnit.NANOSECONDS.toMillis(silence) + " ms" : " died") + ", the standby dealer takes over.");
+        failedHeartbeat = lastHeartbeat;
+        takingOver = true;
+        // a primary that is only stuck is interrupted, and stops at its next step once it sees it is no longer the
+        // dealer thread (the dealer that takes over waits for that before it reads the replica)
+        Thread standby = GameThreads.newThread(env, () -> dealer.resume(primary, this), "dealer (standby)");
+        dealer.dealerThread = standby;
+        primary.interrupt();
+        standby.start();
+    }
+
+    /**
+     * @return - a copy of the replicated state.
+     */
+    synchronized Replica snapshot() {
+        return new Replica(replica);
+    }
+
+    long timeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+    }
+
+    /**
+     * @return - the longest the dealer should wait between two heartbeats (a quarter of the failover timeout).
+     */
+    long heartbeatNanos() {
+        return Math.max(timeoutNanos / 4, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    void heartbeat() {
+        lastHeartbeat = System.nanoTime();
+    }
+
+    /**
+     * Called by the dealer that took over, once it restored the replicated state.
+     */
+    void resumed() {
+        heartbeat();
+        takingOver = false;
+        long failed = failedHeartbeat;
+        if (failed != 0)
+            failovers.record(lastHeartbeat - failed);
+        env.logger.severe("the standby dealer resumed the game.");
+    }
+
+    synchronized void dealt(int card, int slot) {
+        replica.deck.remove(Integer.valueOf(card));
+        replica.board[slot] = card;
+        heartbeat();
+    }
+
+    synchronized void discarded(int slot) {
+        replica.board[slot] = -1;
+        heartbeat();
+    }
+
+    synchronized void returned() {
+        for (int slot = 0; slot < replica.board.length; ++slot) {
+            if (replica.board[slot] >= 0)
+                replica.deck.add(replica.board[slot]);
+            replica.board[slot] = -1;
+        }
+        heartbeat();
+    }
+
+    synchronized void scored(int player, int score) {
+        replica.scores[player] = score;
+    }
+
+    synchronized void checked(int claims, int points, int penalties) {
+        replica.claims = claims;
+        replica.points = points;
+        replica.penalties = penalties;
+        heartbeat();
+    }
+
+    synchronized void reshuffleAt(long reshuffleTime) {
+        replica.reshuffleTime = reshuffleTime;
+    }
+
+    /**
+     * Called when the dealer resumed a checkpoint, to replace the replica as a whole.
+     */
+    synchronized void restored(List<Integer> deck, int[] board, int[] scores, int claims, int points, int penalties,
+                               long reshuffleTime) {
+        replica.deck.clear();
+        replica.deck.addAll(deck);
+        System.arraycopy(board, 0, replica.board, 0, board.length);
+        System.arraycopy(scores, 0, replica.scores, 0, scores.length);
+        replica.claims = claims;
+        replica.points = points;
+        replica.penalties = penalties;
+        replica.reshuffleTime = reshuffleTime;
+    }
+
+    /**
+     * @return - the number of times the standby took over.
+     */
+    public long failoverCount() {
+        return failovers.count();
+    }
+}
@@ -0,0 +1,38 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.SplittableRandom;
+
+/**
+ * The way a computer player chooses its key presses.
+ */
+public interface Strategy {
+
+    /**
+     * Chooses the next key press of a computer player (called on the key press scheduler only).
+     *
+     * @param player - the id of the player.
+     * @return - the slot of the key to press, or -1 to skip this key press.
+     */
+    int nextSlot(int player);
+
+    /**
+     * @param name   - the name of the strategy (Random or Seeker, case insensitive).
+     * @param env    - the game environment.
+     * @param table  - the table of the game.
+     * @param random - the random stream of the player (drawn from on the key press scheduler only).
+     * @return - a new instance of the strategy (a strategy may keep state per player).
+     * @throws IllegalArgumentException - if there is no strategy with this name.
+     */
+    static Strategy create(String name, Env env, Table table, SplittableRandom random) {
+        switch (name.trim().toLowerCase()) {
+            case "random":
+                return new RandomStrategy(env, random);
+            case "seeker":
+                return new SeekerStrategy(env, table, random);
+            default:
+                throw new IllegalArgumentException("unknown strategy: " + name);
+        }
+    }
+}
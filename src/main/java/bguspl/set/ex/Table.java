@@ -1,9 +1,10 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.InputTracer;
 
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -12,6 +13,7 @@ import java.util.stream.IntStream;
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
  */
+@SuppressWarnings("try")  // the lock profiler's holds are only closed, never used in the critical sections
 public class Table {
 
     /**
@@ -39,6 +41,36 @@ public class Table {
 
     protected final int maxTokens=3;
 
+    /**
+     * The order in which clearTable removes the cards (shuffled in place every time).
+     */
+    private final int[] clearOrder;
+
+    /**
+     * The table's stream of the game's seed, for choosing the slots of new cards and the clearing order (dealer only).
+     */
+    private final SplittableRandom random;
+
+    /**
+     * False iff placing and removing cards should not be delayed (when the table is driven by an event loop).
+     */
+    private volatile boolean delayed=true;
+
+    /**
+     * The standby the dealer heartbeats to (null if none). The dealer's delayed refills and clears heartbeat to it
+     * between the delays, so a long TableDelaySeconds does not look like a stuck dealer.
+     */
+    private volatile StandbyDealer standby;
+
+    /**
+     * The profiler of the table's monitor (null unless LockProfiling is on), and its call sites (null if it is off).
+     * Every critical section on the table is entered with
+     * synchronized(LockProfiler.requesting(site,this)){ try(LockProfiler.Hold held=LockProfiler.entered(site)){ ... }}
+     */
+    private final LockProfiler profiler;
+    private final LockProfiler.Site toggleSite, placeSite, slotChoiceSite, removeSite, tokensSite, counterSite,
+            hasTokenSite, countSite, emptySlotsSite, cardsSite;
+
 
 
 
@@ -57,6 +89,30 @@ public class Table {
         this.cardToSlot = cardToSlot;
         this.slotToToken=slotToToken;
         this.playerTokenCounter=playerTokenCounter;
+        this.clearOrder=IntStream.range(0,slotToCard.length).toArray();
+        this.random=env.random.stream("table");
+        this.profiler=env.config.lockProfiling? new LockProfiler("Table") : null;
+        this.toggleSite=site("updatePlayerToken");
+        this.placeSite=site("placeCard");
+        this.slotChoiceSite=site("placeCard (slot choice)");
+        this.removeSite=site("removeCard");
+        this.tokensSite=site("cardsOfPlayerTokens");
+        this.counterSite=site("getPlayerCounter");
+        this.hasTokenSite=site("hasToken");
+        this.countSite=site("countCards");
+        this.emptySlotsSite=site("emptySlotCounter");
+        this.cardsSite=site("cardsBySlot");
+    }
+
+    private LockProfiler.Site site(String name){
+        return profiler==null? null : profiler.site(name);
+    }
+
+    /**
+     * @return - the profiler of the table's monitor (null unless LockProfiling is on).
+     */
+    public LockProfiler lockProfiler(){
+        return profiler;
     }
 
 
@@ -99,12 +155,16 @@ public class Table {
      *
      * @return - the number of cards on the table.
      */
-    public synchronized int countCards() {
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
-        return cards;
+    public int countCards() {
+        synchronized(LockProfiler.requesting(countSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(countSite)){
+                int cards = 0;
+                for (Integer card : slotToCard)
+                    if (card != null)
+                        ++cards;
+                return cards;
+            }
+        }
     }
 
     /**
@@ -115,25 +175,40 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
-       
-        synchronized(this){
-            cardToSlot[card] = slot;
-            slotToCard[slot] = card;
-            env.ui.placeCard(card,slot);
-
+        GameEvents.CardPlacement event=GameEvents.PLACEMENTS.isEnabled()? new GameEvents.CardPlacement() : null;
+        if(event!=null)
+            event.begin();
+        delay();
+
+        synchronized(LockProfiler.requesting(placeSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(placeSite)){
+                cardToSlot[card] = slot;
+                slotToCard[slot] = card;
+                long ui=uiStarted();
+                env.ui.placeCard(card,slot);
+                uiDone(ui);
+            }
+        }
+        if(event!=null){
+            event.card=card;
+            event.slot=slot;
+            event.commit();
         }
-    
     }
 
-    public synchronized int placeCard(int card){
-        int[] emptySlots= IntStream.range(0,slotToCard.length).filter(i->slotToCard[i]==null).toArray();
-        if(emptySlots.length==0)
-               return -1;   // no available slots!
-        int randomSlotIndex= ThreadLocalRandom.current().nextInt(emptySlots.length);
-        int selectedSlot=emptySlots[randomSlotIndex];
+    // the slot is chosen under the lock, but the card is placed (and delayed) without holding it, so players are not
+    // blocked on the table while the dealer waits (only the dealer places and removes cards)
+    public int placeCard(int card){
+        int selectedSlot;
+        synchronized(LockProfiler.requesting(slotChoiceSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(slotChoiceSite)){
+                int[] emptySlots= IntStream.range(0,slotToCard.length).filter(i->slotToCard[i]==null).toArray();
+                if(emptySlots.length==0)
+                       return -1;   // no available slots!
+                int randomSlotIndex= random.nextInt(emptySlots.length);
+                selectedSlot=emptySlots[randomSlotIndex];
+            }
+        }
         placeCard(card,selectedSlot);
         return selectedSlot;
 
@@ -141,14 +216,96 @@ public class Table {
 
 
 
-    public synchronized int getPlayerCounter(int player){
-        return playerTokenCounter[player];
+    /**
+     * Stops delaying card placements and removals (an event loop must never block).
+     */
+    public void disableDelay(){
+        delayed=false;
+    }
+
+    /**
+     * Heartbeats to a standby dealer during the delays from now on (the delays are the dealer's).
+     */
+    void heartbeatTo(StandbyDealer standby){
+        this.standby=standby;
+    }
+
+    private void delay(){
+        if(!delayed || env.config.tableDelayMillis<=0)
+            return;
+        long started=profiler==null? 0 : System.nanoTime();
+        StandbyDealer current=standby;
+        try {
+            if(current==null)
+                env.clock.sleep(env.config.tableDelayMillis);
+            else {
+                long pulse=Math.max(1,TimeUnit.NANOSECONDS.toMillis(current.heartbeatNanos()));
+                for(long left=env.config.tableDelayMillis; left>0; left-=pulse){
+                    env.clock.sleep(Math.min(left,pulse));
+                    current.heartbeat();
+                }
+            }
+        } catch (InterruptedException ignored) {}
+        if(profiler!=null)
+            profiler.slept(System.nanoTime()-started);
+    }
+
+    // the time spent in the ui is only measured while the monitor is profiled
+    private long uiStarted(){
+        return profiler==null? 0 : System.nanoTime();
+    }
+
+    private void uiDone(long started){
+        if(profiler!=null)
+            profiler.inUi(System.nanoTime()-started);
+    }
+
+    // a token drawn for a traced key press stamps its trace as well
+    private long tokenUiStarted(){
+        if(env.tracer!=null)
+            env.tracer.reached(InputTracer.Stage.UI_ENTERED);
+        return uiStarted();
+    }
+
+    private void tokenUiDone(long started){
+        uiDone(started);
+        if(env.tracer!=null)
+            env.tracer.reached(InputTracer.Stage.UI_RETURNED);
+    }
 
+    /**
+     * @return - a copy of the mapping between the slots and the cards placed in them (null if none).
+     */
+    public Integer[] cardsBySlot(){
+        synchronized(LockProfiler.requesting(cardsSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(cardsSite)){
+                return Arrays.copyOf(slotToCard, slotToCard.length);
+            }
+        }
+    }
 
+    public boolean hasToken(int player, int slot){
+        synchronized(LockProfiler.requesting(hasTokenSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(hasTokenSite)){
+                return slotToToken[slot][player];
+            }
+        }
     }
-    public synchronized int emptySlotCounter(){
-        return slotToCard.length-countCards();
 
+    public int getPlayerCounter(int player){
+        synchronized(LockProfiler.requesting(counterSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(counterSite)){
+                return playerTokenCounter[player];
+            }
+        }
+    }
+
+    public int emptySlotCounter(){
+        synchronized(LockProfiler.requesting(emptySlotsSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(emptySlotsSite)){
+                return slotToCard.length-countCards();
+            }
+        }
     }
 
 
@@ -161,32 +318,49 @@ public class Table {
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard(int slot) {
-
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
-
-        synchronized (this){
-            int card=slotToCard[slot];
-            slotToCard[slot]=null;
-            cardToSlot[card]=null;
-            removeTokens(slot);
-            env.ui.removeCard(slot);
+        GameEvents.CardRemoval event=GameEvents.REMOVALS.isEnabled()? new GameEvents.CardRemoval() : null;
+        if(event!=null)
+            event.begin();
+
+        delay();
+
+        int card;
+        synchronized(LockProfiler.requesting(removeSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(removeSite)){
+                card=slotToCard[slot];
+                slotToCard[slot]=null;
+                cardToSlot[card]=null;
+                removeTokens(slot);
+                long ui=uiStarted();
+                env.ui.removeCard(slot);
+                uiDone(ui);
+            }
+        }
+        if(event!=null){
+            event.card=card;
+            event.slot=slot;
+            event.commit();
         }
-
-        
     }
 
-    public synchronized void removeCardSafe(int slot){
-        if(slotToCard[slot]!=null)
+    public void removeCardSafe(int slot){
+        if(!isSlotEmpty(slot))
                removeCard(slot);
     }
 
-    public synchronized void clearTable(){
-        List<Integer> slotIndexs= IntStream.range(0,slotToCard.length).boxed()
-                .collect(Collectors.toList());
-        Collections.shuffle(slotIndexs);
-        slotIndexs.forEach(this::removeCardSafe);
+    /**
+     * Removes all the cards from the table in a random order (dealer only).
+     */
+    public void clearTable(){
+        // shuffles the slots in place (Fisher-Yates), so clearing the table allocates nothing
+        for(int i=clearOrder.length-1;i>0;i--){
+            int j=random.nextInt(i+1);
+            int slot=clearOrder[i];
+            clearOrder[i]=clearOrder[j];
+            clearOrder[j]=slot;
+        }
+        for(int slot:clearOrder)
+            removeCardSafe(slot);
     }
 
 
@@ -202,7 +376,9 @@ public class Table {
 
        slotToToken[slot][player]=true;
        playerTokenCounter[player]++;
+       long ui=tokenUiStarted();
        env.ui.placeToken(player,slot);
+       tokenUiDone(ui);
        return true;
 
     }
@@ -219,7 +395,9 @@ public class Table {
        }
        slotToToken[slot][player]=false;
        playerTokenCounter[player]--;
+       long ui=tokenUiStarted();
        env.ui.removeToken(player,slot);
+       tokenUiDone(ui);
        return true ;
 
     }
@@ -229,32 +407,98 @@ public class Table {
         }
     }
 
-    public synchronized List<Integer> cardsOfPlayerTokens(int player){
-
-        List<Integer> cards=new ArrayList<>(maxTokens);
-        IntStream.range(0,slotToToken.length).filter(i->slotToToken[i][player])
-                .forEach(i->{
-                    Integer card=slotToCard[i];
-                    if(card!=null)
-                          cards.add(card);
-                });
-
-        return cards;
-
+    /**
+     * Copies the cards on which a player has tokens into an array (without allocating).
+     * @param player - the player whose tokens to look for.
+     * @param cards  - the array to fill (at most cards.length cards are copied).
+     * @return       - the number of cards copied.
+     */
+    public int cardsOfPlayerTokens(int player, int[] cards){
+        synchronized(LockProfiler.requesting(tokensSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(tokensSite)){
+                int count=0;
+                for(int slot=0;slot<slotToToken.length && count<cards.length;slot++){
+                    Integer card=slotToCard[slot];
+                    if(slotToToken[slot][player] && card!=null)
+                        cards[count++]=card;
+                }
+                return count;
+            }
+        }
     }
 
 
     // this method is public method hte update the token state for a given player in a specific slot
     // we use synchronized to ensure that the method is thread safe which mean multiple threads can try
     // execute it simultaniously for the same obkect , they will be
-    public synchronized boolean updatePlayerToken(int player,int slot){
-        if (isSlotEmpty(slot)) {  // make shore i don't update in empty slot
-            return false;
+    public boolean updatePlayerToken(int player,int slot){
+        if(!GameEvents.TOKEN_TOGGLES.isEnabled())
+            return updatePlayerToken(player,slot,null);
+        // begun before the lock is taken, so a toggle blocked on the table shows in the recording
+        GameEvents.TokenToggle event=new GameEvents.TokenToggle();
+        event.begin();
+        event.player=player;
+        event.slot=slot;
+        event.card=-1;
+        boolean toggled=updatePlayerToken(player,slot,event);
+        event.commit();
+        return toggled;
+    }
+
+    private boolean updatePlayerToken(int player,int slot,GameEvents.TokenToggle event){
+        synchronized(LockProfiler.requesting(toggleSite,this)){
+            try(LockProfiler.Hold held=LockProfiler.entered(toggleSite)){
+                if(env.tracer!=null)
+                    env.tracer.reached(InputTracer.Stage.LOCKED);
+                if (isSlotEmpty(slot)) {  // make shore i don't update in empty slot
+                    return false;
+                }
+                boolean toggled=toggleTokenState(player,slot);
+                if(event!=null){
+                    event.card=slotToCard[slot];
+                    event.placed=toggled && slotToToken[slot][player];
+                }
+                return toggled;
+            }
         }
-        return toggleTokenState(player,slot);
+    }
+
 
+    /**
+     * Copies the cards and the tokens on the table (for a checkpoint).
+     * @param board  - filled with the card in every slot (-1 if none).
+     * @return       - the slots of every player's tokens.
+     */
+    synchronized int[][] snapshot(int[] board){
+        for(int slot=0;slot<slotToCard.length;slot++)
+            board[slot]=slotToCard[slot]==null? -1 : slotToCard[slot];
+        int[][] tokens=new int[playerTokenCounter.length][];
+        for(int player=0;player<tokens.length;player++){
+            tokens[player]=new int[playerTokenCounter[player]];
+            for(int slot=0,count=0;slot<slotToToken.length && count<tokens[player].length;slot++)
+                if(slotToToken[slot][player])
+                    tokens[player][count++]=slot;
+        }
+        return tokens;
     }
 
+    /**
+     * Puts the cards and the tokens of a checkpoint on the empty table, without delays (before the game starts).
+     * @param board  - the card in every slot (-1 if none).
+     * @param tokens - the slots of every player's tokens.
+     */
+    synchronized void restore(int[] board, int[][] tokens){
+        for(int slot=0;slot<board.length;slot++){
+            if(board[slot]<0)
+                continue;
+            slotToCard[slot]=board[slot];
+            cardToSlot[board[slot]]=slot;
+            env.ui.placeCard(board[slot],slot);
+        }
+        for(int player=0;player<tokens.length;player++)
+            for(int slot:tokens[player])
+                placeToken(player,slot);
+    }
 
     private synchronized boolean isSlotEmpty(int slot){
         return slotToCard[slot]==null;
@@ -0,0 +1,35 @@
+package bguspl.set.monitor;
+
+/**
+ * The counters of a game, published over JMX (see GameMetrics).
+ */
+public interface GameMXBean {
+
+    int getPlayers();
+
+    /**
+     * @return - the number of sets the players asked the dealer to check.
+     */
+    int getClaims();
+
+    int getPoints();
+
+    int getPenalties();
+
+    /**
+     * @return - the number of times the dealer returned the cards on the table to the deck.
+     */
+    int getReshuffles();
+
+    /**
+     * @return - the number of key presses dropped (a full queue, a frozen player or a reshuffle).
+     */
+    long getDroppedKeyPresses();
+
+    boolean isOver();
+
+    /**
+     * Clears the game's latency histograms.
+     */
+    void resetLatencies();
+}
@@ -0,0 +1,207 @@
+package bguspl.set.monitor;
+
+import bguspl.set.LatencyHistogram;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameLatencies;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the metrics of a game as JMX MBeans, read by jconsole, VisualVM or any JMX client:
+ * <pre>
+ *   bguspl.set:type=Game,game=NAME                      the counters (GameMXBean)
+ *   bguspl.set:type=Latency,game=NAME,name=claimWait    a player waiting for the verdict on its claim
+ *   bguspl.set:type=Latency,game=NAME,name=keyToToken   a key press until its token is on the table
+ *   bguspl.set:type=Latency,game=NAME,name=verification the dealer checking a set
+ *   bguspl.set:type=Latency,game=NAME,name=refill       the dealer refilling the slots of a set
+ *   bguspl.set:type=Latency,game=NAME,name=reshuffle    the dealer returning the cards and dealing new ones
+ * </pre>
+ * The MBeans only read the game's counters and histograms when a client asks for them, so the game threads pay for
+ * nothing but the recording itself.
+ */
+public class GameMetrics implements GameMXBean {
+
+    public static final String DOMAIN = "bguspl.set";
+
+    private static final AtomicInteger games = new AtomicInteger();
+
+    private final Logger logger;
+    private final String game;
+    private final Dealer dealer;
+    private final int players;
+    private final MBeanServer server;
+    private final List<ObjectName> names = new ArrayList<>();
+
+    /**
+     * @param logger  - the game's logger.
+     * @param dealer  - the dealer of the game.
+     * @param players - the number of players in the game.
+     */
+    public GameMetrics(Logger logger, Dealer dealer, int players) {
+        this(logger, "game-" + games.incrementAndGet(), dealer, players, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * @param game   - the name of the game (unique among the games of the process).
+     * @param server - the MBean server to publish to.
+     */
+    public GameMetrics(Logger logger, String game, Dealer dealer, int players, MBeanServer server) {
+        this.logger = logger;
+        this.game = game;
+        this.dealer = dealer;
+        this.players = players;
+        this.server = server;
+    }
+
+    /**
+     * Publishes the game's MBeans.
+     *
+     * @return - this.
+     */
+    public synchronized GameMetrics register() {
+        GameLatencies latencies = dealer.latencies();
+        Map<String, Supplier<LatencyHistogram>> histograms = new LinkedHashMap<>();
+        histograms.put("claimWait", latencies::claimToVerdict);
+        histograms.put("keyToToken", latencies::keyToToken);
+        histograms.put("verification", () -> latencies.verification);
+        histograms.put("refill", () -> latencies.refill);
+        histograms.put("reshuffle", () -> latencies.reshuffle);
+        try {
+            register(this, gameName());
+            for (Map.Entry<String, Supplier<LatencyHistogram>> histogram : histograms.entrySet())
+                register(new Latency(histogram.getValue()), latencyName(histogram.getKey()));
+        } catch (JMException e) {
+            logger.severe("error publishing the metrics of " + game + " over JMX: " + e.getMessage());
+        }
+        return this;
+    }
+
+    private void register(Object bean, ObjectName name) throws JMException {
+        server.registerMBean(bean, name);
+        names.add(name);
+    }
+
+    /**
+     * Removes the game's MBeans (the game is over and its metrics are no longer needed).
+     */
+    public synchronized void unregister() {
+        for (ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                logger.warning("error removing " + name + ": " + e.getMessage());
+            }
+        }
+        names.clear();
+    }
+
+    public ObjectName gameName() throws JMException {
+        return new ObjectName(DOMAIN + ":type=Game,game=" + ObjectName.quote(game));
+    }
+
+    public ObjectName latencyName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Latency,game=" + ObjectName.quote(game) + ",name=" + name);
+    }
+
+    @Override
+    public int getPlayers() {
+        return players;
+    }
+
+    @Override
+    public int getClaims() {
+        return dealer.claims();
+    }
+
+    @Override
+    public int getPoints() {
+        return dealer.points();
+    }
+
+    @Override
+    public int getPenalties() {
+        return dealer.penalties();
+    }
+
+    @Override
+    public int getReshuffles() {
+        return dealer.reshuffles();
+    }
+
+    @Override
+    public long getDroppedKeyPresses() {
+        return dealer.droppedKeyPresses();
+    }
+
+    @Override
+    public boolean isOver() {
+        return dealer.isOver();
+    }
+
+    @Override
+    public void resetLatencies() {
+        dealer.latencies().reset();
+    }
+
+    /**
+     * A histogram as an MXBean (read anew on every call, since the players' histograms are merged when read).
+     */
+    private static class Latency implements LatencyMXBean {
+
+        private final Supplier<LatencyHistogram> histogram;
+
+        Latency(Supplier<LatencyHistogram> histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.get().count();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return histogram.get().mean() / 1000.0;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return histogram.get().percentile(50) / 1000.0;
+        }
+
+        @Override
+        public double getP90Micros() {
+            return histogram.get().percentile(90) / 1000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return histogram.get().percentile(99) / 1000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return histogram.get().percentile(99.9) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return histogram.get().max() / 1000.0;
+        }
+
+        @Override
+        public String getSummary() {
+            return histogram.get().summary();
+        }
+    }
+}
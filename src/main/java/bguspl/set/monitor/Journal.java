@@ -0,0 +1,294 @@
+package bguspl.set.monitor;
+
+import bguspl.set.Clock;
+import bguspl.set.Config;
+import bguspl.set.UserInterface;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+import static bguspl.set.monitor.LiveState.LONGS;
+
+/**
+ * A user interface decorator that appends every game event to a binary journal of memory-mapped segment files, as
+ * fixed size little endian records. Appending is a few stores into the mapped segment under a lock, and a full
+ * segment is rolled over to the next file. The dealer adds the events the display does not see (claims, verdicts
+ * and reshuffles, see Dealer::journalTo). JournalReplay rebuilds a game from its journal. The journal is only a
+ * diagnostics sink, so it never fails the game: if a segment cannot be rolled over (a full disk, too many mappings),
+ * the failure is logged once, the journal ends with the last full segment and the later records are dropped (and
+ * counted, see dropped()).
+ * <pre>
+ * segment header (64 bytes), in every segment file (journal-000000.bin, journal-000001.bin, ...):
+ *    0 int  magic ('SETJ')        4 int  version        8 int  record size      12 int  segment index
+ *   16 long records in the segment (released after every record, so a reader may follow the journal)
+ *   24 long start epoch millis   32 int  rows         36 int  columns         40 int  players
+ *   44 int  deck size            48 int  feature count 52 int  feature size
+ * record (16 bytes):
+ *    0 long nanos since the start of the game (on the game's clock)
+ *    8 byte type                  9 byte unused        10 short a           12 int  b
+ * </pre>
+ * The record types, with their a and b fields:
+ * <pre>
+ *   CARD_PLACED    slot card        CARD_REMOVED   slot             TOKEN_PLACED   player slot
+ *   TOKEN_REMOVED  player slot      SLOT_CLEARED   slot             TOKENS_CLEARED
+ *   CLAIM          player           VERDICT        player 1 (a set) or 0
+ *   SCORE          player score     FREEZE         player millis    RESHUFFLE
+ *   WINNER         player winners   (one record per winner)
+ * </pre>
+ */
+public class Journal implements UserInterface {
+
+    public static final int MAGIC = 0x5345544A;
+    public static final int VERSION = 1;
+
+    static final int RECORD_SIZE = 8;
+    static final int SEGMENT = 12;
+    static final int RECORDS = 16;
+    static final int START_MILLIS = 24;
+    static final int ROWS = 32;
+    static final int COLUMNS = 36;
+    static final int PLAYERS = 40;
+    static final int DECK_SIZE = 44;
+    static final int FEATURE_COUNT = 48;
+    static final int FEATURE_SIZE = 52;
+    static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 16;
+
+    public static final byte CARD_PLACED = 1;
+    public static final byte CARD_REMOVED = 2;
+    public static final byte TOKEN_PLACED = 3;
+    public static final byte TOKEN_REMOVED = 4;
+    public static final byte SLOT_CLEARED = 5;
+    public static final byte TOKENS_CLEARED = 6;
+    public static final byte CLAIM = 7;
+    public static final byte VERDICT = 8;
+    public static final byte SCORE = 9;
+    public static final byte FREEZE = 10;
+    public static final byte RESHUFFLE = 11;
+    public static final byte WINNER = 12;
+
+    private final Logger logger;
+    private final UserInterface ui;
+    private final Config config;
+    private final Path directory;
+    private final Clock clock;
+    private final long startNanos;
+    private final long startMillis;
+    private final int recordsPerSegment;
+
+    /**
+     * The current segment and the records written to it (guarded by this).
+     */
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private int records;
+    private long total;
+
+    /**
+     * True once a segment could not be rolled over, and the number of records dropped since (guarded by this).
+     */
+    private boolean stopped;
+    private long dropped;
+
+    /**
+     * @param logger    - the game's logger.
+     * @param config    - the game configuration.
+     * @param directory - the directory of the segment files (created if needed, old segments are overwritten).
+     * @param clock     - the game's clock, for the time of every record.
+     * @param ui        - the user interface to pass the calls on to (null if none).
+     * @throws IOException - if the first segment cannot be created or mapped.
+     */
+    public Journal(Logger logger, Config config, Path directory, Clock clock, UserInterface ui) throws IOException {
+        this.logger = logger;
+        this.ui = ui;
+        this.config = config;
+        this.directory = directory;
+        this.clock = clock;
+        startNanos = clock.nanos();
+        startMillis = System.currentTimeMillis();
+        recordsPerSegment = (int) Math.max(1, (config.journalSegmentBytes - HEADER_BYTES) / RECORD_BYTES);
+        Files.createDirectories(directory);
+        // the segments of an older journal in the directory would be replayed after this one
+        for (int index = 0; Files.deleteIfExists(segmentFile(directory, index)); ++index) ;
+        roll();
+    }
+
+    /**
+     * @return - the file of a segment of the journal in a directory.
+     */
+    public static Path segmentFile(Path directory, int index) {
+        return directory.resolve(String.format("journal-%06d.bin", index));
+    }
+
+    private void roll() throws IOException {
+        Path file = segmentFile(directory, segmentIndex + 1);
+        long size = HEADER_BYTES + (long) recordsPerSegment * RECORD_BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        ++segmentIndex;
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.putInt(4, VERSION).putInt(RECORD_SIZE, RECORD_BYTES).putInt(SEGMENT, segmentIndex)
+                .putLong(START_MILLIS, startMillis).putInt(ROWS, config.rows).putInt(COLUMNS, config.columns)
+                .putInt(PLAYERS, config.players).putInt(DECK_SIZE, config.deckSize)
+                .putInt(FEATURE_COUNT, config.featureCount).putInt(FEATURE_SIZE, config.featureSize);
+        VarHandle.storeStoreFence();
+        segment.putInt(0, MAGIC);
+        records = 0;
+    }
+
+    /**
+     * Appends a record (rolls over to a new segment when the current one is full). Called by the dealer and by the
+     * players inside the table's monitor, so it never throws: a failed roll over stops the journal instead.
+     */
+    private synchronized void append(byte type, int a, int b) {
+        if (stopped) {
+            ++dropped;
+            return;
+        }
+        if (records == recordsPerSegment) {
+            try {
+                roll();
+            } catch (IOException e) {
+                logger.severe("cannot roll the journal over to segment " + (segmentIndex + 1) + " (" + e
+                        + "): journaling stopped after " + total + " records, the game goes on without it");
+                stopped = true;
+                ++dropped;
+                return;
+            }
+        }
+        int offset = HEADER_BYTES + records * RECORD_BYTES;
+        segment.putLong(offset, clock.nanos() - startNanos).put(offset + 8, type)
+                .putShort(offset + 10, (short) a).putInt(offset + 12, b);
+        LONGS.setRelease(segment, RECORDS, (long) ++records);
+        ++total;
+    }
+
+    /**
+     * Records a set claimed by a player (called by the dealer).
+     */
+    public void claim(int player) {
+        append(CLAIM, player, 0);
+    }
+
+    /**
+     * Records the dealer's verdict on a player's claim (called by the dealer).
+     */
+    public void verdict(int player, boolean valid) {
+        append(VERDICT, player, valid ? 1 : 0);
+    }
+
+    /**
+     * Records the dealer returning all the cards on the table to the deck (called by the dealer).
+     */
+    public void reshuffle() {
+        append(RESHUFFLE, 0, 0);
+    }
+
+    /**
+     * @return - the number of records appended.
+     */
+    public synchronized long records() {
+        return total;
+    }
+
+    /**
+     * @return - the number of records dropped because the journal stopped (see append).
+     */
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    /**
+     * @return - the number of segment files written.
+     */
+    public synchronized int segments() {
+        return segmentIndex + 1;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (ui != null) ui.placeCard(card, slot);
+        append(CARD_PLACED, slot, card);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (ui != null) ui.removeCard(slot);
+        append(CARD_REMOVED, slot, 0);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (ui != null) ui.placeToken(player, slot);
+        append(TOKEN_PLACED, player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        if (ui != null) ui.removeTokens();
+        append(TOKENS_CLEARED, 0, 0);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (ui != null) ui.removeTokens(slot);
+        append(SLOT_CLEARED, slot, 0);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (ui != null) ui.removeToken(player, slot);
+        append(TOKEN_REMOVED, player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        // the countdown follows from the time of the deals and reshuffles, so it is not journaled
+        if (ui != null) ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ui != null) ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (ui != null) ui.setFreeze(player, millies);
+        append(FREEZE, player, (int) Math.min(millies, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void setFreezeDeadline(int player, long untilMillis) {
+        if (ui != null) ui.setFreezeDeadline(player, untilMillis);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (ui != null) ui.setScore(player, score);
+        append(SCORE, player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (ui != null) ui.announceWinner(players);
+        for (int player : players) append(WINNER, player, players.length);
+    }
+
+    @Override
+    public void dispose() {
+        if (ui != null) ui.dispose();
+        synchronized (this) {
+            segment.force();
+        }
+    }
+}
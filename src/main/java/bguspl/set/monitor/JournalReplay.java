@@ -0,0 +1,214 @@
+package bguspl.set.monitor;
+
+import bguspl.set.UserInterface;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static bguspl.set.monitor.Journal.*;
+
+/**
+ * Rebuilds a game from its journal (see Journal for the format), as fast as the records can be read: the segments
+ * are mapped one after the other and every record is applied to the replayed table, scores and counters, and
+ * optionally passed on to a user interface (e.g. a LiveState or a SpectatorStream, to watch the game again).
+ * Usage: JournalReplay directory (prints the final state of the game and the replay rate)
+ */
+public class JournalReplay {
+
+    private final Path directory;
+
+    private int rows;
+    private int columns;
+    private int players;
+    private int[] cards = new int[0];
+    private boolean[][] tokens = new boolean[0][0];
+    private int[] scores = new int[0];
+    private final List<Integer> winners = new ArrayList<>();
+    private long records;
+    private long claims;
+    private long sets;
+    private long reshuffles;
+    private long lastNanos;
+    private int segments;
+    private long elapsedNanos;
+
+    /**
+     * @param directory - the directory of the journal's segment files.
+     */
+    public JournalReplay(Path directory) {
+        this.directory = directory;
+    }
+
+    public static void main(String[] args) throws IOException {
+        JournalReplay replay = new JournalReplay(Paths.get(args[0]));
+        replay.replay(null);
+        System.out.println(replay);
+    }
+
+    /**
+     * Replays the whole journal.
+     *
+     * @param ui - the user interface to pass the events on to (null if none).
+     * @throws IOException - if a segment cannot be read or is not a journal segment.
+     */
+    public void replay(UserInterface ui) throws IOException {
+        long start = System.nanoTime();
+        for (int index = 0; Files.exists(segmentFile(directory, index)); ++index) {
+            Path file = segmentFile(directory, index);
+            MappedByteBuffer segment;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            if (segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION
+                    || segment.getInt(RECORD_SIZE) != RECORD_BYTES || segment.getInt(SEGMENT) != index)
+                throw new IOException(file + " is not segment " + index + " of a version " + VERSION + " journal");
+            if (index == 0)
+                start(segment.getInt(ROWS), segment.getInt(COLUMNS), segment.getInt(PLAYERS));
+            long count = (long) LiveState.LONGS.getAcquire(segment, RECORDS);
+            for (int offset = HEADER_BYTES; count > 0; --count, offset += RECORD_BYTES)
+                apply(segment.getLong(offset), segment.get(offset + 8), segment.getShort(offset + 10),
+                        segment.getInt(offset + 12), ui);
+            segments++;
+        }
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    private void start(int rows, int columns, int players) {
+        this.rows = rows;
+        this.columns = columns;
+        this.players = players;
+        cards = new int[rows * columns];
+        Arrays.fill(cards, -1);
+        tokens = new boolean[cards.length][players];
+        scores = new int[players];
+    }
+
+    private void apply(long nanos, byte type, int a, int b, UserInterface ui) {
+        records++;
+        lastNanos = nanos;
+        switch (type) {
+            case CARD_PLACED:
+                cards[a] = b;
+                if (ui != null) ui.placeCard(b, a);
+                break;
+            case CARD_REMOVED:
+                cards[a] = -1;
+                if (ui != null) ui.removeCard(a);
+                break;
+            case TOKEN_PLACED:
+                tokens[b][a] = true;
+                if (ui != null) ui.placeToken(a, b);
+                break;
+            case TOKEN_REMOVED:
+                tokens[b][a] = false;
+                if (ui != null) ui.removeToken(a, b);
+                break;
+            case SLOT_CLEARED:
+                Arrays.fill(tokens[a], false);
+                if (ui != null) ui.removeTokens(a);
+                break;
+            case TOKENS_CLEARED:
+                for (boolean[] slot : tokens) Arrays.fill(slot, false);
+                if (ui != null) ui.removeTokens();
+                break;
+            case CLAIM:
+                claims++;
+                break;
+            case VERDICT:
+                if (b == 1) sets++;
+                break;
+            case SCORE:
+                scores[a] = b;
+                if (ui != null) ui.setScore(a, b);
+                break;
+            case FREEZE:
+                if (ui != null) ui.setFreeze(a, b);
+                break;
+            case RESHUFFLE:
+                reshuffles++;
+                break;
+            case WINNER:
+                winners.add(a);
+                if (ui != null && winners.size() == b) ui.announceWinner(winners());
+                break;
+            default:
+                throw new IllegalStateException("unknown journal record type " + type + " at record " + records);
+        }
+    }
+
+    /**
+     * @return - the card in the slot at the end of the replay, or -1 if there was none.
+     */
+    public int card(int slot) {
+        return cards[slot];
+    }
+
+    public boolean hasToken(int player, int slot) {
+        return tokens[slot][player];
+    }
+
+    public int score(int player) {
+        return scores[player];
+    }
+
+    public int[] winners() {
+        return winners.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public long records() {
+        return records;
+    }
+
+    public long claims() {
+        return claims;
+    }
+
+    /**
+     * @return - the number of claims that were sets.
+     */
+    public long sets() {
+        return sets;
+    }
+
+    public long reshuffles() {
+        return reshuffles;
+    }
+
+    public int segments() {
+        return segments;
+    }
+
+    /**
+     * @return - the game time of the last record replayed, in nanoseconds since the start of the game.
+     */
+    public long lastNanos() {
+        return lastNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format(
+                "%d records in %d segments (%.1f s of game) replayed in %.1f ms (%.0f records/s)%n",
+                records, segments, lastNanos / 1e9, elapsedNanos / 1e6, records / (elapsedNanos / 1e9)));
+        sb.append(String.format("%d claims, %d sets, %d reshuffles, %d players, scores %s, winners %s",
+                claims, sets, reshuffles, players, Arrays.toString(scores), winners));
+        for (int row = 0; row < rows; ++row) {
+            sb.append(System.lineSeparator());
+            for (int column = 0; column < columns; ++column) {
+                int card = cards[row * columns + column];
+                sb.append(card < 0 ? "   ." : String.format("%4d", card));
+            }
+        }
+        return sb.toString();
+    }
+}
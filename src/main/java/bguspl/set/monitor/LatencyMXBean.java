@@ -0,0 +1,26 @@
+package bguspl.set.monitor;
+
+/**
+ * A latency histogram of a game, published over JMX (see GameMetrics). Times are in microseconds.
+ */
+public interface LatencyMXBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /**
+     * @return - a one line summary of the histogram.
+     */
+    String getSummary();
+}
@@ -0,0 +1,269 @@
+package bguspl.set.monitor;
+
+import bguspl.set.Clock;
+import bguspl.set.Config;
+import bguspl.set.UserInterface;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A user interface decorator that mirrors the live game (the cards and tokens on the table, the scores, the freeze
+ * deadlines and the reshuffle deadline) into a memory-mapped file with a fixed little endian layout, so monitors in
+ * other processes can read it without system calls (see LiveStateReader). Every update is a seqlock write: the
+ * sequence is odd while the update is in progress, and a reader retries until it read the same even sequence before
+ * and after copying the state. Deadlines are milliseconds on the game's clock (-1 if none): epoch milliseconds in
+ * real time, and the virtual clock's milliseconds in virtual time. A freeze deadline is the exact end of the freeze
+ * (see setFreezeDeadline), not the whole seconds the display counts down.
+ * <pre>
+ * header (64 bytes):
+ *    0 int  magic ('SETL')         4 int  version
+ *    8 long sequence              16 int  rows        20 int columns
+ *   24 int  players               28 int  mask words per slot (64 players per word)
+ *   32 long reshuffle deadline    40 int  state (1 live, 2 over)
+ *   44 int  countdown warning     48 long updates     56 long writer pid
+ * then: int card per slot (-1 for none), padded to 8 bytes; long token masks per slot (bit p for player p);
+ *       int score per player, padded to 8 bytes; long freeze deadline per player
+ * </pre>
+ */
+public class LiveState implements UserInterface {
+
+    public static final int MAGIC = 0x5345544C;
+    public static final int VERSION = 1;
+
+    static final int SEQUENCE = 8;
+    static final int ROWS = 16;
+    static final int COLUMNS = 20;
+    static final int PLAYERS = 24;
+    static final int MASK_WORDS = 28;
+    static final int RESHUFFLE_DEADLINE = 32;
+    static final int STATE = 40;
+    static final int WARNING = 44;
+    static final int UPDATES = 48;
+    static final int WRITER_PID = 56;
+    static final int HEADER_BYTES = 64;
+
+    static final int LIVE = 1;
+    static final int OVER = 2;
+
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The layout of the sections after the header.
+     */
+    static final class Layout {
+        final int slots;
+        final int players;
+        final int maskWords;
+        final int cards;
+        final int masks;
+        final int scores;
+        final int freezes;
+        final int size;
+
+        Layout(int slots, int players) {
+            this.slots = slots;
+            this.players = players;
+            maskWords = (players + 63) / 64;
+            cards = HEADER_BYTES;
+            masks = align(cards + 4 * slots);
+            scores = masks + 8 * slots * maskWords;
+            freezes = align(scores + 4 * players);
+            size = freezes + 8 * players;
+        }
+
+        int mask(int slot, int player) {
+            return masks + 8 * (slot * maskWords + player / 64);
+        }
+
+        private static int align(int offset) {
+            return (offset + 7) & ~7;
+        }
+    }
+
+    private final UserInterface ui;
+    private final Clock clock;
+    private final Layout layout;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The sequence and the update count (guarded by this).
+     */
+    private long sequence;
+    private long updates;
+
+    /**
+     * @param config - the game configuration.
+     * @param file   - the file to map (created or truncated).
+     * @param clock  - the game's clock (the deadlines are on it).
+     * @param ui     - the user interface to pass the calls on to (null if none).
+     * @throws IOException - if the file cannot be created or mapped.
+     */
+    public LiveState(Config config, Path file, Clock clock, UserInterface ui) throws IOException {
+        this.ui = ui;
+        this.clock = clock;
+        layout = new Layout(config.tableSize, config.players);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.size);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(ROWS, config.rows).putInt(COLUMNS, config.columns).putInt(PLAYERS, config.players)
+                .putInt(MASK_WORDS, layout.maskWords).putLong(RESHUFFLE_DEADLINE, -1).putInt(STATE, LIVE)
+                .putLong(WRITER_PID, ProcessHandle.current().pid());
+        for (int slot = 0; slot < layout.slots; ++slot) buffer.putInt(layout.cards + 4 * slot, -1);
+        for (int player = 0; player < layout.players; ++player) buffer.putLong(layout.freezes + 8 * player, -1);
+        buffer.putInt(4, VERSION);
+        // the magic goes in last, so a reader never sees a half initialized file as valid
+        VarHandle.storeStoreFence();
+        buffer.putInt(0, MAGIC);
+    }
+
+    /**
+     * Starts a seqlock write (the caller holds the monitor): the sequence becomes odd.
+     */
+    private void begin() {
+        LONGS.setOpaque(buffer, SEQUENCE, ++sequence);
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Ends a seqlock write: the sequence becomes even again, after all the state written is visible.
+     */
+    private void end() {
+        buffer.putLong(UPDATES, ++updates);
+        LONGS.setRelease(buffer, SEQUENCE, ++sequence);
+    }
+
+    private long deadline(long millis) {
+        return millis > 0 ? clock.millis() + millis : -1;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (ui != null) ui.placeCard(card, slot);
+        synchronized (this) {
+            begin();
+            buffer.putInt(layout.cards + 4 * slot, card);
+            end();
+        }
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (ui != null) ui.removeCard(slot);
+        synchronized (this) {
+            begin();
+            buffer.putInt(layout.cards + 4 * slot, -1);
+            end();
+        }
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (ui != null) ui.placeToken(player, slot);
+        int mask = layout.mask(slot, player);
+        synchronized (this) {
+            begin();
+            buffer.putLong(mask, buffer.getLong(mask) | 1L << (player & 63));
+            end();
+        }
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (ui != null) ui.removeToken(player, slot);
+        int mask = layout.mask(slot, player);
+        synchronized (this) {
+            begin();
+            buffer.putLong(mask, buffer.getLong(mask) & ~(1L << (player & 63)));
+            end();
+        }
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (ui != null) ui.removeTokens(slot);
+        synchronized (this) {
+            begin();
+            for (int word = 0; word < layout.maskWords; ++word) buffer.putLong(layout.mask(slot, 64 * word), 0);
+            end();
+        }
+    }
+
+    @Override
+    public void removeTokens() {
+        if (ui != null) ui.removeTokens();
+        synchronized (this) {
+            begin();
+            for (int slot = 0; slot < layout.slots; ++slot)
+                for (int word = 0; word < layout.maskWords; ++word) buffer.putLong(layout.mask(slot, 64 * word), 0);
+            end();
+        }
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (ui != null) ui.setCountdown(millies, warn);
+        long deadline = deadline(millies);
+        synchronized (this) {
+            begin();
+            buffer.putLong(RESHUFFLE_DEADLINE, deadline);
+            buffer.putInt(WARNING, warn ? 1 : 0);
+            end();
+        }
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ui != null) ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (ui != null) ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setFreezeDeadline(int player, long untilMillis) {
+        if (ui != null) ui.setFreezeDeadline(player, untilMillis);
+        synchronized (this) {
+            begin();
+            buffer.putLong(layout.freezes + 8 * player, untilMillis);
+            end();
+        }
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (ui != null) ui.setScore(player, score);
+        synchronized (this) {
+            begin();
+            buffer.putInt(layout.scores + 4 * player, score);
+            end();
+        }
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (ui != null) ui.announceWinner(players);
+        synchronized (this) {
+            begin();
+            buffer.putInt(STATE, OVER);
+            end();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (ui != null) ui.dispose();
+        buffer.force();
+    }
+}
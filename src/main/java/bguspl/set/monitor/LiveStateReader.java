@@ -0,0 +1,170 @@
+package bguspl.set.monitor;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static bguspl.set.monitor.LiveState.*;
+
+/**
+ * Reads consistent snapshots of a live game from the file a LiveState maps (see LiveState for the layout).
+ * Reading maps the file once and then only copies from memory, retrying while the game is writing.
+ * Usage: LiveStateReader file [interval millis] (prints the game until it is over)
+ */
+public class LiveStateReader {
+
+    /**
+     * A consistent copy of the live game.
+     */
+    public static class Snapshot {
+        public final long sequence;
+        public final long updates;
+        public final int rows;
+        public final int columns;
+        public final boolean over;
+        public final boolean warning;
+        public final long reshuffleDeadline;
+        private final int[] cards;
+        private final long[][] masks;
+        private final int[] scores;
+        private final long[] freezeDeadlines;
+
+        private Snapshot(long sequence, long updates, int rows, int columns, boolean over, boolean warning,
+                         long reshuffleDeadline, int[] cards, long[][] masks, int[] scores, long[] freezeDeadlines) {
+            this.sequence = sequence;
+            this.updates = updates;
+            this.rows = rows;
+            this.columns = columns;
+            this.over = over;
+            this.warning = warning;
+            this.reshuffleDeadline = reshuffleDeadline;
+            this.cards = cards;
+            this.masks = masks;
+            this.scores = scores;
+            this.freezeDeadlines = freezeDeadlines;
+        }
+
+        /**
+         * @return - the card in the slot, or -1 if there is none.
+         */
+        public int card(int slot) {
+            return cards[slot];
+        }
+
+        public boolean hasToken(int player, int slot) {
+            return (masks[slot][player / 64] & 1L << (player & 63)) != 0;
+        }
+
+        /**
+         * @return - the token mask word of a slot (bit p of word w is player 64 * w + p).
+         */
+        public long mask(int slot, int word) {
+            return masks[slot][word];
+        }
+
+        public int score(int player) {
+            return scores[player];
+        }
+
+        public long freezeDeadline(int player) {
+            return freezeDeadlines[player];
+        }
+
+        public int players() {
+            return scores.length;
+        }
+
+        @Override
+        public String toString() {
+            long now = System.currentTimeMillis();
+            StringBuilder sb = new StringBuilder(String.format("update %d%s, reshuffle in %s, scores %s",
+                    updates, over ? " (game over)" : "", reshuffleDeadline < 0 ? "-" : Math.max(0, reshuffleDeadline - now) + "ms"
+                            + (warning ? " (warning)" : ""), Arrays.toString(scores)));
+            for (int row = 0; row < rows; ++row) {
+                sb.append(System.lineSeparator());
+                for (int column = 0; column < columns; ++column) {
+                    int slot = row * columns + column;
+                    int tokens = 0;
+                    for (long word : masks[slot]) tokens += Long.bitCount(word);
+                    sb.append(cards[slot] < 0 ? "    .   " : String.format("%4d%-4s", cards[slot], tokens > 0 ? "*" + tokens : ""));
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private final MappedByteBuffer buffer;
+    private final Layout layout;
+    private final int rows;
+    private final int columns;
+
+    /**
+     * @param file - the file of a live game.
+     * @throws IOException - if the file cannot be mapped, or is not a live game file.
+     */
+    public LiveStateReader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException(file + " is not a live game file");
+        VarHandle.loadLoadFence();
+        rows = buffer.getInt(ROWS);
+        columns = buffer.getInt(COLUMNS);
+        layout = new Layout(rows * columns, buffer.getInt(PLAYERS));
+        if (buffer.capacity() < layout.size) throw new IOException(file + " is truncated");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LiveStateReader reader = new LiveStateReader(Paths.get(args[0]));
+        long interval = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        Snapshot snapshot;
+        do {
+            snapshot = reader.read();
+            System.out.println(snapshot);
+            System.out.println();
+            Thread.sleep(interval);
+        } while (!snapshot.over);
+    }
+
+    /**
+     * @return - a consistent copy of the game (retries while the game is in the middle of an update).
+     */
+    public Snapshot read() {
+        int[] cards = new int[layout.slots];
+        long[][] masks = new long[layout.slots][layout.maskWords];
+        int[] scores = new int[layout.players];
+        long[] freezes = new long[layout.players];
+        while (true) {
+            long before = (long) LONGS.getAcquire(buffer, SEQUENCE);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            for (int slot = 0; slot < cards.length; ++slot) {
+                cards[slot] = buffer.getInt(layout.cards + 4 * slot);
+                for (int word = 0; word < layout.maskWords; ++word)
+                    masks[slot][word] = buffer.getLong(layout.mask(slot, 64 * word));
+            }
+            for (int player = 0; player < scores.length; ++player) {
+                scores[player] = buffer.getInt(layout.scores + 4 * player);
+                freezes[player] = buffer.getLong(layout.freezes + 8 * player);
+            }
+            long updates = buffer.getLong(UPDATES);
+            long reshuffle = buffer.getLong(RESHUFFLE_DEADLINE);
+            int state = buffer.getInt(STATE);
+            int warning = buffer.getInt(WARNING);
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getOpaque(buffer, SEQUENCE) == before)
+                return new Snapshot(before, updates, rows, columns, state == OVER, warning != 0, reshuffle,
+                        cards, masks, scores, freezes);
+        }
+    }
+}
@@ -0,0 +1,599 @@
+package bguspl.set.rating;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * The lifetime ratings of the players over all the games they played, live or simulated, kept in a directory:
+ * <ul>
+ *   <li>results.log - the append-only log of the game results, the only source of truth.</li>
+ *   <li>ratings.idx - a memory-mapped index of every player's rating, a cache of the log that is rebuilt from it.</li>
+ * </ul>
+ * Ratings are Elo ratings: a game of n players counts as the n(n-1)/2 matches between them (the higher score wins),
+ * and every player's rating moves by K/(n-1) times the sum of its results minus its expected results.
+ * <p>
+ * Recording a result only queues it: a writer thread of its own appends the queued results to the log, forces the
+ * log once for the whole batch, then applies them to the ratings. The players are kept ordered by rating, so a top
+ * K query reads K entries and never the history. On startup the index is used as is if it covers the whole log,
+ * only the results after it are replayed if it covers a prefix, and it is rebuilt from the whole log if it was left
+ * half updated or was made with other rating parameters.
+ * <pre>
+ * log record (big endian): int payload length, int crc32 of the payload,
+ *                          payload: long epoch millis, byte players, per player: byte name length, name, int score
+ * index header (64 bytes, little endian):
+ *    0 int  magic ('SETR')       4 int  version         8 long log bytes applied     16 long games applied
+ *   24 int  players             28 int  state (1 clean, 2 being updated)            32 double K
+ *   40 double initial rating
+ * index entry (64 bytes, in order of first game):
+ *    0 byte name length          1 name (UTF-8)        32 double rating     40 double wins (a tie shares the win)
+ *   48 long games               56 long total score
+ * </pre>
+ */
+public class Leaderboard {
+
+    public static final int MAGIC = 0x53455452;
+    public static final int VERSION = 1;
+
+    public static final double DEFAULT_K = 32;
+    public static final double DEFAULT_RATING = 1500;
+
+    /**
+     * The longest name in UTF-8 bytes (longer names are cut).
+     */
+    public static final int NAME_BYTES = 31;
+
+    static final String LOG = "results.log";
+    static final String INDEX = "ratings.idx";
+
+    static final int LOG_APPLIED = 8;
+    static final int GAMES_APPLIED = 16;
+    static final int PLAYERS = 24;
+    static final int STATE = 28;
+    static final int K = 32;
+    static final int INITIAL_RATING = 40;
+    static final int HEADER_BYTES = 64;
+    static final int ENTRY_BYTES = 64;
+
+    static final int CLEAN = 1;
+    static final int UPDATING = 2;
+
+    private static final int RATING = 32;
+    private static final int WINS = 40;
+    private static final int GAMES = 48;
+    private static final int TOTAL_SCORE = 56;
+
+    /**
+     * A player's place on the leaderboard.
+     */
+    public static final class Standing {
+        public final String name;
+        public final double rating;
+        public final long games;
+        public final double wins;
+        public final long totalScore;
+
+        Standing(String name, double rating, long games, double wins, long totalScore) {
+            this.name = name;
+            this.rating = rating;
+            this.games = games;
+            this.wins = wins;
+            this.totalScore = totalScore;
+        }
+
+        public double winRate() {
+            return games == 0 ? 0 : wins / games;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-16s %7.1f %8d games %6.1f%% wins", name, rating, games, 100 * winRate());
+        }
+    }
+
+    /**
+     * A player's entry in the index (guarded by the leaderboard).
+     */
+    private static final class Entry {
+        final String name;
+        final int index;
+        double rating;
+        double wins;
+        long games;
+        long totalScore;
+
+        Entry(String name, int index, double rating) {
+            this.name = name;
+            this.index = index;
+            this.rating = rating;
+        }
+
+        Standing standing() {
+            return new Standing(name, rating, games, wins, totalScore);
+        }
+    }
+
+    /**
+     * A game result waiting to be written.
+     */
+    private static final class Result {
+        final long epochMillis;
+        final String[] names;
+        final int[] scores;
+
+        Result(long epochMillis, String[] names, int[] scores) {
+            this.epochMillis = epochMillis;
+            this.names = names;
+            this.scores = scores;
+        }
+    }
+
+    private static final Comparator<Entry> BY_RATING = Comparator.<Entry>comparingDouble(e -> -e.rating)
+            .thenComparing(e -> e.name);
+
+    private final Logger logger;
+    private final double k;
+    private final double initialRating;
+    private final FileChannel log;
+    private final FileChannel indexChannel;
+    private MappedByteBuffer index;  // guarded by this
+
+    private final Map<String, Entry> entries = new HashMap<>();  // guarded by this
+    private final TreeSet<Entry> ranking = new TreeSet<>(BY_RATING);  // guarded by this
+    private long logBytes;  // the log bytes applied to the ratings (guarded by this)
+    private long games;  // guarded by this
+    private final long replayed;
+
+    private final Queue<Result> pending = new ArrayDeque<>();  // guarded by pending
+    private long submitted;  // guarded by pending
+    private long applied;  // guarded by pending
+    private boolean closed;  // guarded by pending
+    private final Thread writer;
+
+    /**
+     * Opens the leaderboard in a directory (creating it if needed), with the default rating parameters.
+     */
+    public Leaderboard(Logger logger, Path directory) throws IOException {
+        this(logger, directory, DEFAULT_K, DEFAULT_RATING);
+    }
+
+    /**
+     * @param logger        - the logger of the leaderboard's errors.
+     * @param directory     - the directory of the results log and the index.
+     * @param k             - the most a rating moves in a single game.
+     * @param initialRating - the rating of a new player.
+     * @throws IOException - if the log or the index cannot be opened.
+     */
+    public Leaderboard(Logger logger, Path directory, double k, double initialRating) throws IOException {
+        this.logger = logger;
+        this.k = k;
+        this.initialRating = initialRating;
+        Files.createDirectories(directory);
+        log = FileChannel.open(directory.resolve(LOG), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(directory.resolve(INDEX), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        replayed = load();
+        writer = new Thread(this::write, "leaderboard-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Loads the index and replays the results the index does not cover yet.
+     *
+     * @return - the number of results replayed.
+     */
+    private synchronized long load() throws IOException {
+        long indexSize = indexChannel.size();
+        int capacity = indexSize > HEADER_BYTES ? (int) ((indexSize - HEADER_BYTES) / ENTRY_BYTES) : 16;
+        map(capacity);
+        boolean usable = indexSize >= HEADER_BYTES && index.getInt(0) == MAGIC && index.getInt(4) == VERSION
+                && index.getInt(STATE) == CLEAN && index.getDouble(K) == k
+                && index.getDouble(INITIAL_RATING) == initialRating && index.getLong(LOG_APPLIED) <= log.size();
+        if (usable) {
+            int players = index.getInt(PLAYERS);
+            for (int i = 0; i < players; ++i) {
+                int at = HEADER_BYTES + i * ENTRY_BYTES;
+                byte[] name = new byte[index.get(at)];
+                index.get(at + 1, name);
+                Entry entry = new Entry(new String(name, StandardCharsets.UTF_8), i, index.getDouble(at + RATING));
+                entry.wins = index.getDouble(at + WINS);
+                entry.games = index.getLong(at + GAMES);
+                entry.totalScore = index.getLong(at + TOTAL_SCORE);
+                entries.put(entry.name, entry);
+                ranking.add(entry);
+            }
+            logBytes = index.getLong(LOG_APPLIED);
+            games = index.getLong(GAMES_APPLIED);
+        } else {
+            if (indexSize > 0)
+                logger.warning("rebuilding the leaderboard index from the results log");
+            index.put(0, new byte[HEADER_BYTES]);
+            index.putInt(0, MAGIC);
+            index.putInt(4, VERSION);
+            index.putDouble(K, k);
+            index.putDouble(INITIAL_RATING, initialRating);
+        }
+        index.putInt(STATE, UPDATING);
+        long replayed = replay();
+        commit();
+        return replayed;
+    }
+
+    /**
+     * Applies the results of the log after the bytes already applied, and cuts a torn result off its end.
+     */
+    private long replay() throws IOException {
+        long size = log.size();
+        log.position(logBytes);
+        if (logBytes == size)
+            return 0;
+        long replayed = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log), 1 << 16));
+        CRC32 crc = new CRC32();
+        while (logBytes < size) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || logBytes + 8 + length > size)
+                    break;
+                payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum)
+                    break;
+            } catch (EOFException e) {
+                break;
+            }
+            apply(decode(payload));
+            logBytes += 8 + payload.length;
+            ++replayed;
+        }
+        if (logBytes < size) {
+            logger.warning("cutting a torn result off the end of the results log (" + (size - logBytes) + " bytes)");
+            log.truncate(logBytes);
+        }
+        log.position(logBytes);
+        return replayed;
+    }
+
+    /**
+     * Queues the result of a game, to be written and rated by the leaderboard's writer thread (never blocks on I/O).
+     *
+     * @param names  - the name of every player (names longer than NAME_BYTES are cut).
+     * @param scores - the final score of every player.
+     */
+    public void record(String[] names, int[] scores) {
+        if (names.length != scores.length)
+            throw new IllegalArgumentException(names.length + " names for " + scores.length + " scores");
+        if (names.length < 2)
+            return;  // a game without an opponent is not rated
+        Result result = new Result(System.currentTimeMillis(), names.clone(), scores.clone());
+        synchronized (pending) {
+            if (closed)
+                throw new IllegalStateException("the leaderboard is closed");
+            pending.add(result);
+            ++submitted;
+            pending.notifyAll();
+        }
+    }
+
+    private void write() {
+        List<Result> batch = new ArrayList<>();
+        while (true) {
+            synchronized (pending) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        pending.wait();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                if (pending.isEmpty())
+                    return;
+                batch.addAll(pending);
+                pending.clear();
+            }
+            try {
+                append(batch);
+            } catch (IOException | UncheckedIOException e) {
+                logger.severe("error writing " + batch.size() + " game results to the leaderboard: " + e.getMessage());
+            }
+            synchronized (pending) {
+                applied += batch.size();
+                pending.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Appends a batch of results to the log (forced once), then applies them to the ratings.
+     */
+    private void append(List<Result> batch) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(batch.size());
+        int bytes = 0;
+        for (Result result : batch) {
+            byte[] payload = encode(result);
+            payloads.add(payload);
+            bytes += 8 + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        CRC32 crc = new CRC32();
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining())
+                log.write(buffer);
+            log.force(false);
+        } catch (IOException e) {
+            // the batch is lost, but the results after it must not follow a torn result
+            log.truncate(logBytes);
+            log.position(logBytes);
+            throw e;
+        }
+        synchronized (this) {
+            index.putInt(STATE, UPDATING);
+            for (Result result : batch)
+                apply(result);
+            logBytes += bytes;
+            commit();
+        }
+    }
+
+    private static byte[] encode(Result result) {
+        ByteBuffer buffer = ByteBuffer.allocate(9 + result.names.length * (5 + NAME_BYTES));
+        buffer.putLong(result.epochMillis).put((byte) result.names.length);
+        for (int player = 0; player < result.names.length; ++player) {
+            byte[] name = nameBytes(result.names[player]);
+            buffer.put((byte) name.length).put(name).putInt(result.scores[player]);
+        }
+        byte[] payload = new byte[buffer.position()];
+        buffer.flip().get(payload);
+        return payload;
+    }
+
+    private static Result decode(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long epochMillis = buffer.getLong();
+        String[] names = new String[buffer.get()];
+        int[] scores = new int[names.length];
+        for (int player = 0; player < names.length; ++player) {
+            byte[] name = new byte[buffer.get()];
+            buffer.get(name);
+            names[player] = new String(name, StandardCharsets.UTF_8);
+            scores[player] = buffer.getInt();
+        }
+        return new Result(epochMillis, names, scores);
+    }
+
+    /**
+     * @return - the name in UTF-8, cut to NAME_BYTES (on a character boundary).
+     */
+    private static byte[] nameBytes(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > NAME_BYTES) {
+            name = name.substring(0, name.offsetByCodePoints(name.length(), -1));
+            bytes = name.getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    /**
+     * Rates a game and writes the changed entries to the index (under the lock, with the index marked as updating).
+     */
+    private void apply(Result result) {
+        Entry[] players = new Entry[result.names.length];
+        double[] ratings = new double[players.length];
+        for (int player = 0; player < players.length; ++player) {
+            String name = new String(nameBytes(result.names[player]), StandardCharsets.UTF_8);
+            players[player] = entries.get(name);
+            if (players[player] == null) {
+                players[player] = new Entry(name, entries.size(), initialRating);
+                entries.put(name, players[player]);
+                ranking.add(players[player]);
+            }
+            ratings[player] = players[player].rating;
+        }
+        double[] changes = changes(ratings, result.scores, k);
+        int best = Integer.MIN_VALUE, winners = 0;
+        for (int score : result.scores) {
+            if (score > best) {
+                best = score;
+                winners = 0;
+            }
+            if (score == best)
+                ++winners;
+        }
+        for (int player = 0; player < players.length; ++player) {
+            Entry entry = players[player];
+            ranking.remove(entry);
+            entry.rating += changes[player];
+            entry.games++;
+            entry.totalScore += result.scores[player];
+            if (result.scores[player] == best)
+                entry.wins += 1.0 / winners;
+            ranking.add(entry);
+            store(entry);
+        }
+        ++games;
+    }
+
+    /**
+     * @param ratings - the rating of every player before the game.
+     * @param scores  - the score of every player in the game.
+     * @param k       - the most a rating moves in a game.
+     * @return - the change of every player's rating.
+     */
+    static double[] changes(double[] ratings, int[] scores, double k) {
+        int n = ratings.length;
+        double[] changes = new double[n];
+        for (int i = 0; i < n; ++i)
+            for (int j = i + 1; j < n; ++j) {
+                double expected = 1 / (1 + Math.pow(10, (ratings[j] - ratings[i]) / 400));
+                double actual = scores[i] > scores[j] ? 1 : scores[i] == scores[j] ? 0.5 : 0;
+                changes[i] += actual - expected;
+                changes[j] -= actual - expected;
+            }
+        for (int i = 0; i < n; ++i)
+            changes[i] *= k / (n - 1);
+        return changes;
+    }
+
+    private void store(Entry entry) {
+        if (HEADER_BYTES + (long) (entry.index + 1) * ENTRY_BYTES > index.capacity()) {
+            try {
+                map(2 * (index.capacity() - HEADER_BYTES) / ENTRY_BYTES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        int at = HEADER_BYTES + entry.index * ENTRY_BYTES;
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        index.put(at, (byte) name.length);
+        index.put(at + 1, name);
+        index.putDouble(at + RATING, entry.rating);
+        index.putDouble(at + WINS, entry.wins);
+        index.putLong(at + GAMES, entry.games);
+        index.putLong(at + TOTAL_SCORE, entry.totalScore);
+    }
+
+    /**
+     * Maps the index with room for the given number of entries (the file grows, it never shrinks).
+     */
+    private void map(int capacity) throws IOException {
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * ENTRY_BYTES);
+        index.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Marks the index as covering the log up to the bytes applied.
+     */
+    private void commit() {
+        index.putLong(LOG_APPLIED, logBytes);
+        index.putLong(GAMES_APPLIED, games);
+        index.putInt(PLAYERS, entries.size());
+        index.putInt(STATE, CLEAN);
+    }
+
+    /**
+     * Waits until every result recorded so far is written and rated.
+     */
+    public void flush() throws InterruptedException {
+        synchronized (pending) {
+            long target = submitted;
+            while (applied < target)
+                pending.wait();
+        }
+    }
+
+    /**
+     * Writes the results still queued, stops the writer thread and closes the files.
+     */
+    public void close() throws InterruptedException {
+        synchronized (pending) {
+            closed = true;
+            pending.notifyAll();
+        }
+        writer.join();
+        try {
+            synchronized (this) {
+                index.force();
+            }
+            log.close();
+            indexChannel.close();
+        } catch (IOException e) {
+            logger.severe("error closing the leaderboard: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return - the k best rated players, best first.
+     */
+    public synchronized List<Standing> top(int k) {
+        List<Standing> top = new ArrayList<>(Math.min(k, ranking.size()));
+        Iterator<Entry> it = ranking.iterator();
+        while (top.size() < k && it.hasNext())
+            top.add(it.next().standing());
+        return top;
+    }
+
+    /**
+     * @return - the player's standing, or null if the player has not played a rated game.
+     */
+    public synchronized Standing standing(String name) {
+        Entry entry = entries.get(new String(nameBytes(name), StandardCharsets.UTF_8));
+        return entry == null ? null : entry.standing();
+    }
+
+    /**
+     * @return - the number of rated games.
+     */
+    public synchronized long games() {
+        return games;
+    }
+
+    public synchronized int players() {
+        return entries.size();
+    }
+
+    /**
+     * @return - the number of results replayed from the log when the leaderboard was opened (0 if the index was
+     * up to date).
+     */
+    public long replayed() {
+        return replayed;
+    }
+
+    /**
+     * Prints the best rated players.
+     * Usage: Leaderboard directory [k]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: Leaderboard directory [k]");
+            return;
+        }
+        Logger logger = Logger.getLogger("SetGameLeaderboard");
+        Leaderboard leaderboard = new Leaderboard(logger, Paths.get(args[0]));
+        try {
+            System.out.println(leaderboard.games() + " games, " + leaderboard.players() + " players"
+                    + (leaderboard.replayed() > 0 ? " (" + leaderboard.replayed() + " replayed from the log)" : ""));
+            int rank = 0;
+            for (Standing standing : leaderboard.top(args.length > 1 ? Integer.parseInt(args[1]) : 10))
+                System.out.println(String.format(Locale.ROOT, "%3d. %s", ++rank, standing));
+        } finally {
+            leaderboard.close();
+        }
+    }
+}
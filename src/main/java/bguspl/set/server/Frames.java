@@ -0,0 +1,73 @@
+package bguspl.set.server;
+
+/**
+ * The binary frames exchanged between the player server and its remote players. A frame is a type byte followed by
+ * a fixed size payload of big endian fields (so frames need no length prefix):
+ * <pre>
+ * client to server:
+ *   JOIN                                    ask for a seat
+ *   PRESS         slot:short                a key press on a slot
+ * server to client:
+ *   WELCOME       player:short rows:short columns:short
+ *   FULL                                    no free seat (the server closes the connection)
+ *   CARD_PLACED   slot:short card:short
+ *   CARD_REMOVED  slot:short
+ *   TOKEN_PLACED  player:short slot:short
+ *   TOKEN_REMOVED player:short slot:short
+ *   SLOT_CLEARED  slot:short                all the tokens were removed from the slot
+ *   ALL_CLEARED                             all the tokens were removed from the table
+ *   SCORE         player:short score:int
+ *   FREEZE        player:short millis:int
+ * </pre>
+ */
+public final class Frames {
+
+    public static final byte JOIN = 1;
+    public static final byte PRESS = 2;
+
+    public static final byte WELCOME = 16;
+    public static final byte FULL = 17;
+    public static final byte CARD_PLACED = 18;
+    public static final byte CARD_REMOVED = 19;
+    public static final byte TOKEN_PLACED = 20;
+    public static final byte TOKEN_REMOVED = 21;
+    public static final byte SLOT_CLEARED = 22;
+    public static final byte ALL_CLEARED = 23;
+    public static final byte SCORE = 24;
+    public static final byte FREEZE = 25;
+
+    /**
+     * The size of the largest frame.
+     */
+    public static final int MAX_SIZE = 7;
+
+    private Frames() {
+    }
+
+    /**
+     * @param type - a frame type.
+     * @return - the size of the frames of the type (including the type byte), or -1 if the type is unknown.
+     */
+    public static int size(byte type) {
+        switch (type) {
+            case JOIN:
+            case FULL:
+            case ALL_CLEARED:
+                return 1;
+            case PRESS:
+            case CARD_REMOVED:
+            case SLOT_CLEARED:
+                return 3;
+            case CARD_PLACED:
+            case TOKEN_PLACED:
+            case TOKEN_REMOVED:
+                return 5;
+            case WELCOME:
+            case SCORE:
+            case FREEZE:
+                return 7;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package bguspl.set.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A load generator for the player server: opens many connections from a single thread, joins a seat on each of them
+ * and presses random slots at a fixed rate per connection, counting the frames the server sends back.
+ * Usage: LoadClient port [Connections=n] [Rate=presses per second per connection] [Seconds=n] [Host=name]
+ * Start the game first with HumanPlayers at least Connections and ServerPort set to the port.
+ */
+public class LoadClient {
+
+    private static final long TICK_MILLIS = 10;
+
+    /**
+     * A connection of a simulated remote player.
+     */
+    private static class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+        final ByteBuffer out = ByteBuffer.allocate(1024);
+        int slots;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final int connectionCount;
+    private final double rate;
+
+    private final List<Client> clients = new ArrayList<>();
+    private int connected;
+    private int joined;
+    private int full;
+    private long presses;
+    private long frames;
+    private long bytes;
+    private long elapsedNanos;
+
+    /**
+     * @param address     - the address of the player server.
+     * @param connections - the number of connections to open.
+     * @param rate        - the key presses per second of every seated connection.
+     */
+    public LoadClient(InetSocketAddress address, int connections, double rate) {
+        this.address = address;
+        this.connectionCount = connections;
+        this.rate = rate;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = Integer.parseInt(args[0]);
+        int connections = 1000;
+        double rate = 1;
+        long seconds = 10;
+        String host = "localhost";
+        for (int i = 1; i < args.length; ++i) {
+            String[] pair = args[i].split("=", 2);
+            switch (pair[0].trim()) {
+                case "Connections": connections = Integer.parseInt(pair[1].trim()); break;
+                case "Rate": rate = Double.parseDouble(pair[1].trim()); break;
+                case "Seconds": seconds = Long.parseLong(pair[1].trim()); break;
+                case "Host": host = pair[1].trim(); break;
+                default: throw new IllegalArgumentException("unknown argument: " + args[i]);
+            }
+        }
+        LoadClient client = new LoadClient(new InetSocketAddress(host, port), connections, rate);
+        client.run(seconds * 1000);
+        System.out.println(client.report());
+    }
+
+    /**
+     * Connects, joins and presses keys for the given time, then closes all the connections.
+     *
+     * @param millis - how long to run.
+     * @throws IOException - if the selector cannot be opened.
+     */
+    public void run(long millis) throws IOException {
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        double due = 0;
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < connectionCount; ++i) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Client client = new Client(channel);
+                if (channel.connect(address)) connected(client, selector);
+                else channel.register(selector, SelectionKey.OP_CONNECT, client);
+                clients.add(client);
+            }
+            long last = System.nanoTime();
+            for (long now = last; now < end; now = System.nanoTime()) {
+                selector.select(TICK_MILLIS);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isConnectable() && client.channel.finishConnect()) connected(client, selector);
+                        else if (key.isReadable()) read(client, key);
+                    } catch (IOException e) {
+                        key.cancel();
+                        client.channel.close();
+                    }
+                }
+                selector.selectedKeys().clear();
+                // the presses due since the last round, spread over the seated connections
+                now = System.nanoTime();
+                due += rate * (now - last) / 1e9;
+                last = now;
+                if (due >= 1) {
+                    press((int) due);
+                    due -= (int) due;
+                }
+            }
+        } finally {
+            for (Client client : clients) client.channel.close();
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void connected(Client client, Selector selector) throws IOException {
+        connected++;
+        client.out.put(Frames.JOIN);
+        write(client);
+        client.channel.register(selector, SelectionKey.OP_READ, client);
+    }
+
+    private void read(Client client, SelectionKey key) throws IOException {
+        int read = client.channel.read(client.in);
+        if (read < 0) {
+            key.cancel();
+            client.channel.close();
+            return;
+        }
+        bytes += read;
+        ByteBuffer in = client.in;
+        in.flip();
+        while (in.hasRemaining()) {
+            byte type = in.get(in.position());
+            int size = Frames.size(type);
+            if (size < 0) throw new IOException("unknown frame type " + type);
+            if (in.remaining() < size) break;
+            frames++;
+            if (type == Frames.WELCOME) {
+                joined++;
+                client.slots = in.getShort(in.position() + 3) * in.getShort(in.position() + 5);
+            } else if (type == Frames.FULL) {
+                full++;
+            }
+            in.position(in.position() + size);
+        }
+        in.compact();
+    }
+
+    /**
+     * Presses a random slot on every seated connection, the given number of times.
+     */
+    private void press(int times) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (Client client : clients) {
+            if (client.slots == 0 || !client.channel.isOpen()) continue;
+            for (int i = 0; i < times && client.out.remaining() >= Frames.MAX_SIZE; ++i) {
+                client.out.put(Frames.PRESS).putShort((short) random.nextInt(client.slots));
+                presses++;
+            }
+            try {
+                write(client);
+            } catch (IOException e) {
+                client.channel.close();
+            }
+        }
+    }
+
+    private static void write(Client client) throws IOException {
+        client.out.flip();
+        client.channel.write(client.out);
+        client.out.compact();
+    }
+
+    public int connected() {
+        return connected;
+    }
+
+    public int joined() {
+        return joined;
+    }
+
+    public int full() {
+        return full;
+    }
+
+    public long presses() {
+        return presses;
+    }
+
+    public long frames() {
+        return frames;
+    }
+
+    /**
+     * @return - the connection and traffic counts.
+     */
+    public String report() {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("connections: %d connected, %d seated, %d turned away%n", connected, joined, full)
+                + String.format("sent: %d key presses (%.0f/s)%n", presses, presses / seconds)
+                + String.format("received: %d frames (%.0f/s), %d bytes", frames, frames / seconds, bytes);
+    }
+}
@@ -0,0 +1,489 @@
+package bguspl.set.server;
+
+import bguspl.set.Config;
+import bguspl.set.UserInterface;
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * A non-blocking TCP server through which remote players play the human players' seats (see Frames for the protocol).
+ * The server is a user interface decorator: the game's token, card, score and freeze updates are passed on to the
+ * wrapped user interface and queued as binary frames for the remote players. A single I/O thread accepts the
+ * connections, feeds the remote key presses to Player::keyPressed and writes the queued frames to all the players,
+ * so the game threads never wait for the network. The I/O thread appends the frames to one log that all the players
+ * read from, each at its own offset, and the log only keeps the frames the slowest player has yet to be sent. A
+ * player whose backlog in the log grows past BACKLOG_BYTES is disconnected.
+ */
+public class PlayerServer implements UserInterface {
+
+    /**
+     * The initial size of the buffer of frames waiting for the I/O thread (it grows when the I/O thread falls behind).
+     */
+    private static final int EVENT_BUFFER_BYTES = 16 * 1024;
+
+    /**
+     * The number of bytes of the log that may wait to be sent to a single player before the player is disconnected.
+     */
+    private static final int BACKLOG_BYTES = 64 * 1024;
+
+    /**
+     * The size of a player's own output buffer (the welcome and the table it joins).
+     */
+    private static final int OUTPUT_BUFFER_BYTES = 64 * 1024;
+
+    private static final int INPUT_BUFFER_BYTES = 256;
+
+    /**
+     * A remote player's connection (I/O thread only).
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(INPUT_BUFFER_BYTES);
+        final ByteBuffer out = ByteBuffer.allocate(OUTPUT_BUFFER_BYTES);
+        long sent;  // the offset in the log up to which the player was sent the frames (once seated)
+        int player = -1;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Logger logger;
+    private final Config config;
+    private final Player[] players;
+    private final UserInterface ui;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread ioThread;
+    private volatile boolean closed;
+
+    /**
+     * The frames queued by the game threads, and the buffer the I/O thread is sending (swapped under the lock).
+     */
+    private final Object eventLock = new Object();
+    private ByteBuffer events = ByteBuffer.allocate(EVENT_BUFFER_BYTES);
+    private ByteBuffer draining = ByteBuffer.allocate(EVENT_BUFFER_BYTES);
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    /**
+     * The frames the seated players have yet to be sent (I/O thread only): the log holds the bytes from offset
+     * logStart to the end of the log, in its first position() bytes.
+     */
+    private ByteBuffer log = ByteBuffer.allocate(EVENT_BUFFER_BYTES);
+    private long logStart;
+
+    /**
+     * The table and scores as the remote players see them, sent to a player when it joins (I/O thread only).
+     */
+    private final int[] cards;
+    private final boolean[][] tokens;
+    private final int[] scores;
+
+    private final BitSet seats = new BitSet();
+    private final List<Connection> connections = new ArrayList<>();
+    private volatile int connectionCount;
+
+    /**
+     * @param logger  - the logger.
+     * @param config  - the game configuration (the human players' seats are the ones offered to remote players).
+     * @param players - the players (may be filled in after the server is created).
+     * @param ui      - the user interface to pass the updates on to (null if none).
+     * @param port    - the port to listen on (0 for any free port).
+     * @throws IOException - if the port cannot be bound.
+     */
+    public PlayerServer(Logger logger, Config config, Player[] players, UserInterface ui, int port) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.players = players;
+        this.ui = ui;
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        tokens = new boolean[config.tableSize][config.players];
+        scores = new int[config.players];
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        ioThread = new Thread(this::run, "player-server");
+        ioThread.setDaemon(true);
+    }
+
+    public void start() {
+        ioThread.start();
+        logger.info("player server listening on port " + port());
+    }
+
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return - the number of open connections.
+     */
+    public int connections() {
+        return connectionCount;
+    }
+
+    /**
+     * Closes all the connections and stops the I/O thread.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        if (Thread.currentThread() != ioThread) {
+            try {
+                ioThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                wakeupPending.set(false);
+                sendEvents();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else handle(key);
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.severe("player server stopped: " + e);
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) disconnect(connection);
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+            connectionCount = connections.size();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isWritable()) flush(connection);
+            if (key.isValid() && key.isReadable()) {
+                if (connection.channel.read(connection.in) < 0) {
+                    disconnect(connection);
+                    return;
+                }
+                receive(connection);
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    /**
+     * Handles the complete frames a player sent.
+     */
+    private void receive(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.hasRemaining()) {
+            byte type = in.get(in.position());
+            if (type != Frames.JOIN && type != Frames.PRESS) throw new IOException("unexpected frame type " + type);
+            if (in.remaining() < Frames.size(type)) break;
+            in.get();
+            if (type == Frames.JOIN) {
+                join(connection);
+                if (connection.player < 0) return;
+            } else {
+                int slot = in.getShort() & 0xffff;
+                Player player = connection.player >= 0 ? players[connection.player] : null;
+                if (player != null && slot < config.tableSize) player.keyPressed(slot);
+            }
+        }
+        in.compact();
+    }
+
+    /**
+     * Seats a player at the first free human seat and sends it the table, or turns it away if there is none.
+     */
+    private void join(Connection connection) throws IOException {
+        if (connection.player >= 0) return;
+        int seat = seats.nextClearBit(0);
+        ByteBuffer out = connection.out;
+        if (seat >= config.humanPlayers) {
+            out.put(Frames.FULL);
+            flush(connection);
+            disconnect(connection);
+            return;
+        }
+        seats.set(seat);
+        connection.player = seat;
+        // the table the server keeps has every frame of the log applied, so the player reads the log from its end
+        connection.sent = logEnd();
+        out.put(Frames.WELCOME).putShort((short) seat).putShort((short) config.rows).putShort((short) config.columns);
+        for (int slot = 0; slot < cards.length && out.remaining() >= Frames.MAX_SIZE; ++slot) {
+            if (cards[slot] >= 0) put(out, Frames.CARD_PLACED, slot, cards[slot]);
+            for (int player = 0; player < config.players && out.remaining() >= Frames.MAX_SIZE; ++player)
+                if (tokens[slot][player]) put(out, Frames.TOKEN_PLACED, player, slot);
+        }
+        for (int player = 0; player < scores.length && out.remaining() >= Frames.MAX_SIZE; ++player)
+            if (scores[player] != 0) put(out, Frames.SCORE, player, scores[player]);
+        flush(connection);
+    }
+
+    /**
+     * Applies the queued frames to the table the server keeps, appends them to the log, and sends the log on to all
+     * the seated players.
+     */
+    private void sendEvents() {
+        synchronized (eventLock) {
+            ByteBuffer swap = events;
+            events = draining;
+            draining = swap;
+        }
+        draining.flip();
+        if (!draining.hasRemaining()) {
+            draining.clear();
+            return;
+        }
+        for (int position = draining.position(); position < draining.limit(); ) {
+            byte type = draining.get(position);
+            apply(type, draining, position + 1);
+            position += Frames.size(type);
+        }
+        if (log.remaining() < draining.remaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(log.capacity() * 2, log.position() + draining.remaining()));
+            log.flip();
+            log = larger.put(log);
+        }
+        log.put(draining);
+        draining.clear();
+        for (Connection connection : new ArrayList<>(connections)) {
+            if (connection.player < 0) continue;
+            try {
+                flush(connection);
+            } catch (IOException e) {
+                disconnect(connection);
+                continue;
+            }
+            if (logEnd() - connection.sent > BACKLOG_BYTES) {
+                logger.warning("disconnecting player " + (connection.player + 1) + ": too far behind");
+                disconnect(connection);
+            }
+        }
+        trimLog();
+    }
+
+    private long logEnd() {
+        return logStart + log.position();
+    }
+
+    /**
+     * Drops the frames all the seated players were sent from the log.
+     */
+    private void trimLog() {
+        long oldest = logEnd();
+        for (Connection connection : connections)
+            if (connection.player >= 0) oldest = Math.min(oldest, connection.sent);
+        int sent = (int) (oldest - logStart);
+        if (sent == 0) return;
+        log.flip();
+        log.position(sent);
+        log.compact();
+        logStart = oldest;
+    }
+
+    private void apply(byte type, ByteBuffer frames, int at) {
+        switch (type) {
+            case Frames.CARD_PLACED:
+                cards[frames.getShort(at) & 0xffff] = frames.getShort(at + 2) & 0xffff;
+                break;
+            case Frames.CARD_REMOVED:
+                cards[frames.getShort(at) & 0xffff] = -1;
+                break;
+            case Frames.TOKEN_PLACED:
+            case Frames.TOKEN_REMOVED:
+                tokens[frames.getShort(at + 2) & 0xffff][frames.getShort(at) & 0xffff] = type == Frames.TOKEN_PLACED;
+                break;
+            case Frames.SLOT_CLEARED:
+                Arrays.fill(tokens[frames.getShort(at) & 0xffff], false);
+                break;
+            case Frames.ALL_CLEARED:
+                for (boolean[] slot : tokens) Arrays.fill(slot, false);
+                break;
+            case Frames.SCORE:
+                scores[frames.getShort(at) & 0xffff] = frames.getInt(at + 2);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Writes as much of the player's own output and then of the log as the socket takes, and waits for it to take
+     * the rest.
+     */
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        out.flip();
+        connection.channel.write(out);
+        out.compact();
+        if (out.position() == 0 && connection.player >= 0 && connection.sent < logEnd()) {
+            ByteBuffer pending = log.duplicate();
+            pending.limit(log.position()).position((int) (connection.sent - logStart));
+            connection.sent += connection.channel.write(pending);
+        }
+        boolean waiting = out.position() > 0 || (connection.player >= 0 && connection.sent < logEnd());
+        SelectionKey key = connection.channel.keyFor(selector);
+        if (key != null && key.isValid())
+            key.interestOps(waiting ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void disconnect(Connection connection) {
+        if (connection.player >= 0) seats.clear(connection.player);
+        connection.player = -1;
+        connections.remove(connection);
+        connectionCount = connections.size();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Queues a frame for the I/O thread (called by the game threads, never blocks on the network).
+     */
+    private void publish(byte type, int a, int b) {
+        if (closed) return;
+        synchronized (eventLock) {
+            if (events.remaining() < Frames.MAX_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(events.capacity() * 2);
+                events.flip();
+                events = larger.put(events);
+            }
+            put(events, type, a, b);
+        }
+        if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    private static void put(ByteBuffer buffer, byte type, int a, int b) {
+        buffer.put(type);
+        switch (Frames.size(type)) {
+            case 3:
+                buffer.putShort((short) a);
+                break;
+            case 5:
+                buffer.putShort((short) a).putShort((short) b);
+                break;
+            case 7:
+                buffer.putShort((short) a).putInt(b);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (ui != null) ui.placeCard(card, slot);
+        publish(Frames.CARD_PLACED, slot, card);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (ui != null) ui.removeCard(slot);
+        publish(Frames.CARD_REMOVED, slot, 0);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (ui != null) ui.placeToken(player, slot);
+        publish(Frames.TOKEN_PLACED, player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        if (ui != null) ui.removeTokens();
+        publish(Frames.ALL_CLEARED, 0, 0);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (ui != null) ui.removeTokens(slot);
+        publish(Frames.SLOT_CLEARED, slot, 0);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (ui != null) ui.removeToken(player, slot);
+        publish(Frames.TOKEN_REMOVED, player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (ui != null) ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ui != null) ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (ui != null) ui.setFreeze(player, millies);
+        publish(Frames.FREEZE, player, (int) Math.min(Integer.MAX_VALUE, millies));
+    }
+
+    @Override
+    public void setFreezeDeadline(int player, long untilMillis) {
+        if (ui != null) ui.setFreezeDeadline(player, untilMillis);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (ui != null) ui.setScore(player, score);
+        publish(Frames.SCORE, player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (ui != null) ui.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        if (ui != null) ui.dispose();
+        close();
+    }
+}
@@ -0,0 +1,89 @@
+package bguspl.set.server;
+
+import bguspl.set.Env;
+import bguspl.set.GameLoop;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import bguspl.set.sim.GameResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single game hosted by a room manager: its own table, dealer and players, driven by a pooled game loop.
+ */
+public class Room {
+
+    public final int id;
+
+    private final Env env;
+    private final Dealer dealer;
+    private final Player[] players;
+    private final GameLoop loop;
+
+    private final CompletableFuture<GameResult> result = new CompletableFuture<>();
+
+    private long startNanos;
+
+    Room(int id, Env env, GameLoop loop) {
+        this.id = id;
+        this.env = env;
+        this.loop = loop;
+        Table table = new Table(env);
+        players = new Player[env.config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+    }
+
+    /**
+     * Starts the game on the room's loop.
+     */
+    void start() {
+        startNanos = System.nanoTime();
+        loop.termination().thenRun(this::finished);
+        loop.execute(() -> dealer.start(loop));
+    }
+
+    private void finished() {
+        long duration = System.nanoTime() - startNanos;
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++)
+            scores[i] = players[i].score();
+        result.complete(new GameResult(duration, TimeUnit.NANOSECONDS.toMillis(duration), scores, dealer.claims(), dealer.points(), dealer.penalties()));
+    }
+
+    /**
+     * Ends the game (the result is completed once the room's loop stopped).
+     */
+    public void close() {
+        dealer.terminate();
+    }
+
+    /**
+     * @return - a future completed with the result of the game once it is over.
+     */
+    public CompletableFuture<GameResult> result() {
+        return result;
+    }
+
+    public Env env() {
+        return env;
+    }
+
+    /**
+     * @param player - the id of the player.
+     * @return - the player (human players get their key presses through Player::keyPressed).
+     */
+    public Player player(int player) {
+        return players[player];
+    }
+
+    /**
+     * @return - the total time the room's loop spent running the game on the pool.
+     */
+    public long busyNanos() {
+        return loop.busyNanos();
+    }
+}
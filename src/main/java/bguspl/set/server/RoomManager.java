@@ -0,0 +1,103 @@
+package bguspl.set.server;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameLoop;
+import bguspl.set.SystemClock;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.UtilImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent games (rooms) in one JVM. Every room has its own table, dealer and players, driven by an
+ * event loop that runs in turns on a single shared, bounded pool of worker threads, so a room owns no thread of
+ * its own and opening or closing rooms never creates or leaks threads. The rooms run in real time, without a user
+ * interface, and share the immutable per-geometry data (the card feature tables, see UtilImpl).
+ */
+public class RoomManager {
+
+    private final Logger logger;
+    private final ScheduledThreadPoolExecutor pool;
+
+    private final Map<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    /**
+     * @param logger  - the logger shared by all the rooms.
+     * @param threads - the number of worker threads of the shared pool.
+     */
+    public RoomManager(Logger logger, int threads) {
+        this.logger = logger;
+        AtomicInteger workers = new AtomicInteger();
+        pool = new ScheduledThreadPoolExecutor(threads, task -> {
+            Thread thread = new Thread(task, "room-worker-" + workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Opens a room and starts its game. The room is removed from the manager once its game is over.
+     *
+     * @param config - the game configuration (may be shared by many rooms).
+     * @return - the new room.
+     */
+    public Room open(Config config) {
+        if (shutdown) throw new IllegalStateException("the room manager is shut down");
+        Env env = new Env(logger, config, new UserInterfaceHeadless(), new UtilImpl(config), SystemClock.INSTANCE);
+        Room room = new Room(nextId.getAndIncrement(), env, new GameLoop(logger, env.clock, pool));
+        rooms.put(room.id, room);
+        room.result().whenComplete((result, e) -> rooms.remove(room.id));
+        room.start();
+        return room;
+    }
+
+    /**
+     * @return - the number of open rooms.
+     */
+    public int rooms() {
+        return rooms.size();
+    }
+
+    /**
+     * @return - the number of worker threads of the shared pool.
+     */
+    public int threads() {
+        return pool.getCorePoolSize();
+    }
+
+    /**
+     * Closes all the open rooms, waits for their games to end and stops the worker threads.
+     *
+     * @param timeoutMillis - the maximum time to wait for the rooms to close.
+     * @throws InterruptedException - if interrupted while waiting.
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        shutdown = true;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<Room> open = new ArrayList<>(rooms.values());
+        open.forEach(Room::close);
+        for (Room room : open) {
+            try {
+                room.result().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                logger.severe("room " + room.id + " did not close: " + e);
+            }
+        }
+        pool.shutdownNow();
+        if (!pool.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS))
+            logger.severe("the room worker threads did not terminate");
+    }
+}
@@ -0,0 +1,91 @@
+package bguspl.set.server;
+
+import bguspl.set.Config;
+import bguspl.set.LatencyHistogram;
+import bguspl.set.sim.GameResult;
+import bguspl.set.sim.HeadlessGame;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Runs many rooms at once on a room manager and reports the footprint of a room and how many rooms a core can host.
+ * Usage: RoomServer [rooms] [threads] [config file] [Key=Value ...]
+ * The first number is the number of rooms (default 200) and the second the number of worker threads (default: the
+ * number of cores). The key/value pairs override the configuration file (e.g. TurnTimeoutSeconds=5).
+ */
+public class RoomServer {
+
+    private static final int DEFAULT_ROOMS = 200;
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        Logger logger = Logger.getLogger("SetGameServer");
+        List<Integer> numbers = new ArrayList<>();
+        String configFile = "config.properties";
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            if (arg.contains("=")) {
+                String[] pair = arg.split("=", 2);
+                overrides.setProperty(pair[0].trim(), pair[1].trim());
+            } else if (arg.matches("\\d+")) {
+                numbers.add(Integer.parseInt(arg));
+            } else {
+                configFile = arg;
+            }
+        }
+        int rooms = numbers.size() > 0 ? numbers.get(0) : DEFAULT_ROOMS;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = numbers.size() > 1 ? numbers.get(1) : cores;
+
+        Properties properties = Config.loadProperties(configFile, logger);
+        properties.putAll(overrides);
+        properties = HeadlessGame.headless(properties);
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        int threadsBefore = Thread.activeCount();
+        RoomManager manager = new RoomManager(logger, threads);
+        long heapBefore = usedHeap(memory);
+
+        long start = System.nanoTime();
+        List<Room> open = new ArrayList<>(rooms);
+        for (int i = 0; i < rooms; i++)
+            open.add(manager.open(config));
+        long heapWithRooms = usedHeap(memory);
+        int threadsWithRooms = Thread.activeCount();
+
+        LatencyHistogram durations = new LatencyHistogram();
+        long busyNanos = 0, claims = 0;
+        for (Room room : open) {
+            GameResult result = room.result().get();
+            durations.record(result.durationNanos);
+            busyNanos += room.busyNanos();
+            claims += result.claims;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        manager.shutdown(5000);
+        int threadsAfter = Thread.activeCount();
+
+        double seconds = elapsedNanos / 1e9;
+        double coresUsed = busyNanos / (double) elapsedNanos;
+        System.out.printf("rooms: %d on %d worker threads (%d cores), all games over in %.2fs%n", rooms, threads, cores, seconds);
+        System.out.printf("threads: %d before, %d with the rooms open, %d after shutdown%n", threadsBefore, threadsWithRooms, threadsAfter);
+        System.out.printf("heap per room: %,d KB%n", Math.max(0, heapWithRooms - heapBefore) / rooms / 1024);
+        System.out.printf("claims: %d (%.1f claims/s)%n", claims, claims / seconds);
+        System.out.printf("cpu: %.3f cores busy, %.2f%% of a core per room, ~%,d rooms per core%n",
+                coresUsed, 100.0 * coresUsed / rooms, coresUsed > 0 ? (long) (rooms / coresUsed) : 0);
+        System.out.printf("game duration: mean=%.1fms p50=%.1fms p99=%.1fms max=%.1fms%n",
+                durations.mean() / 1e6, durations.percentile(50) / 1e6, durations.percentile(99) / 1e6, durations.max() / 1e6);
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,79 @@
+package bguspl.set.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The frames of the spectator stream. A frame is a type byte followed by varint fields, and values that change by
+ * small steps (scores and the countdown) are sent as zigzag encoded deltas from their previous value in the stream:
+ * <pre>
+ *   SNAPSHOT      rows columns players, the card+1 (0 for none) of every slot, the token count and a player and a
+ *                 slot per token, the score and the freeze millis of every player, countdown flags, winner count
+ *                 and winners (a subscriber starts with a snapshot, and gets a new one after it fell behind)
+ *   CARD_PLACED   slot card
+ *   CARD_REMOVED  slot
+ *   TOKEN_PLACED  player slot
+ *   TOKEN_REMOVED player slot
+ *   SLOT_CLEARED  slot
+ *   ALL_CLEARED
+ *   SCORE         player delta
+ *   FREEZE        player millis
+ *   COUNTDOWN     delta flags            (ELAPSED when the timer counts up, WARN when the warning is shown)
+ *   WINNERS       count player...
+ * </pre>
+ */
+public final class SpectatorFrames {
+
+    public static final byte SNAPSHOT = 1;
+    public static final byte CARD_PLACED = 2;
+    public static final byte CARD_REMOVED = 3;
+    public static final byte TOKEN_PLACED = 4;
+    public static final byte TOKEN_REMOVED = 5;
+    public static final byte SLOT_CLEARED = 6;
+    public static final byte ALL_CLEARED = 7;
+    public static final byte SCORE = 8;
+    public static final byte FREEZE = 9;
+    public static final byte COUNTDOWN = 10;
+    public static final byte WINNERS = 11;
+
+    /**
+     * The COUNTDOWN flags.
+     */
+    public static final int WARN = 1;
+    public static final int ELAPSED = 2;
+
+    /**
+     * The most bytes a varint takes.
+     */
+    public static final int MAX_VARINT = 10;
+
+    private SpectatorFrames() {
+    }
+
+    public static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * @throws java.nio.BufferUnderflowException - if the buffer ends in the middle of the varint.
+     */
+    public static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
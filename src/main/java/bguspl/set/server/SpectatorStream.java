@@ -0,0 +1,460 @@
+package bguspl.set.server;
+
+import bguspl.set.Config;
+import bguspl.set.UserInterface;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import static bguspl.set.server.SpectatorFrames.*;
+
+/**
+ * A user interface decorator that streams everything a viewer sees to any number of spectators, local (any
+ * non-blocking WritableByteChannel) or remote (TCP, see listen), as delta encoded binary frames (see SpectatorFrames).
+ * The game threads only append frames to a shared log, and a fan-out thread copies the log into a bounded buffer per
+ * subscriber and writes as much of it as the subscriber takes without blocking, so a slow spectator never stalls
+ * the dealer. A subscriber whose buffer overflows skips the frames it missed and gets a snapshot of the current
+ * state instead. Countdown and freeze updates are coalesced: a subscriber only gets the latest value.
+ */
+public class SpectatorStream implements UserInterface {
+
+    /**
+     * The default number of bytes that may wait to be written to a subscriber before it is considered lagging.
+     */
+    public static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * How often the fan-out thread retries writing to the subscribers that did not take all their frames.
+     */
+    private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * A spectator receiving the stream.
+     */
+    public static class Subscriber {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;  // the frames waiting to be written (fan-out thread only)
+        private boolean resync = true;
+        private volatile long resyncs;
+        private volatile boolean closed;
+
+        private Subscriber(WritableByteChannel channel, int bufferBytes) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(bufferBytes);
+        }
+
+        /**
+         * @return - the number of times the subscriber fell behind and was sent a new snapshot.
+         */
+        public long resyncs() {
+            return resyncs;
+        }
+
+        public boolean closed() {
+            return closed;
+        }
+    }
+
+    private final Logger logger;
+    private final Config config;
+    private final UserInterface ui;
+    private final int bufferBytes;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread fanOut;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile boolean closed;
+    private ServerSocketChannel server;
+
+    // the state seen by the viewers and the frames not sent yet (guarded by lock)
+    private final Object lock = new Object();
+    private ByteBuffer log = ByteBuffer.allocate(4096);
+    private ByteBuffer batch = ByteBuffer.allocate(4096);
+    private ByteBuffer snapshot = ByteBuffer.allocate(4096);
+    private final int[] cards;
+    private final boolean[][] tokens;
+    private final int[] scores;
+    private final long[] freezes;
+    private final boolean[] freezeChanged;
+    private boolean freezesChanged;
+    private long countdown;
+    private int countdownFlags;
+    private boolean countdownChanged;
+    private long sentCountdown;
+    private int[] winners = new int[0];
+
+    /**
+     * @param logger      - the logger.
+     * @param config      - the game configuration.
+     * @param ui          - the user interface to pass the calls on to (null if none).
+     * @param bufferBytes - the default buffer size of a subscriber.
+     */
+    public SpectatorStream(Logger logger, Config config, UserInterface ui, int bufferBytes) {
+        this.logger = logger;
+        this.config = config;
+        this.ui = ui;
+        this.bufferBytes = bufferBytes;
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        tokens = new boolean[config.tableSize][config.players];
+        scores = new int[config.players];
+        freezes = new long[config.players];
+        freezeChanged = new boolean[config.players];
+        fanOut = new Thread(this::run, "spectator-stream");
+        fanOut.setDaemon(true);
+        fanOut.start();
+    }
+
+    /**
+     * Adds a spectator. The channel must not block on writes (e.g. a non-blocking socket channel).
+     *
+     * @param channel - the channel to write the frames to.
+     * @return - the subscriber (its first frame is a snapshot).
+     */
+    public Subscriber subscribe(WritableByteChannel channel) {
+        return subscribe(channel, bufferBytes);
+    }
+
+    /**
+     * Adds a spectator with its own buffer size (see subscribe).
+     */
+    public Subscriber subscribe(WritableByteChannel channel, int bufferBytes) {
+        Subscriber subscriber = new Subscriber(channel, bufferBytes);
+        subscribers.add(subscriber);
+        signal();
+        return subscriber;
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+        try {
+            subscriber.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * Accepts remote spectators on a TCP port (each connection is subscribed until it closes).
+     *
+     * @param port - the port to listen on (0 for any free port).
+     * @return - the port.
+     * @throws IOException - if the port cannot be bound.
+     */
+    public int listen(int port) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (!closed) {
+                    SocketChannel channel = server.accept();
+                    channel.configureBlocking(false);
+                    subscribe(channel);
+                }
+            } catch (IOException e) {
+                if (!closed) logger.severe("spectator server stopped: " + e);
+            }
+        }, "spectator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("spectator stream listening on port " + server.socket().getLocalPort());
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Sends the frames not sent yet, then stops the stream and closes all the subscribers.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(fanOut);
+        try {
+            fanOut.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (server != null) server.close();
+        } catch (IOException ignored) {
+        }
+        for (Subscriber subscriber : subscribers) unsubscribe(subscriber);
+    }
+
+    private void signal() {
+        if (pending.compareAndSet(false, true)) LockSupport.unpark(fanOut);
+    }
+
+    private void run() {
+        while (!closed) {
+            pending.set(false);
+            fanOut();
+            if (!pending.get()) LockSupport.parkNanos(this, RETRY_NANOS);
+        }
+        fanOut();
+    }
+
+    /**
+     * Copies the frames logged since the last pass to every subscriber and writes what the subscribers take.
+     */
+    private void fanOut() {
+        boolean snapshotNeeded = false;
+        for (Subscriber subscriber : subscribers)
+            snapshotNeeded |= subscriber.resync && subscriber.buffer.position() == 0;
+        synchronized (lock) {
+            ByteBuffer swap = log;
+            log = batch;
+            batch = swap;
+            coalesced();
+            if (snapshotNeeded) snapshot();
+        }
+        batch.flip();
+        for (Subscriber subscriber : subscribers) {
+            ByteBuffer buffer = subscriber.buffer;
+            if (subscriber.resync) {
+                // a snapshot replaces everything missed, once the frames already started are written out
+                if (snapshotNeeded && buffer.position() == 0) {
+                    if (snapshot.remaining() > buffer.remaining()) {
+                        logger.warning("dropping a spectator: the snapshot does not fit its buffer");
+                        unsubscribe(subscriber);
+                        continue;
+                    }
+                    buffer.put(snapshot.duplicate());
+                    subscriber.resync = false;
+                }
+            } else if (batch.remaining() > buffer.remaining()) {
+                subscriber.resync = true;
+                subscriber.resyncs++;
+                pending.set(true);
+            } else {
+                buffer.put(batch.duplicate());
+            }
+            try {
+                buffer.flip();
+                subscriber.channel.write(buffer);
+                buffer.compact();
+            } catch (IOException e) {
+                unsubscribe(subscriber);
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Logs the latest countdown and freezes, if they changed since the last pass (under the lock).
+     */
+    private void coalesced() {
+        if (countdownChanged) {
+            batch = room(batch, 1 + 2 * MAX_VARINT);
+            batch.put(COUNTDOWN);
+            putVarint(batch, zigzag(countdown - sentCountdown));
+            putVarint(batch, countdownFlags);
+            sentCountdown = countdown;
+            countdownChanged = false;
+        }
+        if (freezesChanged) {
+            for (int player = 0; player < freezes.length; ++player) {
+                if (!freezeChanged[player]) continue;
+                batch = room(batch, 1 + 2 * MAX_VARINT);
+                batch.put(FREEZE);
+                putVarint(batch, player);
+                putVarint(batch, freezes[player]);
+                freezeChanged[player] = false;
+            }
+            freezesChanged = false;
+        }
+    }
+
+    /**
+     * Encodes the current state (under the lock, after the coalesced updates were logged).
+     */
+    private void snapshot() {
+        int tokenCount = 0;
+        for (boolean[] slot : tokens)
+            for (boolean token : slot)
+                if (token) ++tokenCount;
+        int size = 1 + MAX_VARINT * (4 + cards.length + 2 * tokenCount + 2 * scores.length + 2 + winners.length);
+        if (snapshot.capacity() < size) snapshot = ByteBuffer.allocate(size);
+        snapshot.clear();
+        snapshot.put(SNAPSHOT);
+        putVarint(snapshot, config.rows);
+        putVarint(snapshot, config.columns);
+        putVarint(snapshot, scores.length);
+        for (int card : cards) putVarint(snapshot, card + 1);
+        putVarint(snapshot, tokenCount);
+        for (int slot = 0; slot < tokens.length; ++slot)
+            for (int player = 0; player < tokens[slot].length; ++player)
+                if (tokens[slot][player]) {
+                    putVarint(snapshot, player);
+                    putVarint(snapshot, slot);
+                }
+        for (int player = 0; player < scores.length; ++player) {
+            putVarint(snapshot, scores[player]);
+            putVarint(snapshot, freezes[player]);
+        }
+        putVarint(snapshot, zigzag(sentCountdown));
+        putVarint(snapshot, countdownFlags);
+        putVarint(snapshot, winners.length);
+        for (int player : winners) putVarint(snapshot, player);
+        snapshot.flip();
+    }
+
+    private static ByteBuffer room(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) return buffer;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+
+    /**
+     * Logs a frame of up to two varint fields (under the lock).
+     */
+    private void append(byte type, int fields, long a, long b) {
+        log = room(log, 1 + 2 * MAX_VARINT);
+        log.put(type);
+        if (fields > 0) putVarint(log, a);
+        if (fields > 1) putVarint(log, b);
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (ui != null) ui.placeCard(card, slot);
+        synchronized (lock) {
+            cards[slot] = card;
+            append(CARD_PLACED, 2, slot, card);
+        }
+        signal();
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (ui != null) ui.removeCard(slot);
+        synchronized (lock) {
+            cards[slot] = -1;
+            append(CARD_REMOVED, 1, slot, 0);
+        }
+        signal();
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (ui != null) ui.placeToken(player, slot);
+        synchronized (lock) {
+            tokens[slot][player] = true;
+            append(TOKEN_PLACED, 2, player, slot);
+        }
+        signal();
+    }
+
+    @Override
+    public void removeTokens() {
+        if (ui != null) ui.removeTokens();
+        synchronized (lock) {
+            for (boolean[] slot : tokens) Arrays.fill(slot, false);
+            append(ALL_CLEARED, 0, 0, 0);
+        }
+        signal();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (ui != null) ui.removeTokens(slot);
+        synchronized (lock) {
+            Arrays.fill(tokens[slot], false);
+            append(SLOT_CLEARED, 1, slot, 0);
+        }
+        signal();
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (ui != null) ui.removeToken(player, slot);
+        synchronized (lock) {
+            tokens[slot][player] = false;
+            append(TOKEN_REMOVED, 2, player, slot);
+        }
+        signal();
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (ui != null) ui.setCountdown(millies, warn);
+        countdown(millies, warn ? WARN : 0);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ui != null) ui.setElapsed(millies);
+        countdown(millies, ELAPSED);
+    }
+
+    private void countdown(long millies, int flags) {
+        synchronized (lock) {
+            if (countdownChanged ? millies == countdown && flags == countdownFlags
+                    : millies == sentCountdown && flags == countdownFlags) return;
+            countdown = millies;
+            countdownFlags = flags;
+            countdownChanged = true;
+        }
+        signal();
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (ui != null) ui.setFreeze(player, millies);
+        synchronized (lock) {
+            freezes[player] = Math.max(0, millies);
+            freezeChanged[player] = true;
+            freezesChanged = true;
+        }
+        signal();
+    }
+
+    @Override
+    public void setFreezeDeadline(int player, long untilMillis) {
+        if (ui != null) ui.setFreezeDeadline(player, untilMillis);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (ui != null) ui.setScore(player, score);
+        synchronized (lock) {
+            if (score == scores[player]) return;
+            append(SCORE, 2, player, zigzag(score - scores[player]));
+            scores[player] = score;
+        }
+        signal();
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (ui != null) ui.announceWinner(players);
+        synchronized (lock) {
+            winners = players.clone();
+            log = room(log, 1 + MAX_VARINT * (1 + players.length));
+            log.put(WINNERS);
+            putVarint(log, players.length);
+            for (int player : players) putVarint(log, player);
+        }
+        signal();
+    }
+
+    @Override
+    public void dispose() {
+        if (ui != null) ui.dispose();
+        close();
+    }
+}
@@ -0,0 +1,208 @@
+package bguspl.set.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+import static bguspl.set.server.SpectatorFrames.*;
+
+/**
+ * The game as a spectator sees it, rebuilt from the frames of a spectator stream (see SpectatorFrames).
+ * Usage: SpectatorView port [host] (prints the table of a remote game once a second)
+ */
+public class SpectatorView {
+
+    private int rows;
+    private int columns;
+    private int[] cards = new int[0];
+    private boolean[][] tokens = new boolean[0][0];
+    private int[] scores = new int[0];
+    private long[] freezes = new long[0];
+    private long countdown;
+    private int countdownFlags;
+    private int[] winners = new int[0];
+    private long frames;
+    private long snapshots;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = Integer.parseInt(args[0]);
+        String host = args.length > 1 ? args[1] : "localhost";
+        SpectatorView view = new SpectatorView();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port))) {
+            long next = System.currentTimeMillis();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                view.apply(buffer);
+                buffer.compact();
+                if (System.currentTimeMillis() >= next) {
+                    System.out.println(view);
+                    next += 1000;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies all the complete frames in the buffer (an incomplete frame at its end is left in it).
+     *
+     * @param buffer - the frames (in read mode).
+     */
+    public void apply(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            try {
+                applyFrame(buffer);
+                ++frames;
+            } catch (BufferUnderflowException e) {
+                buffer.position(start);
+                return;
+            }
+        }
+    }
+
+    private void applyFrame(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case SNAPSHOT:
+                snapshot(buffer);
+                break;
+            case CARD_PLACED: {
+                int slot = (int) getVarint(buffer);
+                cards[slot] = (int) getVarint(buffer);
+                break;
+            }
+            case CARD_REMOVED:
+                cards[(int) getVarint(buffer)] = -1;
+                break;
+            case TOKEN_PLACED:
+            case TOKEN_REMOVED: {
+                int player = (int) getVarint(buffer);
+                tokens[(int) getVarint(buffer)][player] = type == TOKEN_PLACED;
+                break;
+            }
+            case SLOT_CLEARED:
+                Arrays.fill(tokens[(int) getVarint(buffer)], false);
+                break;
+            case ALL_CLEARED:
+                for (boolean[] slot : tokens) Arrays.fill(slot, false);
+                break;
+            case SCORE: {
+                int player = (int) getVarint(buffer);
+                scores[player] += (int) unzigzag(getVarint(buffer));
+                break;
+            }
+            case FREEZE: {
+                int player = (int) getVarint(buffer);
+                freezes[player] = getVarint(buffer);
+                break;
+            }
+            case COUNTDOWN:
+                long delta = unzigzag(getVarint(buffer));
+                countdownFlags = (int) getVarint(buffer);
+                countdown += delta;
+                break;
+            case WINNERS:
+                int[] players = new int[(int) getVarint(buffer)];
+                for (int i = 0; i < players.length; ++i) players[i] = (int) getVarint(buffer);
+                winners = players;
+                break;
+            default:
+                throw new IllegalStateException("unknown spectator frame type " + type);
+        }
+    }
+
+    /**
+     * Reads a snapshot into new state, so a snapshot cut short by the end of the buffer changes nothing.
+     */
+    private void snapshot(ByteBuffer buffer) {
+        int rows = (int) getVarint(buffer);
+        int columns = (int) getVarint(buffer);
+        int players = (int) getVarint(buffer);
+        int[] cards = new int[rows * columns];
+        for (int slot = 0; slot < cards.length; ++slot) cards[slot] = (int) getVarint(buffer) - 1;
+        boolean[][] tokens = new boolean[cards.length][players];
+        for (long i = getVarint(buffer); i > 0; --i) {
+            int player = (int) getVarint(buffer);
+            tokens[(int) getVarint(buffer)][player] = true;
+        }
+        int[] scores = new int[players];
+        long[] freezes = new long[players];
+        for (int player = 0; player < players; ++player) {
+            scores[player] = (int) getVarint(buffer);
+            freezes[player] = getVarint(buffer);
+        }
+        long countdown = unzigzag(getVarint(buffer));
+        int countdownFlags = (int) getVarint(buffer);
+        int[] winners = new int[(int) getVarint(buffer)];
+        for (int i = 0; i < winners.length; ++i) winners[i] = (int) getVarint(buffer);
+
+        this.rows = rows;
+        this.columns = columns;
+        this.cards = cards;
+        this.tokens = tokens;
+        this.scores = scores;
+        this.freezes = freezes;
+        this.countdown = countdown;
+        this.countdownFlags = countdownFlags;
+        this.winners = winners;
+        ++snapshots;
+    }
+
+    public int card(int slot) {
+        return cards[slot];
+    }
+
+    public boolean hasToken(int player, int slot) {
+        return tokens[slot][player];
+    }
+
+    public int score(int player) {
+        return scores[player];
+    }
+
+    public long freeze(int player) {
+        return freezes[player];
+    }
+
+    public long countdown() {
+        return countdown;
+    }
+
+    public int countdownFlags() {
+        return countdownFlags;
+    }
+
+    public int[] winners() {
+        return winners.clone();
+    }
+
+    /**
+     * @return - the number of frames applied (including snapshots).
+     */
+    public long frames() {
+        return frames;
+    }
+
+    public long snapshots() {
+        return snapshots;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("countdown=%.1fs%s scores=%s",
+                countdown / 1000.0, (countdownFlags & WARN) != 0 ? " (warning)" : "", Arrays.toString(scores)));
+        for (int row = 0; row < rows; ++row) {
+            sb.append(System.lineSeparator());
+            for (int column = 0; column < columns; ++column) {
+                int card = cards[row * columns + column];
+                sb.append(card < 0 ? "   ." : String.format("%4d", card));
+            }
+        }
+        if (winners.length > 0) sb.append(System.lineSeparator()).append("winners: ").append(Arrays.toString(winners));
+        return sb.toString();
+    }
+}
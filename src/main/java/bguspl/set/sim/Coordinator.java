@@ -0,0 +1,305 @@
+package bguspl.set.sim;
+
+import bguspl.set.Config;
+import bguspl.set.LatencyHistogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Plays headless games on several worker JVMs (see {@link Worker}) on the same host and merges their statistics.
+ * Usage: Coordinator [games] [config file] [Workers=n] [Batch=n] [Key=Value ...]
+ * The coordinator listens on a loopback port, spawns the workers and hands out batches of games to whichever worker
+ * is free. The results stream back game by game, so when a worker dies only the games of its batch it did not
+ * report are given to the other workers. Every worker plays one game at a time (the event loop engine in virtual
+ * time), so the throughput grows with the number of workers up to the number of cores. The other key/value pairs
+ * override the configuration file.
+ */
+public class Coordinator {
+
+    private static final int DEFAULT_GAMES = 100;
+    private static final int DEFAULT_BATCH = 10;
+    private static final int CONNECT_TIMEOUT_MILLIS = 30000;
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * A batch of games handed out to a worker.
+     */
+    private static class Batch {
+        final int id;
+        final int first;
+        final int games;
+        int reported;
+
+        /**
+         * @param first - the number of the first game of the batch in the series (the games are seeded by it).
+         */
+        Batch(int id, int first, int games) {
+            this.id = id;
+            this.first = first;
+            this.games = games;
+        }
+    }
+
+    private final Logger logger;
+    private final Properties properties;
+    private final int games;
+    private final int workers;
+    private final int batchSize;
+
+    private final BlockingQueue<Batch> pending = new LinkedBlockingQueue<>();
+    private final AtomicInteger batchIds = new AtomicInteger();
+    private final List<Process> processes = new CopyOnWriteArrayList<>();
+
+    /**
+     * The number of games whose results did not arrive yet.
+     */
+    private final AtomicInteger remaining;
+
+    private final LatencyHistogram durations = new LatencyHistogram();
+    private long gameMillis;
+    private long claims;
+    private long points;
+    private long penalties;
+    private int reassigned;
+    private volatile String failure;
+    private long elapsedNanos;
+
+    /**
+     * @param logger     - the logger of the coordinator.
+     * @param properties - the game configuration sent to the workers.
+     * @param games      - the number of games to play.
+     * @param workers    - the number of worker processes.
+     * @param batchSize  - the number of games handed out to a worker at once.
+     */
+    public Coordinator(Logger logger, Properties properties, int games, int workers, int batchSize) {
+        if (workers < 1) throw new IllegalArgumentException("at least one worker is needed");
+        if (batchSize < 1) throw new IllegalArgumentException("the batch size must be positive");
+        this.logger = logger;
+        this.properties = HeadlessGame.headless(properties);
+        this.games = games;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        remaining = new AtomicInteger(games);
+        // fail fast on a configuration the workers cannot play, instead of in every worker
+        new HeadlessGame(properties);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Logger logger = Logger.getLogger("SetGameCoordinator");
+        int games = DEFAULT_GAMES;
+        String configFile = "config.properties";
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            if (arg.contains("=")) {
+                String[] pair = arg.split("=", 2);
+                overrides.setProperty(pair[0].trim(), pair[1].trim());
+            } else if (arg.matches("\\d+")) {
+                games = Integer.parseInt(arg);
+            } else {
+                configFile = arg;
+            }
+        }
+        int workers = Integer.parseInt(overrides.getProperty("Workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int batch = Integer.parseInt(overrides.getProperty("Batch", String.valueOf(DEFAULT_BATCH)));
+        overrides.remove("Workers");
+        overrides.remove("Batch");
+
+        Properties properties = Config.loadProperties(configFile, logger);
+        properties.setProperty("VirtualTime", "True");
+        properties.setProperty("ExecutionEngine", "EventLoop");
+        properties.putAll(overrides);
+
+        Coordinator coordinator = new Coordinator(logger, properties, games, workers, batch);
+        coordinator.run();
+        System.out.println(coordinator.report());
+    }
+
+    /**
+     * Spawns the workers, plays all the games on them and waits for the workers to exit.
+     *
+     * @throws IOException           - if the workers could not be started or did not connect.
+     * @throws IllegalStateException - if a game failed on a worker, or all the workers died before the games ended.
+     * @throws InterruptedException  - if interrupted while waiting for the workers.
+     */
+    public void run() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        for (int played = 0; played < games; played += batchSize)
+            pending.add(new Batch(batchIds.getAndIncrement(), played, Math.min(batchSize, games - played)));
+
+        String config = config();
+        List<Thread> handlers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            for (int i = 0; i < workers; ++i)
+                processes.add(spawn(server.getLocalPort()));
+            for (int i = 0; i < workers; ++i) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    if (i == 0) throw e;
+                    logger.warning("only " + i + " of " + workers + " workers connected");
+                    break;
+                }
+                Thread handler = new Thread(() -> serve(socket, config), "coordinator-worker-" + handlers.size());
+                handler.start();
+                handlers.add(handler);
+            }
+            for (Thread handler : handlers) handler.join();
+        } finally {
+            for (Process process : processes) {
+                if (!process.waitFor(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) process.destroyForcibly();
+            }
+            elapsedNanos = System.nanoTime() - start;
+        }
+        if (failure != null) throw new IllegalStateException(failure);
+        if (remaining.get() > 0) throw new IllegalStateException("all the workers died with " + remaining + " games left");
+    }
+
+    /**
+     * Starts a worker JVM with the class path of this one.
+     */
+    private Process spawn(int port) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Worker.class.getName(), String.valueOf(port))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /**
+     * @return - the CONFIG message, the game configuration in properties format.
+     */
+    private String config() throws IOException {
+        StringWriter config = new StringWriter();
+        properties.store(config, null);
+        return "CONFIG\n" + config + "END";
+    }
+
+    /**
+     * Feeds batches to a single worker until all the games are played or the worker dies.
+     */
+    private void serve(Socket socket, String config) {
+        Batch batch = null;
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), false, StandardCharsets.UTF_8)) {
+            out.println(config);
+            while (remaining.get() > 0 && failure == null) {
+                batch = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == null) continue;
+                out.println("BATCH " + batch.id + " " + batch.first + " " + batch.games);
+                out.flush();
+                if (!play(batch, in)) return;
+                batch = null;
+            }
+            out.println("STOP");
+        } catch (IOException e) {
+            logger.warning("lost a worker: " + e.getMessage());
+        } catch (InterruptedException ignored) {
+        } finally {
+            if (batch != null && batch.reported < batch.games) reassign(batch);
+        }
+    }
+
+    /**
+     * Reads the results of a batch until its DONE message.
+     *
+     * @return - false if the batch failed on the worker.
+     * @throws IOException - if the worker died before the batch was done.
+     */
+    private boolean play(Batch batch, BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] message = line.split(" ", 3);
+            if (Integer.parseInt(message[1]) != batch.id) throw new IOException("unexpected message: " + line);
+            switch (message[0]) {
+                case "RESULT":
+                    record(GameResult.decode(message[2]));
+                    batch.reported++;
+                    break;
+                case "DONE":
+                    return true;
+                case "ERROR":
+                    synchronized (this) {
+                        if (failure == null) failure = "a game failed on a worker: " + message[2];
+                    }
+                    batch.reported = batch.games;
+                    return false;
+                default:
+                    throw new IOException("unexpected message: " + line);
+            }
+        }
+        throw new IOException("the worker closed the connection in the middle of batch " + batch.id);
+    }
+
+    /**
+     * Hands out the unreported games of a batch of a dead worker as a new batch (a worker plays the games of a batch
+     * in order, so they are the last ones, and keep their numbers).
+     */
+    private synchronized void reassign(Batch batch) {
+        reassigned += batch.games - batch.reported;
+        pending.add(new Batch(batchIds.getAndIncrement(), batch.first + batch.reported, batch.games - batch.reported));
+    }
+
+    private synchronized void record(GameResult result) {
+        durations.record(result.durationNanos);
+        gameMillis += result.gameMillis;
+        claims += result.claims;
+        points += result.points;
+        penalties += result.penalties;
+        remaining.decrementAndGet();
+    }
+
+    /**
+     * Kills a worker process (to exercise the reassignment of its games).
+     */
+    void kill(int worker) {
+        processes.get(worker).destroyForcibly();
+    }
+
+    /**
+     * @return - the merged statistics of all the workers.
+     */
+    public synchronized String report() {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("workers: %d, games: %d in %.2fs (%.2f games/s), reassigned games: %d%n",
+                workers, durations.count(), seconds, durations.count() / seconds, reassigned)
+                + String.format("claims: %d (%.1f claims/s), points: %d, penalties: %d, game time: %.1fs%n",
+                claims, claims / seconds, points, penalties, gameMillis / 1e3)
+                + String.format("game duration: mean=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                durations.mean() / 1e6, durations.percentile(50) / 1e6, durations.percentile(90) / 1e6,
+                durations.percentile(99) / 1e6, durations.max() / 1e6);
+    }
+
+    public synchronized long games() {
+        return durations.count();
+    }
+
+    public synchronized int reassigned() {
+        return reassigned;
+    }
+
+    public synchronized long claims() {
+        return claims;
+    }
+}
@@ -0,0 +1,80 @@
+package bguspl.set.sim;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The outcome of a single headless game.
+ */
+public class GameResult {
+
+    /**
+     * The wall clock duration of the game in nanoseconds.
+     */
+    public final long durationNanos;
+
+    /**
+     * The duration of the game on the game's clock in milliseconds (longer than the wall clock time in virtual time).
+     */
+    public final long gameMillis;
+
+    /**
+     * The final score of each player.
+     */
+    private final int[] scores;
+
+    /**
+     * The number of sets the dealer checked, and how many of them were legal (points) or not (penalties).
+     */
+    public final int claims;
+    public final int points;
+    public final int penalties;
+
+    public GameResult(long durationNanos, long gameMillis, int[] scores, int claims, int points, int penalties) {
+        this.durationNanos = durationNanos;
+        this.gameMillis = gameMillis;
+        this.scores = scores.clone();
+        this.claims = claims;
+        this.points = points;
+        this.penalties = penalties;
+    }
+
+    public int score(int player) {
+        return scores[player];
+    }
+
+    public int players() {
+        return scores.length;
+    }
+
+    /**
+     * @return - the ids of the players with the highest score.
+     */
+    public int[] winners() {
+        int max = Arrays.stream(scores).max().orElse(0);
+        return IntStream.range(0, scores.length).filter(i -> scores[i] == max).toArray();
+    }
+
+    /**
+     * @return - the result as a single line of space separated fields, the inverse of {@link #decode(String)}.
+     */
+    String encode() {
+        return durationNanos + " " + gameMillis + " " + claims + " " + points + " " + penalties + " "
+                + Arrays.stream(scores).mapToObj(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    static GameResult decode(String line) {
+        String[] fields = line.split(" ");
+        int[] scores = fields.length < 6 || fields[5].isEmpty() ? new int[0]
+                : Arrays.stream(fields[5].split(",")).mapToInt(Integer::parseInt).toArray();
+        return new GameResult(Long.parseLong(fields[0]), Long.parseLong(fields[1]), scores,
+                Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("duration=%.1fms game time=%.1fs claims=%d points=%d penalties=%d scores=%s",
+                durationNanos / 1e6, gameMillis / 1e3, claims, points, penalties, Arrays.toString(scores));
+    }
+}
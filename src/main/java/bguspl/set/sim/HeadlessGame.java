@@ -0,0 +1,122 @@
+package bguspl.set.sim;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameLoop;
+import bguspl.set.GameRandom;
+import bguspl.set.GameThreads;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import bguspl.set.monitor.GameMetrics;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A single game played by computer players only, without a user interface, table delays, hints or log output.
+ */
+public class HeadlessGame {
+
+    private final Config config;
+    private final Logger logger;
+
+    /**
+     * @param properties - the game configuration (the headless settings override it, see headless).
+     * @throws IllegalArgumentException - if the game has no computer players (it would never end).
+     */
+    public HeadlessGame(Properties properties) {
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        config = new Config(logger, headless(properties));
+        if (config.players == 0) throw new IllegalArgumentException("a headless game needs computer players");
+    }
+
+    /**
+     * @param properties - a game configuration.
+     * @return - a copy of the configuration with the settings of a headless game.
+     */
+    public static Properties headless(Properties properties) {
+        Properties headless = new Properties();
+        headless.putAll(properties);
+        headless.setProperty("LogLevel", "OFF");
+        headless.setProperty("HumanPlayers", "0");
+        headless.setProperty("Hints", "False");
+        headless.setProperty("TableDelaySeconds", "0");
+        headless.setProperty("EndGamePauseSeconds", "0");
+        return headless;
+    }
+
+    /**
+     * @param properties - a game configuration.
+     * @param game       - the number of the game in a series of games played from the configuration.
+     * @return - the configuration of the game: with a seed of its own if the configuration is seeded (see
+     * GameRandom::gameSeed), so the games of a series differ but every run of the series plays the same games.
+     */
+    public static Properties seeded(Properties properties, long game) {
+        String seed = properties.getProperty("Seed", "").trim();
+        if (seed.isEmpty())
+            return properties;
+        Properties seeded = new Properties();
+        seeded.putAll(properties);
+        seeded.setProperty("Seed", Long.toString(GameRandom.gameSeed(Long.parseLong(seed), game)));
+        return seeded;
+    }
+
+    public Config config() {
+        return config;
+    }
+
+    /**
+     * Plays the game to its end.
+     *
+     * @return - the result of the game.
+     * @throws InterruptedException - if interrupted while waiting for the game to end.
+     */
+    public GameResult play() throws InterruptedException {
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceHeadless(), util);
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        GameMetrics metrics = config.jmxMetrics ? new GameMetrics(logger, dealer, players.length).register() : null;
+        long start = System.nanoTime();
+        long gameStart = env.clock.millis();
+        if (config.eventLoop) {
+            // the whole game runs on the calling thread (which takes part in the game's clock while it does)
+            GameLoop loop = new GameLoop(logger, env.clock);
+            loop.execute(() -> dealer.start(loop));
+            env.clock.register(Thread.currentThread());
+            try {
+                loop.run();
+            } finally {
+                env.clock.deregister();
+            }
+        } else {
+            Thread gameThread = GameThreads.newThread(env, dealer, "dealer");
+            gameThread.start();
+            try {
+                gameThread.join();
+            } catch (InterruptedException e) {
+                dealer.terminate();
+                gameThread.join();
+                if (metrics != null) metrics.unregister();
+                throw e;
+            }
+        }
+        long duration = System.nanoTime() - start;
+        long gameMillis = env.clock.millis() - gameStart;
+        if (metrics != null) metrics.unregister();
+
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++)
+            scores[i] = players[i].score();
+        return new GameResult(duration, gameMillis, scores, dealer.claims(), dealer.points(), dealer.penalties());
+    }
+}
@@ -0,0 +1,93 @@
+package bguspl.set.sim;
+
+import bguspl.set.Config;
+import bguspl.set.LatencyHistogram;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Plays many headless games back to back and reports the throughput and the game durations.
+ * Usage: Simulation [games] [config file] [Key=Value ...]
+ * The key/value pairs override the configuration file (e.g. ComputerPlayers=8 TurnTimeoutSeconds=5).
+ * The games run in virtual time unless VirtualTime=False is given.
+ */
+public class Simulation {
+
+    private static final int DEFAULT_GAMES = 100;
+
+    private final Properties properties;
+    private final int games;
+
+    private final LatencyHistogram durations = new LatencyHistogram();
+    private long claims;
+    private long points;
+    private long penalties;
+    private long elapsedNanos;
+
+    public Simulation(Properties properties, int games) {
+        this.properties = properties;
+        this.games = games;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Logger logger = Logger.getLogger("SetGameSimulation");
+        int games = DEFAULT_GAMES;
+        String configFile = "config.properties";
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            if (arg.contains("=")) {
+                String[] pair = arg.split("=", 2);
+                overrides.setProperty(pair[0].trim(), pair[1].trim());
+            } else if (arg.matches("\\d+")) {
+                games = Integer.parseInt(arg);
+            } else {
+                configFile = arg;
+            }
+        }
+        Properties properties = Config.loadProperties(configFile, logger);
+        properties.setProperty("VirtualTime", "True");
+        properties.putAll(overrides);
+
+        Simulation simulation = new Simulation(properties, games);
+        simulation.run();
+        System.out.println(simulation.report());
+    }
+
+    /**
+     * Plays all the games.
+     *
+     * @throws InterruptedException - if interrupted while a game is played.
+     */
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < games; ++i) {
+            GameResult result = new HeadlessGame(HeadlessGame.seeded(properties, i)).play();
+            durations.record(result.durationNanos);
+            claims += result.claims;
+            points += result.points;
+            penalties += result.penalties;
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * @return - the throughput and game duration report.
+     */
+    public String report() {
+        double seconds = elapsedNanos / 1e9;
+        return String.format("games: %d in %.2fs (%.2f games/s)%n", durations.count(), seconds, durations.count() / seconds)
+                + String.format("claims: %d (%.1f claims/s), points: %d, penalties: %d%n", claims, claims / seconds, points, penalties)
+                + String.format("game duration: mean=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                durations.mean() / 1e6, durations.percentile(50) / 1e6, durations.percentile(90) / 1e6,
+                durations.percentile(99) / 1e6, durations.max() / 1e6);
+    }
+
+    public long games() {
+        return durations.count();
+    }
+
+    public long claims() {
+        return claims;
+    }
+}
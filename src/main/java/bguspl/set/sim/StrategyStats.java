@@ -0,0 +1,116 @@
+package bguspl.set.sim;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The running statistics of a single tournament entry (a strategy, optionally with its own key rate), updated
+ * incrementally as games finish. Means and variances use Welford's online algorithm, and the confidence intervals
+ * are the 95% normal approximation.
+ */
+public class StrategyStats {
+
+    private static final double Z95 = 1.96;
+
+    public final String entry;
+
+    private long games;
+
+    /**
+     * The share of the win in each game (1 for a sole winner, 1/k for a k-way tie, 0 otherwise).
+     */
+    private final Welford wins = new Welford();
+    private final Welford scores = new Welford();
+
+    /**
+     * The number of games ending with each score.
+     */
+    private final TreeMap<Integer, Long> scoreCounts = new TreeMap<>();
+
+    public StrategyStats(String entry) {
+        this.entry = entry;
+    }
+
+    /**
+     * Records the outcome of a single game of the entry.
+     *
+     * @param score    - the final score of the entry's seat.
+     * @param winShare - the share of the win (0 if the seat did not win).
+     */
+    public void record(int score, double winShare) {
+        ++games;
+        wins.add(winShare);
+        scores.add(score);
+        scoreCounts.merge(score, 1L, Long::sum);
+    }
+
+    public long games() {
+        return games;
+    }
+
+    public double winRate() {
+        return wins.mean;
+    }
+
+    /**
+     * @return - the half width of the 95% confidence interval of the win rate.
+     */
+    public double winRateMargin() {
+        return wins.margin();
+    }
+
+    public double meanScore() {
+        return scores.mean;
+    }
+
+    /**
+     * @return - the half width of the 95% confidence interval of the mean score.
+     */
+    public double meanScoreMargin() {
+        return scores.margin();
+    }
+
+    public double scoreStdDev() {
+        return Math.sqrt(scores.variance());
+    }
+
+    /**
+     * @return - the number of games ending with each score (ordered by score).
+     */
+    public Map<Integer, Long> scoreDistribution() {
+        return new TreeMap<>(scoreCounts);
+    }
+
+    public int minScore() {
+        return scoreCounts.isEmpty() ? 0 : scoreCounts.firstKey();
+    }
+
+    public int maxScore() {
+        return scoreCounts.isEmpty() ? 0 : scoreCounts.lastKey();
+    }
+
+    /**
+     * An online mean and variance.
+     */
+    private static class Welford {
+
+        private long n;
+        private double mean;
+        private double m2;
+
+        void add(double x) {
+            ++n;
+            double delta = x - mean;
+            mean += delta / n;
+            m2 += delta * (x - mean);
+        }
+
+        double variance() {
+            return n > 1 ? m2 / (n - 1) : 0;
+        }
+
+        double margin() {
+            return n > 1 ? Z95 * Math.sqrt(variance() / n) : 0;
+        }
+    }
+}
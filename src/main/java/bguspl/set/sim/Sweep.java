@@ -0,0 +1,293 @@
+package bguspl.set.sim;
+
+import bguspl.set.Config;
+import bguspl.set.LatencyHistogram;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Runs headless games over the cartesian product of ranges of configuration keys and writes a row of throughput
+ * and game length metrics for every point of the sweep.
+ * Usage: Sweep [games per point] [config file] Results=file.csv [Threads=n] [Key=values ...]
+ * The values of a key are a comma separated list, where an item may be a range start..end or start..end:step
+ * (e.g. TurnTimeoutSeconds=10..60:10 Rows=3,4 ComputerPlayers=2..6). A key with a single value just overrides the
+ * configuration file. The games run in virtual time on the event loop engine unless the sweep sets otherwise, at
+ * most Threads (default: the number of cores) at once. Every point is appended to the results file as soon as all
+ * of its games are over, and points already in the file are skipped, so an interrupted sweep resumes where it
+ * stopped when it is run again with the same arguments. The throughput columns are per worker thread (the games
+ * and claims of a point over the total wall clock time of its games), since the points share the workers.
+ */
+public class Sweep {
+
+    private static final int DEFAULT_GAMES = 10;
+
+    private static final String POINT_COLUMN = "point";
+    private static final String[] METRIC_COLUMNS = {"games", "busy_s", "games_per_s", "claims_per_s",
+            "wall_ms_mean", "wall_ms_p50", "wall_ms_p99", "game_s_mean", "game_s_max",
+            "claims_mean", "points_mean", "penalties_mean"};
+
+    private final Properties base;
+    private final Map<String, List<String>> dimensions;
+    private final int gamesPerPoint;
+    private final int threads;
+    private final Path results;
+
+    /**
+     * @param base          - the configuration shared by all the points.
+     * @param dimensions    - the values of every swept key (in column order).
+     * @param gamesPerPoint - the number of games played at every point.
+     * @param threads       - the maximum number of games played at once.
+     * @param results       - the results file (appended to, and read to resume).
+     */
+    public Sweep(Properties base, Map<String, List<String>> dimensions, int gamesPerPoint, int threads, Path results) {
+        this.base = base;
+        this.dimensions = new LinkedHashMap<>(dimensions);
+        this.gamesPerPoint = gamesPerPoint;
+        this.threads = threads;
+        this.results = results;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        Logger logger = Logger.getLogger("SetGameSweep");
+        int games = DEFAULT_GAMES;
+        String configFile = "config.properties";
+        Map<String, List<String>> dimensions = new LinkedHashMap<>();
+        Properties overrides = new Properties();
+        String results = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.contains("=")) {
+                String[] pair = arg.split("=", 2);
+                String key = pair[0].trim();
+                if (key.equals("Results")) results = pair[1].trim();
+                else if (key.equals("Threads")) threads = Integer.parseInt(pair[1].trim());
+                else {
+                    List<String> values = values(pair[1]);
+                    if (values.size() > 1) dimensions.put(key, values);
+                    else overrides.setProperty(key, values.get(0));
+                }
+            } else if (arg.matches("\\d+")) {
+                games = Integer.parseInt(arg);
+            } else {
+                configFile = arg;
+            }
+        }
+        if (results == null) {
+            System.err.println("usage: Sweep [games per point] [config file] Results=file.csv [Threads=n] [Key=values ...]");
+            return;
+        }
+
+        Properties properties = Config.loadProperties(configFile, logger);
+        properties.setProperty("ExecutionEngine", "EventLoop");
+        properties.setProperty("VirtualTime", "True");
+        properties.putAll(overrides);
+        new Sweep(properties, dimensions, games, threads, Paths.get(results)).run(System.out);
+    }
+
+    /**
+     * @param spec - a comma separated list of values and ranges (start..end or start..end:step).
+     * @return - the values, with the ranges expanded.
+     */
+    static List<String> values(String spec) {
+        List<String> values = new ArrayList<>();
+        for (String item : spec.split(",")) {
+            item = item.trim();
+            int dots = item.indexOf("..");
+            if (dots < 0) {
+                values.add(item);
+                continue;
+            }
+            String[] endAndStep = item.substring(dots + 2).split(":", 2);
+            BigDecimal start = new BigDecimal(item.substring(0, dots).trim());
+            BigDecimal end = new BigDecimal(endAndStep[0].trim());
+            BigDecimal step = endAndStep.length > 1 ? new BigDecimal(endAndStep[1].trim()) : BigDecimal.ONE;
+            if (step.signum() <= 0) throw new IllegalArgumentException("the step of a range must be positive: " + item);
+            for (BigDecimal value = start; value.compareTo(end) <= 0; value = value.add(step))
+                values.add(value.stripTrailingZeros().toPlainString());
+        }
+        return values;
+    }
+
+    /**
+     * @return - all the points of the sweep (the cartesian product of the dimensions, the last key varying fastest).
+     */
+    List<Map<String, String>> points() {
+        List<Map<String, String>> points = new ArrayList<>();
+        points.add(new LinkedHashMap<>());
+        for (Map.Entry<String, List<String>> dimension : dimensions.entrySet()) {
+            List<Map<String, String>> expanded = new ArrayList<>();
+            for (Map<String, String> point : points)
+                for (String value : dimension.getValue()) {
+                    Map<String, String> next = new LinkedHashMap<>(point);
+                    next.put(dimension.getKey(), value);
+                    expanded.add(next);
+                }
+            points = expanded;
+        }
+        return points;
+    }
+
+    private static String id(Map<String, String> point) {
+        return point.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Plays the games of every point that is not in the results file yet.
+     *
+     * @param progress - where to print the progress (null for none).
+     * @return - the number of points played.
+     */
+    public int run(PrintStream progress) throws IOException, InterruptedException, ExecutionException {
+        List<String> header = header();
+        Set<String> done = finishedPoints(header);
+        List<Map<String, String>> points = points().stream().filter(p -> !done.contains(id(p))).collect(Collectors.toList());
+        if (progress != null && !done.isEmpty())
+            progress.println("resuming: " + done.size() + " points already done, " + points.size() + " left");
+
+        AtomicInteger workers = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "sweep-" + workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (BufferedWriter out = Files.newBufferedWriter(results, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (Files.size(results) == 0) {
+                out.write(String.join(",", header));
+                out.newLine();
+                out.flush();
+            } else if (!endsWithNewLine()) {
+                // the previous run crashed in the middle of a row: end it, so it is ignored when resuming
+                out.newLine();
+            }
+            List<CompletableFuture<Void>> rows = new ArrayList<>();
+            AtomicInteger finished = new AtomicInteger();
+            for (Map<String, String> point : points) {
+                Properties properties = new Properties();
+                properties.putAll(base);
+                point.forEach(properties::setProperty);
+                List<CompletableFuture<GameResult>> games = new ArrayList<>();
+                // the games of a point are seeded by their number (if the sweep is seeded), so they differ, and
+                // every point plays the same series of seeds
+                for (int i = 0; i < gamesPerPoint; ++i) {
+                    Properties game = HeadlessGame.seeded(properties, i);
+                    games.add(CompletableFuture.supplyAsync(() -> play(game), pool));
+                }
+                rows.add(CompletableFuture.allOf(games.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+                    String row = row(point, games.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+                    synchronized (out) {
+                        try {
+                            // a whole row per point, flushed at once, so a crash loses at most the unfinished points
+                            out.write(row);
+                            out.newLine();
+                            out.flush();
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }
+                    if (progress != null)
+                        progress.println(String.format("%d/%d %s", finished.incrementAndGet(), points.size(), id(point)));
+                }));
+            }
+            CompletableFuture.allOf(rows.toArray(new CompletableFuture<?>[0])).get();
+        } finally {
+            pool.shutdownNow();
+        }
+        return points.size();
+    }
+
+    private static GameResult play(Properties properties) {
+        try {
+            return new HeadlessGame(properties).play();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private List<String> header() {
+        List<String> header = new ArrayList<>();
+        header.add(POINT_COLUMN);
+        header.addAll(dimensions.keySet());
+        header.addAll(Arrays.asList(METRIC_COLUMNS));
+        return header;
+    }
+
+    /**
+     * @param header - the header of this sweep.
+     * @return - the ids of the points already in the results file.
+     * @throws IllegalStateException - if the results file belongs to a different sweep.
+     */
+    private Set<String> finishedPoints(List<String> header) throws IOException {
+        Set<String> done = new HashSet<>();
+        if (!Files.exists(results) || Files.size(results) == 0) return done;
+        List<String> lines = Files.readAllLines(results, StandardCharsets.UTF_8);
+        if (!lines.get(0).equals(String.join(",", header)))
+            throw new IllegalStateException("the results file " + results + " belongs to a different sweep: " + lines.get(0));
+        for (String line : lines.subList(1, lines.size()))
+            if (line.split(",").length == header.size()) done.add(line.substring(0, line.indexOf(',')));
+        return done;
+    }
+
+    private boolean endsWithNewLine() throws IOException {
+        byte[] content = Files.readAllBytes(results);
+        return content.length == 0 || content[content.length - 1] == '\n';
+    }
+
+    private String row(Map<String, String> point, List<GameResult> games) {
+        LatencyHistogram wall = new LatencyHistogram();
+        long claims = 0, points = 0, penalties = 0, gameMillis = 0, maxGameMillis = 0, busyNanos = 0;
+        for (GameResult game : games) {
+            busyNanos += game.durationNanos;
+            wall.record(game.durationNanos);
+            claims += game.claims;
+            points += game.points;
+            penalties += game.penalties;
+            gameMillis += game.gameMillis;
+            maxGameMillis = Math.max(maxGameMillis, game.gameMillis);
+        }
+        int n = games.size();
+        double seconds = busyNanos / 1e9;
+        List<String> row = new ArrayList<>();
+        row.add(id(point));
+        row.addAll(point.values());
+        row.add(Integer.toString(n));
+        row.add(String.format(Locale.ROOT, "%.3f", seconds));
+        row.add(String.format(Locale.ROOT, "%.2f", n / seconds));
+        row.add(String.format(Locale.ROOT, "%.1f", claims / seconds));
+        row.add(String.format(Locale.ROOT, "%.1f", wall.mean() / 1e6));
+        row.add(String.format(Locale.ROOT, "%.1f", wall.percentile(50) / 1e6));
+        row.add(String.format(Locale.ROOT, "%.1f", wall.percentile(99) / 1e6));
+        row.add(String.format(Locale.ROOT, "%.1f", gameMillis / 1e3 / n));
+        row.add(String.format(Locale.ROOT, "%.1f", maxGameMillis / 1e3));
+        row.add(String.format(Locale.ROOT, "%.1f", (double) claims / n));
+        row.add(String.format(Locale.ROOT, "%.2f", (double) points / n));
+        row.add(String.format(Locale.ROOT, "%.1f", (double) penalties / n));
+        return String.join(",", row);
+    }
+}
@@ -0,0 +1,269 @@
+package bguspl.set.sim;
+
+import bguspl.set.Config;
+import bguspl.set.rating.Leaderboard;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Plays a roster of computer player strategies against each other in many headless games, in parallel, and
+ * aggregates the win rates and scores of every roster entry as the games finish.
+ * Usage: Tournament [games] [config file] Roster=Seeker,Random:20,... [Threads=n] [Csv=file] [Json=file]
+ * [Leaderboard=directory] [Key=Value ...]
+ * Every roster entry takes a seat (a strategy name, optionally with its own key rate), and the seats rotate from
+ * game to game, so no entry keeps the advantage of a seat. Each game runs on a single thread (the event loop engine
+ * in virtual time) and at most Threads games (default: the number of cores) run at once, so the tournament keeps all
+ * the cores busy without oversubscribing them. With a Leaderboard directory, every game is also rated there (every
+ * seat by its roster entry). The other key/value pairs override the configuration file.
+ */
+public class Tournament {
+
+    private static final int DEFAULT_GAMES = 100;
+
+    private final Properties properties;
+    private final String[] roster;
+    private final int games;
+    private final int threads;
+
+    /**
+     * The statistics of every distinct roster entry, in roster order.
+     */
+    private final Map<String, StrategyStats> stats = new LinkedHashMap<>();
+
+    private long elapsedNanos;
+
+    private Leaderboard leaderboard;  // the leaderboard the games are rated on (null if none)
+
+    /**
+     * @param properties - the game configuration.
+     * @param roster     - the strategies playing (one seat each).
+     * @param games      - the number of games to play.
+     * @param threads    - the maximum number of games played at once.
+     */
+    public Tournament(Properties properties, String[] roster, int games, int threads) {
+        if (roster.length == 0) throw new IllegalArgumentException("the roster is empty");
+        this.properties = properties;
+        this.roster = roster.clone();
+        this.games = games;
+        this.threads = threads;
+        for (String entry : roster)
+            stats.computeIfAbsent(entry.trim(), StrategyStats::new);
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException, IOException {
+        Logger logger = Logger.getLogger("SetGameTournament");
+        int games = DEFAULT_GAMES;
+        String configFile = "config.properties";
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            if (arg.contains("=")) {
+                String[] pair = arg.split("=", 2);
+                overrides.setProperty(pair[0].trim(), pair[1].trim());
+            } else if (arg.matches("\\d+")) {
+                games = Integer.parseInt(arg);
+            } else {
+                configFile = arg;
+            }
+        }
+        String roster = (String) overrides.remove("Roster");
+        String threads = (String) overrides.remove("Threads");
+        String csv = (String) overrides.remove("Csv");
+        String json = (String) overrides.remove("Json");
+        String ratings = (String) overrides.remove("Leaderboard");
+        if (roster == null) {
+            System.err.println("usage: Tournament [games] [config file] Roster=Seeker,Random:20,... [Threads=n] [Csv=file] [Json=file] [Leaderboard=directory] [Key=Value ...]");
+            return;
+        }
+
+        Properties properties = Config.loadProperties(configFile, logger);
+        properties.putAll(overrides);
+        Tournament tournament = new Tournament(properties, roster.split(","), games,
+                threads != null ? Integer.parseInt(threads) : Runtime.getRuntime().availableProcessors());
+        Leaderboard leaderboard = ratings != null ? new Leaderboard(logger, Paths.get(ratings)) : null;
+        tournament.rankOn(leaderboard);
+        tournament.run(System.out);
+        System.out.println(tournament.report());
+        if (leaderboard != null) {
+            leaderboard.close();
+            System.out.println(leaderboard.games() + " rated games, top of the leaderboard:");
+            leaderboard.top(10).forEach(System.out::println);
+        }
+        if (csv != null) tournament.writeCsv(Paths.get(csv));
+        if (json != null) tournament.writeJson(Paths.get(json));
+    }
+
+    /**
+     * Rates every game the tournament plays from now on (null to stop).
+     */
+    public void rankOn(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Plays all the games, updating the statistics as games finish.
+     *
+     * @param progress - where to print the progress (null for none).
+     * @throws InterruptedException - if interrupted while waiting for the games.
+     * @throws ExecutionException   - if a game failed.
+     */
+    public void run(PrintStream progress) throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        AtomicInteger workers = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "tournament-" + workers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletionService<Game> completed = new ExecutorCompletionService<>(pool);
+            for (int game = 0; game < games; ++game) {
+                String[] seats = seats(game);
+                Properties gameProperties = HeadlessGame.seeded(gameProperties(seats), game);
+                completed.submit(() -> new Game(seats, new HeadlessGame(gameProperties).play()));
+            }
+            for (int done = 1; done <= games; ++done) {
+                record(completed.take().get());
+                if (progress != null && (done % Math.max(1, games / 10) == 0 || done == games)) {
+                    progress.println(String.format("%d/%d games: %s", done, games, standings()));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * @param game - the number of the game.
+     * @return - the roster entry of every seat, rotated by the game number.
+     */
+    String[] seats(int game) {
+        String[] seats = new String[roster.length];
+        for (int seat = 0; seat < seats.length; ++seat)
+            seats[seat] = roster[(seat + game) % roster.length].trim();
+        return seats;
+    }
+
+    private Properties gameProperties(String[] seats) {
+        Properties game = new Properties();
+        game.putAll(properties);
+        game.setProperty("ComputerPlayers", Integer.toString(seats.length));
+        game.setProperty("PlayerStrategies", String.join(",", seats));
+        game.setProperty("ExecutionEngine", "EventLoop");
+        game.setProperty("VirtualTime", "True");
+        return game;
+    }
+
+    private void record(Game game) {
+        int[] winners = game.result.winners();
+        if (leaderboard != null) {
+            int[] scores = new int[game.seats.length];
+            Arrays.setAll(scores, game.result::score);
+            leaderboard.record(game.seats, scores);
+        }
+        for (int seat = 0; seat < game.seats.length; ++seat) {
+            int player = seat;
+            boolean won = Arrays.stream(winners).anyMatch(w -> w == player);
+            stats.get(game.seats[seat]).record(game.result.score(seat), won ? 1.0 / winners.length : 0);
+        }
+    }
+
+    private String standings() {
+        return stats.values().stream()
+                .map(s -> String.format(Locale.ROOT, "%s %.1f%%", s.entry, 100 * s.winRate()))
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * @return - the statistics of every distinct roster entry.
+     */
+    public Map<String, StrategyStats> stats() {
+        return stats;
+    }
+
+    /**
+     * @return - a table of the win rates and scores of the roster entries.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT, "%d games in %.2fs on %d threads%n",
+                games, elapsedNanos / 1e9, threads));
+        report.append(String.format("%-16s %7s %18s %20s %9s%n", "entry", "seats", "win rate (95% CI)", "mean score (95% CI)", "min-max"));
+        for (StrategyStats s : stats.values())
+            report.append(String.format(Locale.ROOT, "%-16s %7d %9.1f%% +-%5.1f%% %12.2f +-%6.2f %5d-%d%n", s.entry, s.games(),
+                    100 * s.winRate(), 100 * s.winRateMargin(), s.meanScore(), s.meanScoreMargin(), s.minScore(), s.maxScore()));
+        return report.toString();
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("entry,seats,win_rate,win_rate_ci_low,win_rate_ci_high,mean_score,mean_score_ci_low,mean_score_ci_high,score_stddev,min_score,max_score");
+            for (StrategyStats s : stats.values())
+                out.println(String.format(Locale.ROOT, "%s,%d,%.4f,%.4f,%.4f,%.3f,%.3f,%.3f,%.3f,%d,%d", csvField(s.entry), s.games(),
+                        s.winRate(), s.winRate() - s.winRateMargin(), s.winRate() + s.winRateMargin(),
+                        s.meanScore(), s.meanScore() - s.meanScoreMargin(), s.meanScore() + s.meanScoreMargin(),
+                        s.scoreStdDev(), s.minScore(), s.maxScore()));
+        }
+    }
+
+    public void writeJson(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("{");
+            out.println(String.format(Locale.ROOT, "  \"games\": %d,", games));
+            out.println(String.format(Locale.ROOT, "  \"seconds\": %.3f,", elapsedNanos / 1e9));
+            out.println("  \"entries\": [");
+            int i = 0;
+            for (StrategyStats s : stats.values()) {
+                String distribution = s.scoreDistribution().entrySet().stream()
+                        .map(e -> "\"" + e.getKey() + "\": " + e.getValue())
+                        .collect(Collectors.joining(", "));
+                out.print(String.format(Locale.ROOT, "    {\"entry\": \"%s\", \"seats\": %d, "
+                                + "\"winRate\": %.4f, \"winRateCi\": [%.4f, %.4f], "
+                                + "\"meanScore\": %.3f, \"meanScoreCi\": [%.3f, %.3f], \"scoreStdDev\": %.3f, "
+                                + "\"scores\": {%s}}",
+                        s.entry.replace("\\", "\\\\").replace("\"", "\\\""), s.games(),
+                        s.winRate(), s.winRate() - s.winRateMargin(), s.winRate() + s.winRateMargin(),
+                        s.meanScore(), s.meanScore() - s.meanScoreMargin(), s.meanScore() + s.meanScoreMargin(),
+                        s.scoreStdDev(), distribution));
+                out.println(++i < stats.size() ? "," : "");
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    private static String csvField(String value) {
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    /**
+     * A finished game and the roster entry of every seat.
+     */
+    private static class Game {
+
+        private final String[] seats;
+        private final GameResult result;
+
+        private Game(String[] seats, GameResult result) {
+            this.seats = seats;
+            this.result = result;
+        }
+    }
+}
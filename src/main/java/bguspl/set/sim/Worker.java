@@ -0,0 +1,65 @@
+package bguspl.set.sim;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * A simulation worker process: connects to a coordinator on the local host, receives the game configuration and
+ * then batches of games, plays them one after the other and streams back the result of every game.
+ * Usage: Worker port
+ * <p>
+ * The protocol is line based. The coordinator sends CONFIG, the configuration (in properties format) and END,
+ * then any number of "BATCH id first count", and finally STOP. The games of a batch are numbered from first (their
+ * number in the whole series), and a seeded configuration gives every game the seed of its number (see
+ * HeadlessGame::seeded), so no two games of the series are the same whichever worker plays them. The worker answers every game with
+ * "RESULT id durationNanos gameMillis claims points penalties score,score,..." and every batch with "DONE id"
+ * (or "ERROR id message" if a game failed).
+ */
+public class Worker {
+
+    public static void main(String[] args) throws IOException {
+        int port = Integer.parseInt(args[0]);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), false, StandardCharsets.UTF_8)) {
+            Properties properties = readConfig(in);
+            String line;
+            while ((line = in.readLine()) != null && !line.equals("STOP")) {
+                String[] batch = line.split(" ");
+                if (!batch[0].equals("BATCH")) throw new IOException("unexpected message: " + line);
+                play(properties, batch[1], Integer.parseInt(batch[2]), Integer.parseInt(batch[3]), out);
+            }
+        }
+    }
+
+    private static Properties readConfig(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (!"CONFIG".equals(line)) throw new IOException("expected the configuration, got: " + line);
+        StringBuilder config = new StringBuilder();
+        while ((line = in.readLine()) != null && !line.equals("END"))
+            config.append(line).append('\n');
+        Properties properties = new Properties();
+        properties.load(new StringReader(config.toString()));
+        return properties;
+    }
+
+    private static void play(Properties properties, String id, int first, int count, PrintWriter out) {
+        try {
+            for (int i = 0; i < count; ++i) {
+                out.println("RESULT " + id + " " + new HeadlessGame(HeadlessGame.seeded(properties, first + i)).play().encode());
+                out.flush();
+            }
+            out.println("DONE " + id);
+        } catch (InterruptedException | RuntimeException e) {
+            out.println("ERROR " + id + " " + e);
+        }
+        out.flush();
+    }
+}
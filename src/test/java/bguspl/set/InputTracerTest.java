@@ -0,0 +1,77 @@
+package bguspl.set;
+
+import bguspl.set.ex.ActionRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputTracerTest {
+
+    @Test
+    void aTraceWaitsForItsRender() throws InterruptedException {
+        InputTracer tracer = new InputTracer(TestGame.logger(), 0.25);
+        long[] traces = new long[8];
+        for (int press = 0; press < traces.length; ++press)
+            traces[press] = tracer.begin();
+        assertNotEquals(InputTracer.NONE, traces[0]);
+        assertEquals(InputTracer.NONE, traces[1]);
+        assertNotEquals(InputTracer.NONE, traces[4]);
+        assertEquals(2, Arrays.stream(traces).filter(t -> t != InputTracer.NONE).count());
+
+        long trace = traces[0];
+        tracer.queued(trace);
+        tracer.dequeued(trace);
+        tracer.reached(InputTracer.Stage.LOCKED);
+        tracer.reached(InputTracer.Stage.UI_ENTERED);
+        assertEquals(trace, tracer.awaitRender());
+        tracer.reached(InputTracer.Stage.UI_RETURNED);
+        tracer.processed();
+        assertEquals(InputTracer.NONE, tracer.current());
+        assertEquals(0, tracer.completed(), "the trace completed before its token was painted");
+
+        Thread painter = new Thread(() -> tracer.rendered(trace));
+        painter.start();
+        painter.join();
+        assertEquals(1, tracer.completed());
+        assertEquals(1, tracer.span(InputTracer.Stage.RENDERED).count());
+        assertEquals(1, tracer.total().count());
+
+        // a key press that changes no token is counted apart
+        tracer.dequeued(traces[4]);
+        tracer.processed();
+        assertEquals(1, tracer.unchanged());
+        assertEquals(1, tracer.completed());
+    }
+
+    @Test
+    void clearingAQueueDropsItsTraces() {
+        InputTracer tracer = new InputTracer(TestGame.logger(), 1);
+        ActionRing ring = new ActionRing(3);
+        ring.offer(0, tracer.begin());
+        ring.offer(1);
+        ring.offer(2, tracer.begin());
+        assertEquals(3, ring.clear(tracer));
+        assertEquals(2, tracer.dropped());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void everyStageOfAGameIsTraced() {
+        TestGame game = new TestGame(TestGame.eventLoop(5, "InputTraceSampling", "1"));
+        assertNotNull(game.env.tracer);
+        game.play();
+
+        InputTracer tracer = game.env.tracer;
+        String report = tracer.report();
+        long completed = tracer.completed();
+        assertTrue(completed > 0, "no key press was traced to the table: " + report);
+        for (InputTracer.Stage stage : new InputTracer.Stage[]{InputTracer.Stage.QUEUED, InputTracer.Stage.DEQUEUED,
+                InputTracer.Stage.LOCKED, InputTracer.Stage.UI_ENTERED, InputTracer.Stage.UI_RETURNED})
+            assertEquals(completed, tracer.span(stage).count(), stage + " is missing from some traces");
+        assertEquals(0, tracer.span(InputTracer.Stage.RENDERED).count(), "a headless game rendered a token");
+        assertEquals(completed, game.dealer.latencies().keyToToken().count());
+        assertTrue(report.contains("table lock") && report.contains("total"));
+    }
+}
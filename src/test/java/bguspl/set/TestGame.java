@@ -0,0 +1,151 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * A game for the tests: the table, the dealer and the players of a game with a quiet logger and a headless user
+ * interface (unless the test brings its own), built from the properties the test sets over the defaults (four
+ * computer players, two seekers and two random ones, logging off). The game is either played to its end on the
+ * calling thread (the event loop, see play) or started on a game thread (see start).
+ */
+public class TestGame {
+
+    public static final long TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Creates the user interface of a game (before the game's environment exists).
+     */
+    @FunctionalInterface
+    public interface UserInterfaceFactory {
+        UserInterface create(Logger logger, Config config, Util util, Clock clock);
+    }
+
+    public final Logger logger;
+    public final Config config;
+    public final UtilImpl util;
+    public final Env env;
+    public final Table table;
+    public final Player[] players;
+    public final Dealer dealer;
+
+    public TestGame(Properties properties) {
+        this(properties, (logger, config, util, clock) -> new UserInterfaceHeadless());
+    }
+
+    public TestGame(Properties properties, UserInterfaceFactory ui) {
+        logger = logger();
+        config = new Config(logger, properties);
+        util = new UtilImpl(config);
+        Clock clock = config.virtualTime ? new VirtualClock() : SystemClock.INSTANCE;
+        env = new Env(logger, config, ui.create(logger, config, util, clock), util, clock);
+        table = new Table(env);
+        players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+    }
+
+    /**
+     * @return - a logger that prints nothing.
+     */
+    public static Logger logger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return logger;
+    }
+
+    /**
+     * @param overrides - property names and values, in pairs.
+     * @return - the properties of the tests' default game with the given overrides.
+     */
+    public static Properties properties(String... overrides) {
+        if (overrides.length % 2 != 0)
+            throw new IllegalArgumentException("a property without a value: " + overrides[overrides.length - 1]);
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "4");
+        properties.setProperty("PlayerStrategies", "Seeker,Seeker,Random,Random");
+        for (int i = 0; i < overrides.length; i += 2)
+            properties.setProperty(overrides[i], overrides[i + 1]);
+        return properties;
+    }
+
+    /**
+     * @return - the properties of a seeded game played on the event loop in virtual time, with the given overrides.
+     */
+    public static Properties eventLoop(long seed, String... overrides) {
+        Properties properties = properties(overrides);
+        properties.setProperty("ExecutionEngine", "EventLoop");
+        properties.setProperty("VirtualTime", "True");
+        properties.setProperty("Seed", Long.toString(seed));
+        return properties;
+    }
+
+    /**
+     * Plays the game on the event loop, on the calling thread, until it ends.
+     */
+    public void play() {
+        play(0);
+    }
+
+    /**
+     * Plays the game on the event loop, on the calling thread, until it ends or until the players quit after the
+     * given game time (if positive).
+     */
+    public void play(long quitAfterMillis) {
+        GameLoop loop = new GameLoop(logger, env.clock);
+        loop.execute(() -> dealer.start(loop));
+        if (quitAfterMillis > 0)
+            loop.schedule(dealer::terminate, quitAfterMillis);
+        env.clock.register(Thread.currentThread());
+        try {
+            loop.run();
+        } finally {
+            env.clock.deregister();
+        }
+    }
+
+    /**
+     * Starts the game on its own thread: the dealer's, or the event loop's with the EventLoop execution engine.
+     *
+     * @return - the started thread.
+     */
+    public Thread start() {
+        Thread game;
+        if (config.eventLoop) {
+            GameLoop loop = new GameLoop(logger, env.clock);
+            loop.execute(() -> dealer.start(loop));
+            game = GameThreads.newThread(env, loop, "game-loop");
+        } else {
+            game = GameThreads.newThread(env, dealer, "dealer");
+        }
+        game.start();
+        return game;
+    }
+
+    /**
+     * Waits (up to TIMEOUT_MILLIS) until the table is full and the dealer is done dealing.
+     */
+    public void awaitDeal() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ((table.countCards() < config.tableSize || dealer.isReshuffle()) && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+    }
+
+    /**
+     * Ends a game started with start(), and fails if its thread does not end.
+     */
+    public void stop(Thread game) throws InterruptedException {
+        dealer.terminate();
+        game.join(TIMEOUT_MILLIS);
+        assertFalse(game.isAlive(), "the game did not terminate");
+    }
+}
@@ -0,0 +1,71 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * Compares the player's key press ring with the ArrayBlockingQueue it replaced: one producer thread offers key
+ * presses (retrying when full, like a fast computer player) and the consumer takes them (like the player thread).
+ * Run with: mvn test-compile && java -cp target/classes:target/test-classes bguspl.set.ex.ActionRingBenchmark
+ */
+public class ActionRingBenchmark {
+
+    private static final int CAPACITY = 3;
+    private static final int KEY_PRESSES = 5_000_000;
+    private static final int ROUNDS = 5;
+
+    private static final Logger LOGGER = Logger.getLogger(ActionRingBenchmark.class.getName());
+
+    /**
+     * Where the consumers leave the sums of the key presses they took, so the JIT cannot drop the loops.
+     */
+    static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 1; round <= ROUNDS; ++round) {
+            long queue = runQueue();
+            long ring = runRing();
+            LOGGER.info(String.format("round %d: ArrayBlockingQueue %,d ops/s  ActionRing %,d ops/s",
+                    round, opsPerSecond(queue), opsPerSecond(ring)));
+        }
+    }
+
+    private static long opsPerSecond(long nanos) {
+        return (long) (KEY_PRESSES * 1e9 / nanos);
+    }
+
+    private static long runQueue() throws InterruptedException {
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(CAPACITY);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < KEY_PRESSES; )
+                if (queue.offer(i & 15)) ++i;
+                else Thread.yield();
+        });
+        long start = System.nanoTime();
+        producer.start();
+        long sum = 0;
+        for (int i = 0; i < KEY_PRESSES; ++i) sum += queue.take();
+        long elapsed = System.nanoTime() - start;
+        producer.join();
+        sink = sum;
+        return elapsed;
+    }
+
+    private static long runRing() throws InterruptedException {
+        ActionRing ring = new ActionRing(CAPACITY);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < KEY_PRESSES; )
+                if (ring.offer(i & 15)) ++i;
+                else Thread.yield();
+        });
+        long start = System.nanoTime();
+        producer.start();
+        long sum = 0;
+        for (int i = 0; i < KEY_PRESSES; ++i) sum += ring.take();
+        long elapsed = System.nanoTime() - start;
+        producer.join();
+        sink = sum;
+        return elapsed;
+    }
+}
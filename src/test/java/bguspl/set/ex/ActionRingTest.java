@@ -0,0 +1,118 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActionRingTest {
+
+    @Test
+    void dropsWhenFull() throws InterruptedException {
+        ActionRing ring = new ActionRing(3);
+        assertTrue(ring.offer(4));
+        assertTrue(ring.offer(5));
+        assertTrue(ring.offer(6));
+        assertFalse(ring.offer(7));
+        assertEquals(3, ring.size());
+
+        assertEquals(4, ring.take());
+        assertTrue(ring.offer(8));
+        assertEquals(5, ring.take());
+        assertEquals(6, ring.take());
+        assertEquals(8, ring.take());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void clearDropsWaitingKeyPresses() {
+        ActionRing ring = new ActionRing(3);
+        ring.offer(1);
+        ring.offer(2);
+        ring.clear();
+        assertEquals(0, ring.size());
+        assertTrue(ring.offer(3));
+        assertTrue(ring.offer(4));
+        assertTrue(ring.offer(5));
+        assertFalse(ring.offer(6));
+    }
+
+    @Test
+    void aSeatFedByTheKeyboardAndTheServerLosesNoKeyPress() throws InterruptedException {
+        // a human seat gets its key presses from the keyboard's event thread and from the player server's I/O thread
+        int presses = 500_000;
+        ActionRing ring = new ActionRing(3);
+        Thread[] sources = new Thread[2];
+        for (int source = 0; source < sources.length; ++source) {
+            int first = source << 20;
+            sources[source] = new Thread(() -> {
+                for (int press = first; press < first + presses; ++press)
+                    while (!ring.offer(press, press)) Thread.yield();  // a full ring: press again
+            }, source == 0 ? "keyboard" : "server");
+        }
+        for (Thread source : sources) source.start();
+
+        int[] next = {0, 1 << 20};
+        for (int taken = 0; taken < 2 * presses; ++taken) {
+            int press = ring.take();
+            int source = press >> 20;
+            assertEquals(next[source]++, press, "a key press of the " + sources[source].getName() + " was lost or reordered");
+            assertEquals(press, ring.takenTrace(), "the key press carries the trace of another one");
+        }
+        for (Thread source : sources) source.join();
+        assertEquals(-1, ring.poll());
+    }
+
+    @Test
+    void takeWakesUpOnOffer() throws InterruptedException {
+        ActionRing ring = new ActionRing(3);
+        AtomicReference<Integer> taken = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                taken.set(ring.take());
+            } catch (InterruptedException ignored) {}
+        });
+        consumer.start();
+        Thread.sleep(50);
+        ring.offer(11);
+        consumer.join(1000);
+        assertFalse(consumer.isAlive());
+        assertEquals(11, taken.get());
+    }
+
+    @Test
+    void takeThrowsWhenInterrupted() throws InterruptedException {
+        ActionRing ring = new ActionRing(3);
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                ring.take();
+            } catch (InterruptedException e) {
+                thrown.set(e);
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        consumer.interrupt();
+        consumer.join(1000);
+        assertFalse(consumer.isAlive());
+        assertTrue(thrown.get() instanceof InterruptedException);
+    }
+
+    @Test
+    void keepsOrderAcrossThreads() throws InterruptedException {
+        ActionRing ring = new ActionRing(3);
+        int count = 100_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; ) {
+                if (ring.offer(i)) ++i;
+                else Thread.yield();
+            }
+        });
+        producer.start();
+        for (int i = 0; i < count; ++i)
+            assertEquals(i, ring.take());
+        producer.join();
+    }
+}
@@ -0,0 +1,117 @@
+package bguspl.set.ex;
+
+import bguspl.set.TestGame;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the game's hot paths in steady state (after warming them up) and checks the bytes they allocate per
+ * operation on the calling thread, so garbage collection pressure cannot creep back into long running games.
+ */
+class AllocationBudgetTest {
+
+    private static final int WARM_UP = 50_000;
+    private static final int OPERATIONS = 100_000;
+
+    private final com.sun.management.ThreadMXBean threads = threads();
+
+    private UtilImpl util;
+    private Table table;
+    private int[] set;
+    private int[] notSet;
+
+    private static com.sun.management.ThreadMXBean threads() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+    }
+
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(threads != null && threads.isThreadAllocatedMemorySupported(),
+                "the JVM does not measure thread allocations");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // the logging decorator without a window: the log messages must not be built when logging is off
+        TestGame game = new TestGame(TestGame.properties("HumanPlayers", "2", "ComputerPlayers", "0",
+                "TableDelaySeconds", "0"), (logger, config, util, clock) -> new UserInterfaceDecorator(logger, util, null));
+        util = game.util;
+        table = game.table;
+        deal();
+
+        List<Integer> cards = new ArrayList<>();
+        for (int card = 0; card < game.config.tableSize; ++card) cards.add(card);
+        set = util.findSets(cards, 1).get(0);
+        notSet = new int[]{0, 1, 3};
+        assertTrue(util.testSet(set));
+        assertTrue(!util.testSet(notSet));
+    }
+
+    /**
+     * Places cards 0..tableSize-1 in order (small card ids, so boxing them hits the Integer cache).
+     */
+    private void deal() {
+        for (int slot = 0; slot < table.slotToCard.length; ++slot) table.placeCard(slot, slot);
+    }
+
+    /**
+     * @return - the average number of bytes the operation allocated on this thread, in steady state.
+     */
+    private long bytesPerOperation(Runnable operation) {
+        for (int i = 0; i < WARM_UP; ++i) operation.run();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < OPERATIONS; ++i) operation.run();
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        return allocated / OPERATIONS;
+    }
+
+    @Test
+    void tokenTogglesAllocateNothing() {
+        assertEquals(0, bytesPerOperation(() -> {
+            table.updatePlayerToken(0, 5);
+            table.updatePlayerToken(0, 5);
+        }));
+    }
+
+    @Test
+    void setTestsAllocateNothing() {
+        assertEquals(0, bytesPerOperation(() -> {
+            util.testSet(set);
+            util.testSet(notSet);
+        }));
+    }
+
+    @Test
+    void collectingAPlayersCardsAllocatesNothing() {
+        int[] cards = new int[table.maxTokens];
+        for (int slot : new int[]{1, 4, 7}) table.updatePlayerToken(1, slot);
+        assertEquals(0, bytesPerOperation(() -> table.cardsOfPlayerTokens(1, cards)));
+    }
+
+    @Test
+    void clearingTheTableAllocatesNothing() {
+        assertEquals(0, bytesPerOperation(() -> {
+            table.clearTable();
+            deal();
+        }));
+    }
+
+    @Test
+    void findingASetAllocatesOnlyTheResult() {
+        List<Integer> cards = new ArrayList<>();
+        for (int card = 0; card < table.slotToCard.length; ++card) cards.add(card);
+        // the result list, the set found and two scratch arrays, instead of boxed streams for every combination tried
+        long bytes = bytesPerOperation(() -> util.findSets(cards, 1));
+        assertTrue(bytes <= 160, "findSets allocated " + bytes + " bytes per call");
+    }
+}
@@ -0,0 +1,90 @@
+package bguspl.set.ex;
+
+import bguspl.set.TestGame;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointTest {
+
+    /**
+     * Takes checkpoints of the game every second of game time.
+     */
+    private static CheckpointWriter checkpoint(TestGame game, Path file) {
+        CheckpointWriter writer = new CheckpointWriter(game.logger, file, 1000);
+        game.dealer.checkpointTo(writer);
+        return writer;
+    }
+
+    @Test
+    void encodeDecodeRoundTrip() throws Exception {
+        Checkpoint checkpoint = new Checkpoint(3, 4, 81, 42L, 12_345L, 9, 4, 5, new int[]{7, 3, 80},
+                new int[]{0, 1, 2, -1, 4, 5, 6, 8, 9, 10, 11, 12}, new int[]{3, 1}, new long[]{0, 950},
+                new int[][]{{0, 4}, {}}, new int[]{1});
+        Checkpoint decoded = Checkpoint.decode(checkpoint.encode());
+        assertArrayEquals(checkpoint.encode(), decoded.encode());
+        assertEquals(42L, decoded.seed);
+        assertEquals(12_345L, decoded.reshuffleInMillis);
+        assertEquals(3, decoded.deckCount());
+        assertEquals(-1, decoded.card(3));
+        assertEquals(3, decoded.score(0));
+        assertEquals(950, decoded.freezeMillis[1]);
+        assertArrayEquals(new int[]{0, 4}, decoded.tokens[0]);
+        assertArrayEquals(new int[]{1}, decoded.pendingClaims);
+        assertThrows(IllegalArgumentException.class, () -> decoded.checkFits(3, 4, 4, 81));
+        byte[] data = checkpoint.encode();
+        data[0] = 0;
+        assertThrows(IOException.class, () -> Checkpoint.decode(data));
+    }
+
+    @Test
+    void aQuitGameResumesFromItsCheckpoint(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("game.checkpoint");
+        TestGame quit = new TestGame(TestGame.eventLoop(5));
+        CheckpointWriter writer = checkpoint(quit, file);
+        quit.play(20_000);
+        assertTrue(Files.exists(file), "the quit game left no checkpoint");
+        assertTrue(writer.written() >= 1, "no checkpoints were written during the game");
+        // a checkpoint typically costs well under 5 ms (the p90, since with a few dozen checkpoints the p99 is a single
+        // one), and even the worst one must not be visible: it stays within a frame (16 ms) with a margin
+        assertTrue(writer.stalls.percentile(90) < TimeUnit.MILLISECONDS.toNanos(5),
+                "taking a checkpoint stalled the game: " + writer.stalls.summary());
+        assertTrue(writer.stalls.max() < TimeUnit.MILLISECONDS.toNanos(25),
+                "a checkpoint stalled the game visibly: " + writer.stalls.summary());
+
+        // the last checkpoint is the game as it was quit
+        Checkpoint checkpoint = Checkpoint.read(file);
+        assertTrue(checkpoint.points() > 0, "no set was found before the game was quit");
+        assertEquals(quit.dealer.points(), checkpoint.points());
+        Integer[] cards = quit.table.cardsBySlot();
+        for (int slot = 0; slot < cards.length; ++slot)
+            assertEquals(cards[slot] == null ? -1 : cards[slot], checkpoint.card(slot));
+        for (Player player : quit.players)
+            assertEquals(player.score(), checkpoint.score(player.id));
+
+        TestGame resumed = new TestGame(TestGame.eventLoop(5));
+        checkpoint(resumed, file);
+        resumed.dealer.resumeFrom(checkpoint);
+        cards = resumed.table.cardsBySlot();
+        for (int slot = 0; slot < cards.length; ++slot)
+            assertEquals(cards[slot] == null ? -1 : cards[slot], checkpoint.card(slot));
+        for (Player player : resumed.players)
+            assertEquals(checkpoint.score(player.id), player.score());
+        assertEquals(checkpoint.points(), resumed.dealer.points());
+
+        // played to its end, the resumed game finds the rest of the sets and deletes the checkpoint
+        resumed.play();
+        assertTrue(resumed.dealer.points() > checkpoint.points(), "the resumed game found no set");
+        int total = 0;
+        for (Player player : resumed.players)
+            total += player.score();
+        assertEquals(resumed.dealer.points(), total);
+        assertFalse(Files.exists(file), "the checkpoint of a finished game was kept");
+    }
+}
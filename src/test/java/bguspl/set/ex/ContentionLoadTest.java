@@ -0,0 +1,67 @@
+package bguspl.set.ex;
+
+import bguspl.set.LatencyHistogram;
+import bguspl.set.TestGame;
+import org.junit.jupiter.api.Test;
+
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plays real games (a dealer thread and a thread per player, in real time) with many computer players pressing
+ * keys as fast as they can on a large grid, and fails when the p99 of the key press to token latency or of the
+ * claim to verdict latency exceeds its threshold. This catches contention regressions in the table's locks and the
+ * dealer's check queue. The thresholds and the length of every game can be set with system properties, e.g.
+ * mvn test -Dtest=ContentionLoadTest -Dload.keyToTokenP99Millis=20 -Dload.claimToVerdictP99Millis=100 -Dload.seconds=10
+ */
+class ContentionLoadTest {
+
+    private static final long KEY_TO_TOKEN_P99_MILLIS = Long.getLong("load.keyToTokenP99Millis", 100);
+    private static final long CLAIM_TO_VERDICT_P99_MILLIS = Long.getLong("load.claimToVerdictP99Millis", 250);
+    private static final long SECONDS = Long.getLong("load.seconds", 2);
+
+    private static final int[] PLAYER_COUNTS = {4, 32, 128};
+
+    private static final Logger LOGGER = Logger.getLogger(ContentionLoadTest.class.getName());
+
+    @Test
+    void p99LatenciesStayWithinTheirThresholds() throws InterruptedException {
+        for (int playerCount : PLAYER_COUNTS) {
+            GameLatencies latencies = play(playerCount);
+            LOGGER.fine(() -> playerCount + " players:" + System.lineSeparator() + latencies);
+
+            assertTrue(latencies.claimToVerdict().count() > 0, "no set was claimed with " + playerCount + " players");
+            assertP99(latencies.keyToToken(), KEY_TO_TOKEN_P99_MILLIS, playerCount + " players, key to token");
+            assertP99(latencies.claimToVerdict(), CLAIM_TO_VERDICT_P99_MILLIS, playerCount + " players, claim to verdict");
+        }
+    }
+
+    private static void assertP99(LatencyHistogram histogram, long thresholdMillis, String name) {
+        double p99Millis = histogram.percentile(99) / 1e6;
+        assertTrue(p99Millis <= thresholdMillis,
+                String.format("%s p99 is %.1fms, over the threshold of %dms", name, p99Millis, thresholdMillis));
+    }
+
+    /**
+     * @return - the latencies measured while the game was played for the configured number of seconds.
+     */
+    private static GameLatencies play(int playerCount) throws InterruptedException {
+        // a seeker for every three random players, so there are points (card removals) as well as penalties
+        StringBuilder strategies = new StringBuilder();
+        for (int i = 0; i < playerCount; ++i)
+            strategies.append(i % 4 == 0 ? "Seeker," : "Random,");
+        TestGame game = new TestGame(TestGame.properties("ComputerPlayers", Integer.toString(playerCount),
+                "PlayerStrategies", strategies.toString(), "ComputerKeyRate", "100", "FeatureCount", "5", "Rows", "6",
+                "Columns", "8", "TableDelaySeconds", "0", "PointFreezeSeconds", "0.05", "PenaltyFreezeSeconds", "0.1"));
+        Thread dealer = game.start();
+
+        // the first deal and the players' start up are not measured
+        game.awaitDeal();
+        game.dealer.latencies().reset();
+        Thread.sleep(SECONDS * 1000);
+
+        game.stop(dealer);
+        return game.dealer.latencies();
+    }
+}
@@ -0,0 +1,162 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.TestGame;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Plays the same scripted game (a valid claim, an invalid claim, key presses during a freeze and token toggles)
+ * with a thread per player and on the event loop, and checks that both engines go through the same states.
+ */
+class ExecutionEnginesTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Test
+    void eventLoopBehavesLikeThreads() throws InterruptedException {
+        List<String> threads = playScriptedGame(false);
+        List<String> eventLoop = playScriptedGame(true);
+        assertEquals(threads, eventLoop);
+    }
+
+    private List<String> playScriptedGame(boolean eventLoop) throws InterruptedException {
+        TestGame game = new TestGame(TestGame.properties("HumanPlayers", "2", "ComputerPlayers", "0",
+                "TableDelaySeconds", "0", "TurnTimeoutSeconds", "60", "PointFreezeSeconds", "0.2",
+                "PenaltyFreezeSeconds", "0.3", "Seed", "1",  // a first deal with a set on the table
+                "ExecutionEngine", eventLoop ? "EventLoop" : "Threads"),
+                (logger, config, util, clock) -> new RecordingUserInterface());
+        Config config = game.config;
+        UtilImpl util = game.util;
+        Table table = game.table;
+        Dealer dealer = game.dealer;
+        Thread gameThread = game.start();
+
+        List<String> trace = new ArrayList<>();
+        Player first = game.players[0], second = game.players[1];
+        await(() -> table.countCards() == config.tableSize && !dealer.isReshuffle(), "the first deal");
+
+        // a valid set: a point and a short freeze
+        int[] set = findSlots(table, util, true);
+        for (int slot : set) first.keyPressed(slot);
+        await(() -> first.score() == 1, "the point");
+        await(() -> first.state() == Player.State.IDLE, "the end of the point freeze");
+        await(() -> table.countCards() == config.tableSize, "the refill");
+        trace.add(describe(table, first));
+
+        // an invalid set: a penalty, and the key presses during the freeze are dropped
+        int[] notSet = findSlots(table, util, false);
+        for (int slot : notSet) second.keyPressed(slot);
+        await(() -> second.state() == Player.State.FROZEN, "the penalty");
+        trace.add(describe(table, second));
+        second.keyPressed(notSet[0]);
+        await(() -> second.state() != Player.State.FROZEN, "the end of the penalty freeze");
+        Thread.sleep(50);
+        trace.add(describe(table, second));
+
+        // toggling a token off and on again claims the same (invalid) set again
+        second.keyPressed(notSet[0]);
+        await(() -> table.getPlayerCounter(1) == 2, "the token removal");
+        trace.add(describe(table, second));
+        second.keyPressed(notSet[0]);
+        await(() -> second.state() == Player.State.FROZEN, "the second penalty");
+        trace.add(describe(table, second));
+        await(() -> second.state() != Player.State.FROZEN, "the end of the second penalty freeze");
+
+        game.stop(gameThread);
+        trace.addAll(((RecordingUserInterface) game.env.ui).events());
+        return trace;
+    }
+
+    private static String describe(Table table, Player player) {
+        return "player " + player.id + ": score=" + player.score() + " tokens=" + table.getPlayerCounter(player.id)
+                + " state=" + player.state();
+    }
+
+    /**
+     * @return - the slots of three cards on the table that form a set (or that do not form a set).
+     */
+    private static int[] findSlots(Table table, UtilImpl util, boolean isSet) {
+        synchronized (table) {
+            int n = table.slotToCard.length;
+            for (int a = 0; a < n; ++a)
+                for (int b = a + 1; b < n; ++b)
+                    for (int c = b + 1; c < n; ++c) {
+                        int[] cards = {table.slotToCard[a], table.slotToCard[b], table.slotToCard[c]};
+                        if (util.testSet(cards) == isSet) return new int[]{a, b, c};
+                    }
+        }
+        fail("no " + (isSet ? "set" : "non set") + " on the table");
+        return null;
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for " + what);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Records the score and freeze updates (the rest of the display is ignored).
+     */
+    private static class RecordingUserInterface implements UserInterface {
+
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+        List<String> events() {
+            return new ArrayList<>(events);
+        }
+
+        @Override
+        public void setFreeze(int player, long millies) {
+            events.add("freeze " + player + " " + millies);
+        }
+
+        @Override
+        public void setScore(int player, int score) {
+            events.add("score " + player + " " + score);
+        }
+
+        @Override
+        public void placeCard(int card, int slot) {}
+
+        @Override
+        public void removeCard(int slot) {}
+
+        @Override
+        public void placeToken(int player, int slot) {}
+
+        @Override
+        public void removeTokens() {}
+
+        @Override
+        public void removeTokens(int slot) {}
+
+        @Override
+        public void removeToken(int player, int slot) {}
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {}
+
+        @Override
+        public void setElapsed(long millies) {}
+
+        @Override
+        public void announceWinner(int[] players) {}
+
+        @Override
+        public void dispose() {}
+    }
+}
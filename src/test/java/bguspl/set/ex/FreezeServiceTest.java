@@ -0,0 +1,75 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+
+@ExtendWith(MockitoExtension.class)
+class FreezeServiceTest {
+
+    FreezeService freezes;
+    @Mock
+    Util util;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        Env env = new Env(logger, new Config(logger, (String) null), ui, util);
+        freezes = new FreezeService(env);
+    }
+
+    @AfterEach
+    void tearDown() {
+        freezes.shutdown();
+    }
+
+    @Test
+    void countsDownWholeSecondsAndReleasesAtExpiry() throws InterruptedException {
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicLong releasedAt = new AtomicLong();
+        long until = System.currentTimeMillis() + 1500;
+
+        freezes.freeze(1, until, () -> {
+            releasedAt.set(System.currentTimeMillis());
+            released.countDown();
+        });
+
+        assertTrue(released.await(3, TimeUnit.SECONDS));
+        assertTrue(releasedAt.get() >= until, "released " + (until - releasedAt.get()) + "ms early");
+        assertTrue(releasedAt.get() < until + 100, "released " + (releasedAt.get() - until) + "ms late");
+
+        InOrder order = inOrder(ui);
+        order.verify(ui).setFreeze(1, 2000);
+        order.verify(ui).setFreezeDeadline(1, until);
+        order.verify(ui).setFreeze(1, 1000);
+        order.verify(ui).setFreeze(1, 0);
+        order.verify(ui).setFreezeDeadline(1, -1);
+        order.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void releasesImmediatelyWhenTheFreezeIsOver() {
+        AtomicLong released = new AtomicLong();
+        freezes.freeze(0, System.currentTimeMillis() - 1, released::incrementAndGet);
+        assertTrue(released.get() == 1);
+    }
+}
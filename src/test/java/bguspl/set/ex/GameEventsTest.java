@@ -0,0 +1,73 @@
+package bguspl.set.ex;
+
+import bguspl.set.TestGame;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameEventsTest {
+
+    @Test
+    void aRecordedGameHasItsEvents(@TempDir Path dir) throws Exception {
+        Configuration settings;
+        try (Reader jfc = new InputStreamReader(GameEventsTest.class.getResourceAsStream("/set-game.jfc"),
+                StandardCharsets.UTF_8)) {
+            settings = Configuration.create(jfc);
+        }
+        assertEquals("1 ms", settings.getSettings().get("bguspl.set.TokenToggle#threshold"));
+
+        TestGame game = new TestGame(TestGame.eventLoop(11));
+        Dealer dealer = game.dealer;
+
+        Path file = dir.resolve("game.jfr");
+        try (Recording recording = new Recording(settings)) {
+            // every toggle, not only the slow ones
+            recording.enable("bguspl.set.TokenToggle").withThreshold(Duration.ZERO);
+            recording.start();
+            game.play();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().startsWith("bguspl.set."))
+                .collect(Collectors.toList());
+        Map<String, Long> counts = events.stream()
+                .collect(Collectors.groupingBy(e -> e.getEventType().getName().substring("bguspl.set.".length()),
+                        Collectors.counting()));
+        for (String name : new String[]{"Game", "Claim", "Verdict", "Freeze", "Reshuffle", "CardPlacement",
+                "CardRemoval", "TokenToggle"})
+            assertTrue(counts.getOrDefault(name, 0L) > 0, "no " + name + " event was recorded: " + counts);
+        assertEquals(1L, counts.get("Game"));
+        assertEquals(dealer.claims(), counts.get("Verdict").intValue());
+        assertEquals(dealer.claims(), counts.get("Claim").intValue());
+        assertEquals(dealer.reshuffles(), counts.get("Reshuffle").intValue());
+
+        Map<String, RecordedEvent> last = events.stream()
+                .collect(Collectors.toMap(e -> e.getEventType().getName(), Function.identity(), (a, b) -> b));
+        RecordedEvent gameEvent = last.get("bguspl.set.Game");
+        assertEquals(dealer.points(), gameEvent.getInt("points"));
+        assertEquals(game.players.length, gameEvent.getInt("players"));
+        long sets = events.stream().filter(e -> e.getEventType().getName().equals("bguspl.set.Verdict"))
+                .filter(e -> e.getBoolean("set")).count();
+        assertEquals(dealer.points(), sets);
+        RecordedEvent toggle = last.get("bguspl.set.TokenToggle");
+        assertTrue(toggle.getInt("slot") >= 0 && toggle.getInt("slot") < game.config.tableSize);
+        assertTrue(toggle.getInt("player") >= 0 && toggle.getInt("player") < game.players.length);
+    }
+}
@@ -0,0 +1,83 @@
+package bguspl.set.ex;
+
+import bguspl.set.GameThreads;
+import bguspl.set.TestGame;
+import bguspl.set.UserInterfaceDecorator;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Starts real games with many computer players and logs (at FINE) the number of platform threads and the heap used
+ * while all the players are running, with platform threads and (when the JVM supports them) virtual threads.
+ */
+class GameThreadsScalingTest {
+
+    private static final long START_TIMEOUT_MILLIS = 30_000;
+
+    private static final int[] PLAYER_COUNTS = {10, 100, 1000};
+
+    private static final Logger LOGGER = Logger.getLogger(GameThreadsScalingTest.class.getName());
+
+    @Test
+    void platformThreads() throws InterruptedException {
+        for (int players : PLAYER_COUNTS) {
+            long[] usage = runGame(players, false);
+            assertTrue(usage[0] >= players, "expected a platform thread per player, got " + usage[0]);
+        }
+    }
+
+    @Test
+    void virtualThreads() throws InterruptedException {
+        Assumptions.assumeTrue(GameThreads.virtualThreadsSupported(), "virtual threads need Java 21+");
+        for (int players : PLAYER_COUNTS) {
+            long[] usage = runGame(players, true);
+            assertTrue(usage[0] < players, "expected fewer platform threads than players, got " + usage[0]);
+        }
+    }
+
+    /**
+     * @return - the number of extra platform threads and the extra heap bytes used while the game was running.
+     */
+    private long[] runGame(int playerCount, boolean virtual) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long threadsBefore = threads.getThreadCount();
+        long heapBefore = usedHeap();
+
+        // the logging decorator without a window
+        TestGame game = new TestGame(TestGame.properties("ComputerPlayers", Integer.toString(playerCount),
+                "PlayerStrategies", "Random", "TableDelaySeconds", "0", "VirtualThreads", Boolean.toString(virtual)),
+                (logger, config, util, clock) -> new UserInterfaceDecorator(logger, util, null));
+        Player[] players = game.players;
+        Thread dealerThread = game.start();
+
+        long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+        for (Player player : players)
+            while (player.playerThread == null && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+
+        long threadsRunning = threads.getThreadCount() - threadsBefore;
+        long heapRunning = usedHeap() - heapBefore;
+        LOGGER.fine(() -> String.format("%s threads, %4d players: %4d platform threads, %,7d KB heap",
+                virtual ? "virtual " : "platform", playerCount, threadsRunning, heapRunning / 1024));
+
+        game.dealer.terminate();
+        dealerThread.join(START_TIMEOUT_MILLIS);
+        assertFalse(dealerThread.isAlive(), "the dealer did not terminate");
+        for (Player player : players)
+            assertFalse(player.playerThread.isAlive(), "player " + player.id + " did not terminate");
+        return new long[]{threadsRunning, heapRunning};
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
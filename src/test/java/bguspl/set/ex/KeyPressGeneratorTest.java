@@ -0,0 +1,75 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.Util;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class KeyPressGeneratorTest {
+
+    KeyPressGenerator generator;
+    Player player;
+    @Mock
+    Util util;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Table table;
+    @Mock
+    private Dealer dealer;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("ComputerKeyRate", "1000");
+        properties.setProperty("ComputerKeyArrivals", "Fixed");
+        Env env = new Env(logger, new Config(logger, properties), ui, util);
+        generator = new KeyPressGenerator(env);
+        player = new Player(env, dealer, table, 0, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        generator.shutdown();
+    }
+
+    @Test
+    void dropsKeyPressesWhenTheQueueIsFull() throws InterruptedException {
+
+        // nobody consumes the key presses, so only the first featureSize (3) fit in the queue
+        KeyPressGenerator.Source source = generator.start(player);
+        Thread.sleep(200);
+        source.stop();
+
+        assertEquals(3, generator.sent());
+        assertTrue(generator.dropped() > 0);
+    }
+
+    @Test
+    void keepsTheConfiguredRate() throws InterruptedException {
+
+        KeyPressGenerator.Source source = generator.start(player);
+        Thread.sleep(500);
+        source.stop();
+
+        // 1000 presses per second for half a second (generously bounded for slow machines)
+        long total = generator.sent() + generator.dropped();
+        assertTrue(total > 250 && total < 750, "unexpected number of key presses: " + total);
+        assertEquals(total, generator.sendLag().count());
+    }
+}
@@ -0,0 +1,104 @@
+package bguspl.set.ex;
+
+import bguspl.set.TestGame;
+import bguspl.set.UserInterfaceHeadless;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockProfilerTest {
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void theWaitsAndHoldsAreRecordedPerSite() throws InterruptedException {
+        LockProfiler profiler = new LockProfiler("lock");
+        LockProfiler.Site slow = profiler.site("slow");
+        LockProfiler.Site fast = profiler.site("fast");
+        LockProfiler.Site nested = profiler.site("nested");
+        Object lock = new Object();
+        CountDownLatch holding = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> {
+            synchronized (LockProfiler.requesting(slow, lock)) {
+                try (LockProfiler.Hold held = LockProfiler.entered(slow)) {
+                    holding.countDown();
+                    long start = System.nanoTime();
+                    sleep(50);
+                    profiler.slept(System.nanoTime() - start);
+                    // entered again by the holder: part of the slow section
+                    synchronized (LockProfiler.requesting(nested, lock)) {
+                        LockProfiler.entered(nested).close();
+                    }
+                }
+            }
+        });
+        holder.start();
+        holding.await();
+        synchronized (LockProfiler.requesting(fast, lock)) {
+            LockProfiler.entered(fast).close();
+        }
+        holder.join();
+
+        assertEquals(1, slow.calls());
+        assertTrue(slow.holdNanos() >= 50_000_000L, "the hold does not include the sleep");
+        assertTrue(slow.sleepNanos() >= 50_000_000L && slow.sleepNanos() <= slow.holdNanos());
+        assertEquals(0, nested.calls(), "a reentered section is counted on its own");
+        assertEquals(1, fast.calls());
+        assertEquals(1, fast.contended());
+        assertTrue(fast.waitNanos() >= 40_000_000L, "the wait for the holder is missing");
+
+        List<LockProfiler.Site> ranked = profiler.ranked();
+        assertSame(fast, ranked.get(0));
+        String report = profiler.report();
+        assertTrue(report.indexOf("fast") < report.indexOf("slow"), "the report is not ranked by the waits: " + report);
+    }
+
+    @Test
+    void theTableIsProfiledOnlyWhenAskedTo() throws InterruptedException {
+        assertNull(new TestGame(TestGame.properties("TableDelaySeconds", "0.001")).table.lockProfiler());
+
+        // a ui that is slow to draw tokens, so the table is held while drawing
+        TestGame game = new TestGame(TestGame.properties("TableDelaySeconds", "0.001", "LockProfiling", "True"),
+                (logger, config, util, clock) -> new UserInterfaceHeadless() {
+                    @Override
+                    public void placeToken(int player, int slot) {
+                        sleep(1);
+                    }
+                });
+        Table table = game.table;
+        for (int slot = 0; slot < 3; ++slot)
+            table.placeCard(slot, slot);
+
+        int toggles = 20;
+        Thread[] players = new Thread[game.config.players];
+        for (int i = 0; i < players.length; ++i) {
+            int player = i;
+            players[i] = new Thread(() -> {
+                for (int toggle = 0; toggle < toggles; ++toggle)
+                    table.updatePlayerToken(player, toggle % 3);
+            });
+            players[i].start();
+        }
+        for (Thread player : players)
+            player.join();
+
+        LockProfiler profiler = table.lockProfiler();
+        LockProfiler.Site toggle = profiler.site("updatePlayerToken");
+        assertEquals((long) toggles * players.length, toggle.calls());
+        assertTrue(toggle.contended() > 0, "four players toggling slowly never waited for each other: "
+                + profiler.report());
+        assertTrue(toggle.uiNanos() > 0 && toggle.uiNanos() <= toggle.holdNanos());
+        assertEquals(3, profiler.site("placeCard").calls());
+        assertTrue(profiler.report().contains("sleeping"), profiler.report());
+    }
+}
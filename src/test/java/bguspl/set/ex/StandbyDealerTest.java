@@ -0,0 +1,135 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.TestGame;
+import bguspl.set.UserInterfaceHeadless;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plays whole games with a standby dealer, kills (or hangs) the dealer thread in the middle of a deal, and checks
+ * that the standby takes over within the failover timeout and plays the game to its end with the same table and
+ * scores.
+ */
+class StandbyDealerTest {
+
+    private static final long FAILOVER_TIMEOUT_MILLIS = 200;
+    private static final long TIMEOUT_MILLIS = 30_000;
+    private static final int FAILING_PLACEMENT = 30;
+
+    @Test
+    void takesOverWhenTheDealerThreadDies() throws InterruptedException {
+        playAndFail(false);
+    }
+
+    @Test
+    void takesOverWhenTheDealerThreadHangs() throws InterruptedException {
+        playAndFail(true);
+    }
+
+    @Test
+    void doesNotTakeOverAnIdleDealer() throws InterruptedException {
+        // no turn timeout and nobody pressing keys: the dealer only waits, and dealing the table (with its delays)
+        // takes longer than the failover timeout too
+        TestGame match = new TestGame(TestGame.properties("HumanPlayers", "2", "ComputerPlayers", "0",
+                "TurnTimeoutSeconds", "-1", "TableDelaySeconds", "0.05"));
+        StandbyDealer standby = new StandbyDealer(match.env, match.dealer, FAILOVER_TIMEOUT_MILLIS);
+        standby.start();
+        Thread primary = match.start();
+        match.awaitDeal();
+        Thread.sleep(5 * FAILOVER_TIMEOUT_MILLIS);
+
+        assertEquals(0, standby.failoverCount(), "the standby took over an idle dealer");
+        assertTrue(primary.isAlive(), "the dealer thread ended");
+        match.stop(primary);
+        standby.join();
+    }
+
+    private void playAndFail(boolean hang) throws InterruptedException {
+        // no countdown: the dealer reshuffles as soon as the table has no set, so the game ends quickly
+        TestGame match = new TestGame(TestGame.properties("ComputerKeyRate", "200", "TurnTimeoutSeconds", "0",
+                "TableDelaySeconds", "0", "PointFreezeSeconds", "0", "PenaltyFreezeSeconds", "0.01"),
+                (logger, config, util, clock) -> new FailingUserInterface(config.tableSize, hang));
+        Env env = match.env;
+        Dealer dealer = match.dealer;
+        FailingUserInterface ui = (FailingUserInterface) env.ui;
+        ui.dealer = dealer;
+        StandbyDealer standby = new StandbyDealer(env, dealer, FAILOVER_TIMEOUT_MILLIS);
+        standby.start();
+        Thread primary = match.start();
+
+        Thread game = new Thread(() -> {
+            try {
+                standby.join();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        game.start();
+        game.join(TIMEOUT_MILLIS);
+        if (game.isAlive()) dealer.terminate();
+        assertFalse(game.isAlive(), "the game did not end after the failover");
+
+        long failoverMillis = standby.failovers.max() / 1_000_000;
+        assertEquals(1, standby.failoverCount(), "the standby did not take over exactly once");
+        assertTrue(failoverMillis <= 2 * FAILOVER_TIMEOUT_MILLIS + 100, "the failover took " + failoverMillis + " ms");
+        assertFalse(primary.isAlive(), "the failed dealer thread is still running");
+        assertTrue(dealer.isOver(), "the game was not decided");
+
+        // the game went on from where the failed dealer stopped: nothing scored before the failure was lost, and
+        // the players' scores still match the sets the dealer accepted
+        assertTrue(dealer.points() > ui.pointsBeforeFailure, "no set was accepted after the failover: "
+                + ui.pointsBeforeFailure + " points before it and " + dealer.points() + " at the end");
+        assertEquals(dealer.points(), Arrays.stream(match.players).mapToInt(Player::score).sum());
+        assertEquals(0, ui.duplicates.get(), "a card was on the table twice");
+        Integer[] cards = match.table.cardsBySlot();
+        assertEquals(Arrays.stream(cards).filter(card -> card != null).count(),
+                Arrays.stream(cards).filter(card -> card != null).distinct().count());
+    }
+
+    /**
+     * Throws from (or blocks in) the dealer thread's placement of a card, once, in the middle of the game, and
+     * watches for a card that is placed while it is already on the table.
+     */
+    private static class FailingUserInterface extends UserInterfaceHeadless {
+
+        private final boolean hang;
+        private final int[] slots;
+        private final AtomicInteger placements = new AtomicInteger();
+        final AtomicInteger duplicates = new AtomicInteger();
+        volatile Dealer dealer;
+        volatile int pointsBeforeFailure;
+
+        FailingUserInterface(int tableSize, boolean hang) {
+            this.hang = hang;
+            slots = new int[tableSize];
+            Arrays.fill(slots, -1);
+        }
+
+        @Override
+        public synchronized void placeCard(int card, int slot) {
+            for (int other : slots)
+                if (other == card) duplicates.incrementAndGet();
+            if (Thread.currentThread().getName().equals("dealer")
+                    && placements.incrementAndGet() == FAILING_PLACEMENT) {
+                pointsBeforeFailure = dealer.points();
+                if (!hang) throw new IllegalStateException("the dealer failed");
+                try {
+                    wait(10 * FAILOVER_TIMEOUT_MILLIS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            slots[slot] = card;
+        }
+
+        @Override
+        public synchronized void removeCard(int slot) {
+            slots[slot] = -1;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameThreads;
+import bguspl.set.VirtualClock;
+import bguspl.set.sim.GameResult;
+import bguspl.set.sim.HeadlessGame;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualTimeTest {
+
+    @Test
+    void sleepingThreadsJumpToTheirDeadlines() throws InterruptedException {
+        Logger logger = Logger.getAnonymousLogger();
+        Properties properties = new Properties();
+        properties.setProperty("VirtualTime", "True");
+        Env env = new Env(logger, new Config(logger, properties), null, null);
+        Clock clock = env.clock;
+        assertTrue(clock instanceof VirtualClock);
+
+        long start = clock.millis();
+        AtomicLong shortWake = new AtomicLong();
+        AtomicLong longWake = new AtomicLong();
+        Thread shortSleeper = GameThreads.newThread(env, () -> sleep(clock, 1_000, shortWake), "short");
+        Thread longSleeper = GameThreads.newThread(env, () -> sleep(clock, 60_000, longWake), "long");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            shortSleeper.start();
+            longSleeper.start();
+            shortSleeper.join();
+            longSleeper.join();
+        });
+        assertEquals(1_000, shortWake.get() - start);
+        assertEquals(60_000, longWake.get() - start);
+    }
+
+    @Test
+    void fullGameWithLongTurnsRunsInVirtualTime() {
+        for (String engine : new String[]{"Threads", "EventLoop"}) {
+            Properties properties = new Properties();
+            properties.setProperty("VirtualTime", "True");
+            properties.setProperty("ExecutionEngine", engine);
+            properties.setProperty("ComputerPlayers", "4");
+            properties.setProperty("TurnTimeoutSeconds", "60");
+            properties.setProperty("PointFreezeSeconds", "1");
+            properties.setProperty("PenaltyFreezeSeconds", "3");
+
+            GameResult result = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> new HeadlessGame(properties).play(), engine);
+            assertTrue(result.points > 0, engine);
+            assertTrue(result.winners().length > 0, engine);
+        }
+    }
+
+    private static void sleep(Clock clock, long millis, AtomicLong wake) {
+        try {
+            clock.sleep(millis);
+            wake.set(clock.millis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
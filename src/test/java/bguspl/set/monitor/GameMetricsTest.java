@@ -0,0 +1,48 @@
+package bguspl.set.monitor;
+
+import bguspl.set.TestGame;
+import bguspl.set.ex.Dealer;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameMetricsTest {
+
+    @Test
+    void theGameIsPublishedOverJmx() throws Exception {
+        TestGame match = new TestGame(TestGame.eventLoop(3, "TurnTimeoutSeconds", "10"));
+        Dealer dealer = match.dealer;
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        GameMetrics metrics = new GameMetrics(match.logger, "metrics-test", dealer, match.players.length, server).register();
+        ObjectName game = metrics.gameName();
+        assertTrue(server.isRegistered(game));
+        assertEquals(5, server.queryNames(new ObjectName(GameMetrics.DOMAIN + ":type=Latency,game=\"metrics-test\",*"), null).size());
+
+        match.play();
+
+        assertEquals(dealer.claims(), server.getAttribute(game, "Claims"));
+        assertEquals(dealer.points(), server.getAttribute(game, "Points"));
+        assertEquals(dealer.penalties(), server.getAttribute(game, "Penalties"));
+        assertEquals(true, server.getAttribute(game, "Over"));
+        assertTrue((int) server.getAttribute(game, "Reshuffles") > 0, "no reshuffle was counted");
+        assertEquals((long) dealer.claims(), server.getAttribute(metrics.latencyName("verification"), "Count"));
+        assertEquals((long) dealer.claims(), server.getAttribute(metrics.latencyName("claimWait"), "Count"));
+        assertTrue((long) server.getAttribute(metrics.latencyName("refill"), "Count") > 0, "no refill was timed");
+        assertTrue((long) server.getAttribute(metrics.latencyName("reshuffle"), "Count") > 0, "no reshuffle was timed");
+        double p50 = (double) server.getAttribute(metrics.latencyName("verification"), "P50Micros");
+        double p99 = (double) server.getAttribute(metrics.latencyName("verification"), "P99Micros");
+        assertTrue(p50 > 0 && p50 <= p99, dealer.latencies().toString());
+        assertEquals(dealer.droppedKeyPresses(), server.getAttribute(game, "DroppedKeyPresses"));
+
+        server.invoke(game, "resetLatencies", null, null);
+        assertEquals(0L, server.getAttribute(metrics.latencyName("verification"), "Count"));
+        metrics.unregister();
+        assertFalse(server.isRegistered(game));
+        assertTrue(server.queryNames(new ObjectName(GameMetrics.DOMAIN + ":game=\"metrics-test\",*"), null).isEmpty());
+    }
+}
@@ -0,0 +1,189 @@
+package bguspl.set.monitor;
+
+import bguspl.set.Config;
+import bguspl.set.TestGame;
+import bguspl.set.UserInterface;
+import bguspl.set.VirtualClock;
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+    @Test
+    void replayRebuildsTheGame(@TempDir Path dir) throws Exception {
+        // a game journaled on the event loop, in virtual time, in small segments so it rolls over many of them
+        RecordingUserInterface played = new RecordingUserInterface();
+        TestGame game = new TestGame(TestGame.eventLoop(5, "JournalSegmentBytes", "4096"),
+                (logger, config, util, clock) -> {
+                    try {
+                        return new Journal(logger, config, dir, clock, played);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        Journal journal = (Journal) game.env.ui;
+        game.dealer.journalTo(journal);
+        game.play();
+        journal.dispose();
+
+        JournalReplay replay = new JournalReplay(dir);
+        RecordingUserInterface replayed = new RecordingUserInterface();
+        replay.replay(replayed);
+
+        assertTrue(journal.segments() > 1, "the journal did not roll over: " + replay);
+        assertEquals(journal.segments(), replay.segments());
+        assertEquals(journal.records(), replay.records());
+        assertEquals(played.events, replayed.events);
+        assertEquals(game.dealer.claims(), replay.claims());
+        assertEquals(game.dealer.points(), replay.sets());
+        assertTrue(replay.sets() > 0, "no set was found");
+        for (Player player : game.players)
+            assertEquals(player.score(), replay.score(player.id));
+        Integer[] cards = game.table.cardsBySlot();
+        for (int slot = 0; slot < cards.length; ++slot)
+            assertEquals(cards[slot] == null ? -1 : cards[slot], replay.card(slot));
+        assertTrue(replay.winners().length > 0, "no winners");
+        assertTrue(replay.lastNanos() > 0, "the records have no game time");
+    }
+
+    @Test
+    void oldSegmentsAreNotReplayed(@TempDir Path dir) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("JournalSegmentBytes", "256");
+        Logger logger = TestGame.logger();
+        Config config = new Config(logger, properties);
+
+        Journal longer = new Journal(logger, config, dir, new VirtualClock(), null);
+        for (int i = 0; i < 100; ++i) longer.placeCard(i, 0);
+        longer.dispose();
+        Journal shorter = new Journal(logger, config, dir, new VirtualClock(), null);
+        shorter.placeCard(7, 3);
+        shorter.dispose();
+
+        JournalReplay replay = new JournalReplay(dir);
+        replay.replay(null);
+        assertEquals(1, replay.records());
+        assertEquals(7, replay.card(3));
+        assertEquals(-1, replay.card(0));
+    }
+
+    @Test
+    void aFailedRollOverStopsTheJournalNotTheGame(@TempDir Path dir) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("JournalSegmentBytes", "256");  // 12 records a segment
+        Logger logger = TestGame.logger();
+        List<LogRecord> severe = new ArrayList<>();
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getLevel() == Level.SEVERE) severe.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        Config config = new Config(logger, properties);
+        Path segments = Files.createDirectory(dir.resolve("journal"));
+        RecordingUserInterface played = new RecordingUserInterface();
+        Journal journal = new Journal(logger, config, segments, new VirtualClock(), played);
+        for (int i = 0; i < 12; ++i) journal.placeCard(i, 0);
+        // the next segment cannot be created
+        Files.delete(Journal.segmentFile(segments, 0));
+        Files.delete(segments);
+
+        for (int i = 0; i < 20; ++i) journal.placeCard(i, 1);
+        journal.setScore(0, 1);
+        assertEquals(33, played.events.size(), "the display missed calls once the journal stopped");
+        assertEquals(12, journal.records());
+        assertEquals(21, journal.dropped());
+        assertEquals(1, journal.segments());
+        assertEquals(1, severe.size(), "the failure was not logged exactly once");
+    }
+
+    /**
+     * Records the calls that the journal keeps (the countdown is not journaled).
+     */
+    private static class RecordingUserInterface implements UserInterface {
+
+        final List<String> events = new ArrayList<>();
+
+        private synchronized void add(String event) {
+            events.add(event);
+        }
+
+        @Override
+        public void placeCard(int card, int slot) {
+            add("card " + card + " " + slot);
+        }
+
+        @Override
+        public void removeCard(int slot) {
+            add("remove " + slot);
+        }
+
+        @Override
+        public void placeToken(int player, int slot) {
+            add("token " + player + " " + slot);
+        }
+
+        @Override
+        public void removeTokens() {
+            add("clear");
+        }
+
+        @Override
+        public void removeTokens(int slot) {
+            add("clear " + slot);
+        }
+
+        @Override
+        public void removeToken(int player, int slot) {
+            add("untoken " + player + " " + slot);
+        }
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {}
+
+        @Override
+        public void setElapsed(long millies) {}
+
+        @Override
+        public void setFreeze(int player, long millies) {
+            add("freeze " + player + " " + millies);
+        }
+
+        @Override
+        public void setScore(int player, int score) {
+            add("score " + player + " " + score);
+        }
+
+        @Override
+        public void announceWinner(int[] players) {
+            add("winners " + Arrays.toString(players));
+        }
+
+        @Override
+        public void dispose() {}
+    }
+}
@@ -0,0 +1,99 @@
+package bguspl.set.monitor;
+
+import bguspl.set.Config;
+import bguspl.set.SystemClock;
+import bguspl.set.VirtualClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveStateTest {
+
+    private static final int UPDATES = 200_000;
+
+    private static Config config(int players) {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return new Config(logger, properties);
+    }
+
+    @Test
+    void readersSeeTheLiveGame(@TempDir Path dir) throws Exception {
+        VirtualClock clock = new VirtualClock();
+        LiveState state = new LiveState(config(4), dir.resolve("live"), clock, null);
+        LiveStateReader reader = new LiveStateReader(dir.resolve("live"));
+        assertEquals(-1, reader.read().card(0));
+
+        state.placeCard(17, 0);
+        state.placeToken(2, 0);
+        state.setScore(3, 5);
+        state.setFreeze(1, 3000);
+        state.setFreezeDeadline(1, clock.millis() + 2500);
+        state.setCountdown(60000, false);
+        LiveStateReader.Snapshot snapshot = reader.read();
+        assertEquals(17, snapshot.card(0));
+        assertTrue(snapshot.hasToken(2, 0));
+        assertFalse(snapshot.hasToken(1, 0));
+        assertEquals(5, snapshot.score(3));
+        // the exact expiry on the game's clock, not the whole seconds the display counts down
+        assertEquals(clock.millis() + 2500, snapshot.freezeDeadline(1));
+        assertEquals(-1, snapshot.freezeDeadline(0));
+        assertEquals(clock.millis() + 60000, snapshot.reshuffleDeadline);
+        assertFalse(snapshot.over);
+
+        state.setFreezeDeadline(1, -1);
+        state.removeCard(0);
+        state.removeTokens(0);
+        state.announceWinner(new int[]{3});
+        snapshot = reader.read();
+        assertEquals(-1, snapshot.card(0));
+        assertFalse(snapshot.hasToken(2, 0));
+        assertEquals(-1, snapshot.freezeDeadline(1));
+        assertTrue(snapshot.over);
+    }
+
+    @Test
+    void readersNeverSeeAHalfWrittenUpdate(@TempDir Path dir) throws Exception {
+        // 128 players: two mask words per slot, and removeTokens(slot) clears both in one update
+        LiveState state = new LiveState(config(128), dir.resolve("live"), SystemClock.INSTANCE, null);
+        LiveStateReader reader = new LiveStateReader(dir.resolve("live"));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong torn = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+        Thread monitor = new Thread(() -> {
+            while (!done.get()) {
+                LiveStateReader.Snapshot snapshot = reader.read();
+                // tokens are placed in player order, so the second word is only set once the first is full
+                if (snapshot.mask(0, 1) != 0 && snapshot.mask(0, 0) != -1L) torn.incrementAndGet();
+                reads.incrementAndGet();
+            }
+        });
+        monitor.start();
+
+        long start = System.nanoTime();
+        int updates = 0;
+        while (updates < UPDATES) {
+            for (int player = 0; player < 128; ++player, ++updates) state.placeToken(player, 0);
+            state.removeTokens(0);
+            ++updates;
+        }
+        long nanos = System.nanoTime() - start;
+        done.set(true);
+        monitor.join();
+
+        String summary = String.format("%.0fns per update, %d consistent reads", (double) nanos / updates, reads.get());
+        assertEquals(0, torn.get(), summary);
+        assertTrue(reads.get() > 0, summary);
+        assertEquals(updates, reader.read().updates);
+    }
+}
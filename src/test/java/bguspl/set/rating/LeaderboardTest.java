@@ -0,0 +1,145 @@
+package bguspl.set.rating;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaderboardTest {
+
+    private static Logger logger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return logger;
+    }
+
+    /**
+     * Rates games of four players drawn from a pool, where a player's score grows with its number.
+     */
+    private static void play(Leaderboard leaderboard, int games, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int game = 0; game < games; ++game) {
+            String[] names = new String[4];
+            int[] scores = new int[4];
+            for (int seat = 0; seat < names.length; ++seat) {
+                int player = random.nextInt(40);
+                names[seat] = "player " + player;
+                scores[seat] = random.nextInt(player / 4 + 1);
+            }
+            leaderboard.record(names, scores);
+        }
+    }
+
+    private static List<String> describe(List<Leaderboard.Standing> standings) {
+        return standings.stream().map(Leaderboard.Standing::toString).collect(Collectors.toList());
+    }
+
+    @Test
+    void eloChangesAreZeroSumAndFavourTheUnderdog() {
+        double[] even = Leaderboard.changes(new double[]{1500, 1500}, new int[]{3, 1}, 32);
+        assertEquals(16, even[0], 1e-9);
+        assertEquals(-16, even[1], 1e-9);
+        double[] upset = Leaderboard.changes(new double[]{1400, 1600}, new int[]{3, 1}, 32);
+        assertTrue(upset[0] > even[0], "beating a better player gains more");
+        double[] four = Leaderboard.changes(new double[]{1500, 1550, 1450, 1600}, new int[]{2, 2, 0, 5}, 32);
+        assertEquals(0, four[0] + four[1] + four[2] + four[3], 1e-9);
+        assertEquals(0, Leaderboard.changes(new double[]{1500, 1500}, new int[]{2, 2}, 32)[0], 1e-9);
+    }
+
+    @Test
+    void theRatingsSurviveARestart(@TempDir Path dir) throws Exception {
+        Leaderboard leaderboard = new Leaderboard(logger(), dir);
+        play(leaderboard, 5000, 1);
+        leaderboard.flush();
+        List<String> top = describe(leaderboard.top(10));
+        assertEquals(5000, leaderboard.games());
+        assertEquals(40, leaderboard.players());
+        assertTrue(leaderboard.standing("player 39").rating > leaderboard.standing("player 0").rating,
+                "the better player is not rated higher");
+        Leaderboard.Standing best = leaderboard.top(1).get(0);
+        for (Leaderboard.Standing standing : leaderboard.top(100))
+            assertTrue(standing.rating <= best.rating);
+        leaderboard.close();
+
+        // an up to date index is used as is
+        Leaderboard reopened = new Leaderboard(logger(), dir);
+        assertEquals(0, reopened.replayed());
+        assertEquals(top, describe(reopened.top(10)));
+        reopened.close();
+
+        // without the index, the ratings are rebuilt from the log
+        Files.delete(dir.resolve(Leaderboard.INDEX));
+        long start = System.nanoTime();
+        Leaderboard rebuilt = new Leaderboard(logger(), dir);
+        double millis = (System.nanoTime() - start) / 1e6;
+        assertEquals(5000, rebuilt.replayed(), String.format("rebuilt in %.1f ms", millis));
+        assertEquals(top, describe(rebuilt.top(10)));
+        rebuilt.close();
+    }
+
+    @Test
+    void onlyTheResultsAfterTheIndexAreReplayed(@TempDir Path dir) throws Exception {
+        Leaderboard leaderboard = new Leaderboard(logger(), dir);
+        play(leaderboard, 300, 2);
+        leaderboard.close();
+        byte[] index = Files.readAllBytes(dir.resolve(Leaderboard.INDEX));
+        leaderboard = new Leaderboard(logger(), dir);
+        play(leaderboard, 200, 3);
+        leaderboard.close();
+        List<String> top = describe(leaderboard.top(40));
+
+        // an index that covers only the first 300 games (as if the process died before it was updated)
+        Files.write(dir.resolve(Leaderboard.INDEX), index);
+        Leaderboard caughtUp = new Leaderboard(logger(), dir);
+        assertEquals(200, caughtUp.replayed());
+        assertEquals(500, caughtUp.games());
+        assertEquals(top, describe(caughtUp.top(40)));
+        caughtUp.close();
+
+        // an index left half updated is rebuilt from the whole log
+        try (FileChannel channel = FileChannel.open(dir.resolve(Leaderboard.INDEX), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, Leaderboard.HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN).putInt(Leaderboard.STATE, Leaderboard.UPDATING);
+        }
+        Leaderboard rebuilt = new Leaderboard(logger(), dir);
+        assertEquals(500, rebuilt.replayed());
+        assertEquals(top, describe(rebuilt.top(40)));
+        rebuilt.close();
+    }
+
+    @Test
+    void aTornResultIsCutOffTheLog(@TempDir Path dir) throws Exception {
+        Leaderboard leaderboard = new Leaderboard(logger(), dir);
+        leaderboard.record(new String[]{"a", "b"}, new int[]{3, 1});
+        leaderboard.record(new String[]{"a", "b"}, new int[]{0, 2});
+        leaderboard.close();
+        Path log = dir.resolve(Leaderboard.LOG);
+        byte[] bytes = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(bytes, bytes.length - 3));
+        Files.delete(dir.resolve(Leaderboard.INDEX));
+
+        Leaderboard recovered = new Leaderboard(logger(), dir);
+        assertEquals(1, recovered.games());
+        assertEquals(1500 + 16, recovered.standing("a").rating, 1e-9);
+        recovered.record(new String[]{"a", "b"}, new int[]{0, 2});
+        recovered.close();
+        Files.delete(dir.resolve(Leaderboard.INDEX));
+        Leaderboard replayed = new Leaderboard(logger(), dir);
+        assertEquals(2, replayed.replayed());
+        assertEquals(recovered.standing("b").rating, replayed.standing("b").rating, 1e-9);
+        replayed.close();
+    }
+}
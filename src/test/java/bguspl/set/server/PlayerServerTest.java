@@ -0,0 +1,184 @@
+package bguspl.set.server;
+
+import bguspl.set.Config;
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PlayerServerTest {
+
+    private static final int SEATS = 2000;
+    private static final int BURST = 40_000;
+
+    private final Player player = mock(Player.class);
+    private PlayerServer server;
+
+    private PlayerServer start(int seats) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", Integer.toString(seats));
+        properties.setProperty("ComputerPlayers", "0");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Player[] players = new Player[seats];
+        Arrays.fill(players, player);
+        server = new PlayerServer(logger, config, players, null, 0);
+        server.start();
+        return server;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) server.close();
+    }
+
+    @Test
+    void remotePlayersJoinPressKeysAndGetUpdates() throws IOException {
+        start(1);
+        server.placeCard(7, 3);
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.setSoTimeout(5000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            out.writeByte(Frames.JOIN);
+            assertEquals(Frames.WELCOME, in.readByte());
+            assertEquals(0, in.readShort());
+            assertEquals(3, in.readShort());
+            assertEquals(4, in.readShort());
+            // the table as it was when the player joined
+            assertEquals(Frames.CARD_PLACED, in.readByte());
+            assertEquals(3, in.readShort());
+            assertEquals(7, in.readShort());
+
+            out.writeByte(Frames.PRESS);
+            out.writeShort(3);
+            verify(player, timeout(5000)).keyPressed(3);
+
+            server.placeToken(0, 3);
+            server.setScore(0, 2);
+            assertEquals(Frames.TOKEN_PLACED, in.readByte());
+            assertEquals(0, in.readShort());
+            assertEquals(3, in.readShort());
+            assertEquals(Frames.SCORE, in.readByte());
+            assertEquals(0, in.readShort());
+            assertEquals(2, in.readInt());
+
+            // the only seat is taken
+            try (Socket second = new Socket("localhost", server.port())) {
+                second.setSoTimeout(5000);
+                second.getOutputStream().write(Frames.JOIN);
+                assertEquals(Frames.FULL, second.getInputStream().read());
+                assertEquals(-1, second.getInputStream().read());
+            }
+        }
+    }
+
+    @Test
+    void aBurstLargerThanTheBacklogReachesAPlayerThatKeepsUp() throws IOException {
+        start(1);
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.setSoTimeout(5000);
+            DataInputStream in = join(socket);
+
+            // about 200 KB of frames queued at once, far more than a player may fall behind by
+            for (int i = 0; i < BURST; ++i) server.placeToken(0, i % 12);
+            for (int i = 0; i < BURST; ++i) {
+                assertEquals(Frames.TOKEN_PLACED, in.readByte(), "frame " + i);
+                assertEquals(0, in.readShort());
+                assertEquals(i % 12, in.readShort());
+            }
+            assertEquals(1, server.connections());
+        }
+    }
+
+    @Test
+    void disconnectsAPlayerThatStopsReading() throws Exception {
+        start(2);
+        try (Socket stalled = new Socket(); Socket reading = new Socket("localhost", server.port())) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", server.port()));
+            join(stalled);
+            reading.setSoTimeout(5000);
+            DataInputStream in = join(reading);
+
+            // the stalled player never reads, so once the socket buffers are full its backlog only grows
+            long deadline = System.currentTimeMillis() + 10_000;
+            long frames = 0;
+            while (server.connections() == 2 && System.currentTimeMillis() < deadline) {
+                for (int i = 0; i < BURST; ++i) server.placeToken(1, i % 12);
+                for (int i = 0; i < BURST; ++i, ++frames) {
+                    assertEquals(Frames.TOKEN_PLACED, in.readByte(), "frame " + frames);
+                    in.readShort();
+                    in.readShort();
+                }
+            }
+            assertEquals(1, server.connections(), "the stalled player was not disconnected");
+            // the player that keeps up is still served
+            server.setScore(1, 4);
+            while (in.readByte() != Frames.SCORE) {
+                in.readShort();
+                in.readShort();
+            }
+            assertEquals(1, in.readShort());
+            assertEquals(4, in.readInt());
+        }
+    }
+
+    /**
+     * Joins the game and reads the welcome (the table is empty).
+     */
+    private static DataInputStream join(Socket socket) throws IOException {
+        new DataOutputStream(socket.getOutputStream()).writeByte(Frames.JOIN);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        assertEquals(Frames.WELCOME, in.readByte());
+        in.readShort();
+        in.readShort();
+        in.readShort();
+        return in;
+    }
+
+    @Test
+    void oneIoThreadServesThousandsOfPlayers() throws Exception {
+        start(SEATS);
+        LoadClient client = new LoadClient(new InetSocketAddress("localhost", server.port()), SEATS, 2);
+        Thread updates = new Thread(() -> {
+            for (int i = 0; !Thread.currentThread().isInterrupted(); ++i) {
+                server.placeToken(i % SEATS, i % 12);
+                server.removeToken(i % SEATS, i % 12);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        updates.start();
+        try {
+            client.run(3000);
+        } finally {
+            updates.interrupt();
+            updates.join();
+        }
+        String report = client.report();
+
+        assertEquals(SEATS, client.joined());
+        assertTrue(client.presses() > 0, report);
+        // every seated player got the welcome and at least some of the token updates
+        assertTrue(client.frames() > 2L * SEATS, "frames received: " + client.frames());
+        verify(player, atLeastOnce()).keyPressed(anyInt());
+    }
+}
@@ -0,0 +1,75 @@
+package bguspl.set.server;
+
+import bguspl.set.Config;
+import bguspl.set.sim.GameResult;
+import bguspl.set.sim.HeadlessGame;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomManagerTest {
+
+    private static final int THREADS = 2;
+
+    private static Config config(Logger logger, String... overrides) {
+        Properties properties = new Properties();
+        properties.setProperty("ComputerPlayers", "4");
+        properties.setProperty("PointFreezeSeconds", "0");
+        properties.setProperty("PenaltyFreezeSeconds", "0");
+        for (int i = 0; i < overrides.length; i += 2)
+            properties.setProperty(overrides[i], overrides[i + 1]);
+        return new Config(logger, HeadlessGame.headless(properties));
+    }
+
+    @Test
+    void manyRoomsShareThePoolAndCloseWithoutLeakingThreads() throws Exception {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = config(logger, "TurnTimeoutSeconds", "60");
+        int threadsBefore = Thread.activeCount();
+
+        RoomManager manager = new RoomManager(logger, THREADS);
+        List<Room> rooms = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            rooms.add(manager.open(config));
+        Thread.sleep(300);
+
+        assertEquals(100, manager.rooms());
+        assertTrue(Thread.activeCount() <= threadsBefore + THREADS, "threads: " + Thread.activeCount());
+
+        manager.shutdown(5000);
+        for (Room room : rooms)
+            assertTrue(room.result().isDone(), "room " + room.id + " is still open");
+        assertEquals(0, manager.rooms());
+        // a terminated pool's workers may take a moment to die
+        for (int i = 0; i < 100 && Thread.activeCount() > threadsBefore; i++)
+            Thread.sleep(10);
+        assertEquals(threadsBefore, Thread.activeCount());
+        assertThrows(IllegalStateException.class, () -> manager.open(config));
+    }
+
+    @Test
+    void roomsPlayToTheEndAndAreRemoved() throws Exception {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        // a 27 card deck and fast key presses, so a real time game is over in about a second
+        Config config = config(logger, "FeatureCount", "3", "ComputerKeyRate", "1000", "TurnTimeoutSeconds", "1");
+
+        RoomManager manager = new RoomManager(logger, THREADS);
+        List<Room> rooms = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            rooms.add(manager.open(config));
+        for (Room room : rooms) {
+            GameResult result = room.result().get(30, TimeUnit.SECONDS);
+            assertTrue(result.points > 0, "room " + room.id);
+        }
+        assertEquals(0, manager.rooms());
+        manager.shutdown(5000);
+    }
+}
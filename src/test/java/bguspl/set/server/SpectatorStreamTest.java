@@ -0,0 +1,174 @@
+package bguspl.set.server;
+
+import bguspl.set.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectatorStreamTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    /**
+     * A local spectator: a channel that takes up to a given number of bytes per write (none while blocked).
+     */
+    private static class ViewChannel implements WritableByteChannel {
+        private final SpectatorView view = new SpectatorView();
+        private final ByteBuffer received = ByteBuffer.allocate(1 << 20);
+        private final int maxWrite;
+        volatile boolean blocked;
+        private volatile boolean open = true;
+
+        ViewChannel(int maxWrite) {
+            this.maxWrite = maxWrite;
+        }
+
+        @Override
+        public synchronized int write(ByteBuffer src) {
+            if (blocked) return 0;
+            int bytes = Math.min(maxWrite, src.remaining());
+            ByteBuffer slice = src.slice();
+            slice.limit(bytes);
+            received.put(slice);
+            src.position(src.position() + bytes);
+            received.flip();
+            view.apply(received);
+            received.compact();
+            return bytes;
+        }
+
+        synchronized <T> T read(Function<SpectatorView, T> reader) {
+            return reader.apply(view);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    private SpectatorStream stream;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "2");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        stream = new SpectatorStream(logger, new Config(logger, properties), null, 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stream.close();
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for " + what);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void subscribersSeeTheGameFromASnapshotOn() throws InterruptedException {
+        stream.placeCard(10, 0);
+        stream.placeToken(1, 0);
+        stream.setScore(2, 3);
+        List<ViewChannel> views = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            ViewChannel view = new ViewChannel(Integer.MAX_VALUE);
+            stream.subscribe(view);
+            views.add(view);
+        }
+        stream.placeCard(20, 5);
+        stream.removeToken(1, 0);
+        stream.setScore(2, 4);
+        stream.setFreeze(3, 2000);
+        stream.announceWinner(new int[]{2});
+
+        for (ViewChannel view : views) {
+            await(() -> view.read(v -> v.winners().length == 1), "the winners");
+            assertEquals(10, (int) view.<Integer>read(v -> v.card(0)));
+            assertEquals(20, (int) view.<Integer>read(v -> v.card(5)));
+            assertFalse(view.<Boolean>read(v -> v.hasToken(1, 0)));
+            assertEquals(4, (int) view.<Integer>read(v -> v.score(2)));
+            assertEquals(2000, (long) view.<Long>read(v -> v.freeze(3)));
+            assertEquals(1, (long) view.<Long>read(SpectatorView::snapshots));
+        }
+    }
+
+    @Test
+    void countdownTicksAreCoalesced() throws InterruptedException {
+        ViewChannel view = new ViewChannel(Integer.MAX_VALUE);
+        stream.subscribe(view);
+        for (long millis = 60000; millis >= 0; millis -= 10) stream.setCountdown(millis, millis < 5000);
+        await(() -> view.read(v -> v.countdown() == 0 && v.countdownFlags() == SpectatorFrames.WARN), "the countdown");
+        assertTrue(view.<Long>read(SpectatorView::frames) < 6001, "every countdown tick was sent");
+    }
+
+    @Test
+    void aSlowSpectatorIsResyncedWithoutStallingTheOthers() throws InterruptedException {
+        ViewChannel fast = new ViewChannel(Integer.MAX_VALUE);
+        ViewChannel slow = new ViewChannel(5);
+        SpectatorStream.Subscriber fastSubscriber = stream.subscribe(fast, 1 << 20);
+        SpectatorStream.Subscriber slowSubscriber = stream.subscribe(slow);
+        await(() -> slow.read(SpectatorView::snapshots) == 1, "the first snapshot");
+        slow.blocked = true;
+
+        // far more than the slow spectator's buffer, produced without waiting for it
+        long start = System.nanoTime();
+        for (int i = 0; i < 10000; ++i) {
+            stream.placeToken(i % 4, i % 12);
+            stream.removeToken(i % 4, i % 12);
+        }
+        stream.placeCard(42, 7);
+        stream.placeToken(3, 7);
+        assertTrue(System.nanoTime() - start < 2_000_000_000L, "the producer was stalled");
+
+        await(() -> fast.read(v -> v.hasToken(3, 7)), "the fast spectator");
+        await(() -> slowSubscriber.resyncs() > 0, "the lag detection");
+        slow.blocked = false;
+        await(() -> slow.read(v -> v.hasToken(3, 7) && v.card(7) == 42), "the slow spectator to catch up");
+        assertTrue(slow.<Long>read(SpectatorView::snapshots) >= 2);
+        assertEquals(0, fastSubscriber.resyncs());
+        assertEquals(1, (long) fast.<Long>read(SpectatorView::snapshots));
+    }
+
+    @Test
+    void remoteSpectatorsWatchOverTcp() throws Exception {
+        int port = stream.listen(0);
+        stream.placeCard(33, 11);
+        SpectatorView view = new SpectatorView();
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (view.snapshots() == 0 && System.currentTimeMillis() < deadline && channel.read(buffer) >= 0) {
+                buffer.flip();
+                view.apply(buffer);
+                buffer.compact();
+            }
+        }
+        assertEquals(33, view.card(11));
+    }
+}
@@ -0,0 +1,75 @@
+package bguspl.set.sim;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoordinatorTest {
+
+    private static Properties properties() {
+        Properties properties = new Properties();
+        properties.setProperty("ExecutionEngine", "EventLoop");
+        properties.setProperty("VirtualTime", "True");
+        properties.setProperty("TurnTimeoutSeconds", "60");
+        properties.setProperty("ComputerPlayers", "2");
+        return properties;
+    }
+
+    @Test
+    void reassignsTheGamesOfADeadWorker() throws Exception {
+        Coordinator coordinator = new Coordinator(Logger.getAnonymousLogger(), properties(), 12, 2, 3);
+        Thread killer = new Thread(() -> {
+            try {
+                while (coordinator.games() == 0) Thread.sleep(10);
+                coordinator.kill(0);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        killer.start();
+        coordinator.run();
+        killer.join();
+
+        // every game is counted exactly once, whichever worker played it
+        assertEquals(12, coordinator.games());
+    }
+
+    @Test
+    void everyGameOfASeededSeriesHasItsOwnSeed() throws Exception {
+        Properties properties = properties();
+        properties.setProperty("Seed", "7");
+        Coordinator coordinator = new Coordinator(Logger.getAnonymousLogger(), properties, 6, 2, 2);
+        Thread killer = new Thread(() -> {
+            try {
+                while (coordinator.games() == 0) Thread.sleep(10);
+                coordinator.kill(0);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        killer.start();
+        coordinator.run();
+        killer.join();
+
+        // the series as played here game by game: a reassigned game keeps its number, hence its seed
+        long claims = 0;
+        Set<Integer> distinct = new HashSet<>();
+        for (int game = 0; game < 6; ++game) {
+            int played = new HeadlessGame(HeadlessGame.seeded(properties, game)).play().claims;
+            claims += played;
+            distinct.add(played);
+        }
+        assertTrue(distinct.size() > 1, "the six games of the series are the same game");
+        assertEquals(claims, coordinator.claims());
+    }
+
+    @Test
+    void rejectsAConfigurationWithoutPlayers() {
+        Properties properties = properties();
+        properties.setProperty("ComputerPlayers", "0");
+        assertThrows(IllegalArgumentException.class, () -> new Coordinator(Logger.getAnonymousLogger(), properties, 1, 1, 1));
+    }
+}
@@ -0,0 +1,67 @@
+package bguspl.set.sim;
+
+import bguspl.set.TestGame;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeededGameTest {
+
+    private static Properties game(String seed) {
+        Properties properties = new Properties();
+        properties.setProperty("ComputerPlayers", "4");
+        properties.setProperty("PlayerStrategies", "Seeker,Seeker,Random,Random");
+        properties.setProperty("ExecutionEngine", "EventLoop");
+        properties.setProperty("VirtualTime", "True");
+        properties.setProperty("Seed", seed);
+        return properties;
+    }
+
+    private static String describe(GameResult result) {
+        int[] scores = new int[result.players()];
+        for (int i = 0; i < scores.length; ++i) scores[i] = result.score(i);
+        return result.gameMillis + "ms " + Arrays.toString(scores) + " claims=" + result.claims
+                + " points=" + result.points + " penalties=" + result.penalties;
+    }
+
+    @Test
+    void theSameSeedPlaysTheSameGame() throws InterruptedException {
+        String first = describe(new HeadlessGame(game("42")).play());
+        String second = describe(new HeadlessGame(game("42")).play());
+        String other = describe(new HeadlessGame(game("43")).play());
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+    }
+
+    @Test
+    void theGamesOfASeriesDiffer() {
+        Properties properties = game("42");
+        assertEquals(HeadlessGame.seeded(properties, 3).getProperty("Seed"),
+                HeadlessGame.seeded(properties, 3).getProperty("Seed"));
+        assertNotEquals(HeadlessGame.seeded(properties, 3).getProperty("Seed"),
+                HeadlessGame.seeded(properties, 4).getProperty("Seed"));
+        assertSame(game("").getProperty("Seed"), HeadlessGame.seeded(game(""), 3).getProperty("Seed"));
+    }
+
+    @Test
+    void theSameSeedDealsTheSameTableWithThreads() throws InterruptedException {
+        assertArrayEquals(firstDeal("7"), firstDeal("7"));
+        assertFalse(Arrays.equals(firstDeal("7"), firstDeal("8")));
+    }
+
+    /**
+     * @return - the cards on the table after the first deal of a game with a dealer thread and idle human players.
+     */
+    private static Integer[] firstDeal(String seed) throws InterruptedException {
+        TestGame game = new TestGame(TestGame.properties("HumanPlayers", "2", "ComputerPlayers", "0",
+                "TableDelaySeconds", "0", "Seed", seed));
+        Thread dealer = game.start();
+        game.awaitDeal();
+        Integer[] cards = game.table.cardsBySlot();
+        game.stop(dealer);
+        return cards;
+    }
+}
@@ -0,0 +1,85 @@
+package bguspl.set.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweepTest {
+
+    @Test
+    void expandsRangesAndLists() {
+        assertEquals(List.of("1", "2", "3"), Sweep.values("1..3"));
+        assertEquals(List.of("0.5", "1", "1.5", "3"), Sweep.values("0.5..1.5:0.5, 3"));
+        assertEquals(List.of("Random", "Seeker"), Sweep.values("Random,Seeker"));
+    }
+
+    @Test
+    void pointsAreTheCartesianProduct() {
+        Map<String, List<String>> dimensions = new LinkedHashMap<>();
+        dimensions.put("Rows", List.of("3", "4"));
+        dimensions.put("ComputerPlayers", List.of("2", "3", "4"));
+        List<Map<String, String>> points = new Sweep(new Properties(), dimensions, 1, 1, null).points();
+
+        assertEquals(6, points.size());
+        assertEquals(Map.of("Rows", "3", "ComputerPlayers", "2"), points.get(0));
+        assertEquals(Map.of("Rows", "4", "ComputerPlayers", "4"), points.get(5));
+    }
+
+    @Test
+    void theGamesOfASeededPointDiffer(@TempDir Path dir) throws Exception {
+        Properties base = new Properties();
+        base.setProperty("ExecutionEngine", "EventLoop");
+        base.setProperty("VirtualTime", "True");
+        base.setProperty("ComputerPlayers", "2");
+        base.setProperty("Seed", "3");
+        Map<String, List<String>> dimensions = new LinkedHashMap<>();
+        dimensions.put("PenaltyFreezeSeconds", List.of("1"));
+        Path first = dir.resolve("first.csv"), second = dir.resolve("second.csv");
+        new Sweep(base, dimensions, 4, 2, first).run(null);
+        new Sweep(base, dimensions, 4, 2, second).run(null);
+
+        // game_s_mean, game_s_max, claims_mean, points_mean and penalties_mean (not the wall clock columns)
+        String[] row = Files.readAllLines(first).get(1).split(",");
+        List<String> played = List.of(row).subList(9, 14);
+        assertNotEquals(row[9], row[10], "the four games of the point are the same game: " + String.join(",", row));
+        assertEquals(played, List.of(Files.readAllLines(second).get(1).split(",")).subList(9, 14),
+                "a seeded sweep played different games");
+    }
+
+    @Test
+    void resumesFromTheResultsFile(@TempDir Path dir) throws Exception {
+        Properties base = new Properties();
+        base.setProperty("ExecutionEngine", "EventLoop");
+        base.setProperty("VirtualTime", "True");
+        base.setProperty("TurnTimeoutSeconds", "60");
+        base.setProperty("ComputerPlayers", "2");
+        Map<String, List<String>> dimensions = new LinkedHashMap<>();
+        dimensions.put("PenaltyFreezeSeconds", List.of("0", "1", "2"));
+        Path results = dir.resolve("sweep.csv");
+
+        // a crashed run: one finished point and a half written row
+        Files.writeString(results, "point,PenaltyFreezeSeconds,games,busy_s,games_per_s,claims_per_s,"
+                + "wall_ms_mean,wall_ms_p50,wall_ms_p99,game_s_mean,game_s_max,claims_mean,points_mean,penalties_mean\n"
+                + "PenaltyFreezeSeconds=1,1,2,0.1,20,1,1,1,1,1,1,1,1,1\n"
+                + "PenaltyFreezeSeconds=2,2,2,0.1");
+
+        assertEquals(2, new Sweep(base, dimensions, 2, 2, results).run(null));
+        List<String> lines = Files.readAllLines(results);
+        assertEquals(1, lines.stream().filter(l -> l.startsWith("PenaltyFreezeSeconds=0,")).count());
+        assertEquals(1, lines.stream().filter(l -> l.startsWith("PenaltyFreezeSeconds=2,") && l.split(",").length == 14).count());
+
+        // everything is done: nothing left to play
+        assertEquals(0, new Sweep(base, dimensions, 2, 2, results).run(null));
+
+        dimensions.put("Rows", List.of("3", "4"));
+        assertThrows(IllegalStateException.class, () -> new Sweep(base, dimensions, 2, 2, results).run(null));
+    }
+}
@@ -0,0 +1,53 @@
+package bguspl.set.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TournamentTest {
+
+    private static Properties properties() {
+        Properties properties = new Properties();
+        properties.setProperty("TurnTimeoutSeconds", "60");
+        properties.setProperty("PointFreezeSeconds", "1");
+        properties.setProperty("PenaltyFreezeSeconds", "3");
+        return properties;
+    }
+
+    @Test
+    void seatsRotateFromGameToGame() {
+        Tournament tournament = new Tournament(properties(), new String[]{"Seeker", "Random", "Random:50"}, 3, 1);
+        assertArrayEquals(new String[]{"Seeker", "Random", "Random:50"}, tournament.seats(0));
+        assertArrayEquals(new String[]{"Random", "Random:50", "Seeker"}, tournament.seats(1));
+        assertArrayEquals(new String[]{"Random:50", "Seeker", "Random"}, tournament.seats(2));
+    }
+
+    @Test
+    void aggregatesEveryEntryAndWritesTheResults(@TempDir Path dir) throws Exception {
+        Tournament tournament = new Tournament(properties(), new String[]{"Seeker", "Random"}, 6, 2);
+        tournament.run(null);
+
+        StrategyStats seeker = tournament.stats().get("Seeker");
+        StrategyStats random = tournament.stats().get("Random");
+        assertEquals(6, seeker.games());
+        assertEquals(6, random.games());
+        assertEquals(1.0, seeker.winRate() + random.winRate(), 1e-9);
+        assertTrue(seeker.meanScore() > random.meanScore(), tournament.report());
+        assertEquals(6, seeker.scoreDistribution().values().stream().mapToLong(Long::longValue).sum());
+
+        Path csv = dir.resolve("results.csv");
+        Path json = dir.resolve("results.json");
+        tournament.writeCsv(csv);
+        tournament.writeJson(json);
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).startsWith("Seeker,6,"));
+        assertTrue(Files.readString(json).contains("\"entry\": \"Random\""));
+    }
+}